@@ -1,3 +1,8 @@
 -keepclassmembers class * {
     @pub.devrel.easypermissions.AfterPermissionGranted <methods>;
 }
+
+# Remove debug logging from minified apps
+-assumenosideeffects class pub.devrel.easypermissions.helper.PermissionLog {
+    public static void d(...);
+}
@@ -17,6 +17,12 @@ import androidx.annotation.StyleRes;
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
 
+import pub.devrel.easypermissions.helper.CorrelationIds;
+import pub.devrel.easypermissions.helper.HostReference;
+import pub.devrel.easypermissions.helper.PermissionEventLog;
+import pub.devrel.easypermissions.helper.PermissionLog;
+import pub.devrel.easypermissions.helper.PermissionTrace;
+
 /**
  * Dialog to prompt the user to go to the app's settings screen and enable permissions. If the user
  * clicks 'OK' on the dialog, they are sent to the settings screen. The result is returned to the
@@ -44,6 +50,11 @@ public class AppSettingsDialog implements Parcelable {
     };
 
     static final String EXTRA_APP_SETTINGS = "extra_app_settings";
+    static final String EXTRA_PERMISSIONS = "extra_permissions";
+    static final String EXTRA_RESULTS_BEFORE = "extra_results_before";
+    static final String EXTRA_RESULTS_AFTER = "extra_results_after";
+    static final String EXTRA_CORRELATION_ID = "extra_correlation_id";
+    static final String EXTRA_REPORT_ALL = "extra_report_all";
 
     @StyleRes
     private final int mThemeResId;
@@ -53,9 +64,14 @@ public class AppSettingsDialog implements Parcelable {
     private final String mNegativeButtonText;
     private final int mRequestCode;
     private final int mIntentFlags;
+    private final String[] mPermissions;
+    private final int mCorrelationId;
+    private final String mSettingsAction;
+    private final boolean mReportAll;
 
-    private Object mActivityOrFragment;
-    private Context mContext;
+    // Weak, built dialogs are often kept by apps longer than their host
+    private HostReference<Object> mActivityOrFragment;
+    private OnHostGoneListener mOnHostGoneListener;
 
     private AppSettingsDialog(Parcel in) {
         mThemeResId = in.readInt();
@@ -65,6 +81,10 @@ public class AppSettingsDialog implements Parcelable {
         mNegativeButtonText = in.readString();
         mRequestCode = in.readInt();
         mIntentFlags = in.readInt();
+        mPermissions = in.createStringArray();
+        mCorrelationId = in.readInt();
+        mSettingsAction = in.readString();
+        mReportAll = in.readInt() != 0;
     }
 
     private AppSettingsDialog(@NonNull final Object activityOrFragment,
@@ -74,7 +94,12 @@ public class AppSettingsDialog implements Parcelable {
                               @Nullable String positiveButtonText,
                               @Nullable String negativeButtonText,
                               int requestCode,
-                              int intentFlags) {
+                              int intentFlags,
+                              @Nullable String[] permissions,
+                              @Nullable OnHostGoneListener onHostGoneListener,
+                              int correlationId,
+                              @Nullable String settingsAction,
+                              boolean reportAll) {
         setActivityOrFragment(activityOrFragment);
         mThemeResId = themeResId;
         mRationale = rationale;
@@ -83,6 +108,11 @@ public class AppSettingsDialog implements Parcelable {
         mNegativeButtonText = negativeButtonText;
         mRequestCode = requestCode;
         mIntentFlags = intentFlags;
+        mPermissions = permissions;
+        mOnHostGoneListener = onHostGoneListener;
+        mCorrelationId = correlationId;
+        mSettingsAction = settingsAction;
+        mReportAll = reportAll;
     }
 
     static AppSettingsDialog fromIntent(Intent intent, Activity activity) {
@@ -92,10 +122,12 @@ public class AppSettingsDialog implements Parcelable {
         // to avoid a runtime crash and just use the default dialog.
         // https://github.com/googlesamples/easypermissions/issues/278
         if (dialog == null) {
-            Log.e(TAG, "Intent contains null value for EXTRA_APP_SETTINGS: "
-                    + "intent=" + intent
-                    + ", "
-                    + "extras=" + intent.getExtras());
+            if (PermissionLog.isLoggable(Log.ERROR)) {
+                PermissionLog.e(TAG, "Intent contains null value for EXTRA_APP_SETTINGS: "
+                        + "intent=" + intent
+                        + ", "
+                        + "extras=" + intent.getExtras(), null);
+            }
 
             dialog = new AppSettingsDialog.Builder(activity).build();
         }
@@ -105,30 +137,62 @@ public class AppSettingsDialog implements Parcelable {
     }
 
     private void setActivityOrFragment(Object activityOrFragment) {
-        mActivityOrFragment = activityOrFragment;
+        if (!(activityOrFragment instanceof Activity)
+                && !(activityOrFragment instanceof Fragment)) {
+            throw new IllegalStateException("Unknown object: " + activityOrFragment);
+        }
 
+        mActivityOrFragment = new HostReference<>(activityOrFragment);
+    }
+
+    private static Context getContext(Object activityOrFragment) {
         if (activityOrFragment instanceof Activity) {
-            mContext = (Activity) activityOrFragment;
+            return (Activity) activityOrFragment;
         } else if (activityOrFragment instanceof Fragment) {
-            mContext = ((Fragment) activityOrFragment).getContext();
+            return ((Fragment) activityOrFragment).getContext();
         } else {
-            throw new IllegalStateException("Unknown object: " + activityOrFragment);
+            throw new IllegalStateException("Host is gone");
         }
     }
 
-    private void startForResult(Intent intent) {
-        if (mActivityOrFragment instanceof Activity) {
-            ((Activity) mActivityOrFragment).startActivityForResult(intent, mRequestCode);
-        } else if (mActivityOrFragment instanceof Fragment) {
-            ((Fragment) mActivityOrFragment).startActivityForResult(intent, mRequestCode);
+    private void startForResult(Object activityOrFragment, Intent intent) {
+        if (activityOrFragment instanceof Activity) {
+            ((Activity) activityOrFragment).startActivityForResult(intent, mRequestCode);
+        } else if (activityOrFragment instanceof Fragment) {
+            ((Fragment) activityOrFragment).startActivityForResult(intent, mRequestCode);
         }
     }
 
     /**
-     * Display the built dialog.
+     * Display the built dialog. If its Activity or Fragment was destroyed, nothing is shown and
+     * the {@link OnHostGoneListener} is notified instead.
      */
     public void show() {
-        startForResult(AppSettingsDialogHolderActivity.createShowDialogIntent(mContext, this));
+        Object activityOrFragment = mActivityOrFragment.get();
+        if (activityOrFragment == null) {
+            notifyHostGone();
+            return;
+        }
+
+        boolean traced = PermissionTrace.begin("AppSettingsDialog.show");
+        try {
+            startForResult(activityOrFragment, AppSettingsDialogHolderActivity
+                    .createShowDialogIntent(getContext(activityOrFragment), this));
+        } finally {
+            PermissionTrace.end(traced);
+        }
+    }
+
+    private void notifyHostGone() {
+        PermissionLog.w(TAG, "Host of settings dialog " + mRequestCode
+                + " is gone, not showing dialog.");
+        PermissionEventLog.get().record(PermissionEventLog.CODE_HOST_GONE,
+                mCorrelationId, mRequestCode, mPermissions);
+
+        if (mOnHostGoneListener != null) {
+            mOnHostGoneListener.onHostGone(mRequestCode,
+                    mPermissions != null ? mPermissions.clone() : new String[0]);
+        }
     }
 
     /**
@@ -136,11 +200,12 @@ public class AppSettingsDialog implements Parcelable {
      */
     AlertDialog showDialog(DialogInterface.OnClickListener positiveListener,
                            DialogInterface.OnClickListener negativeListener) {
+        Context context = getContext(mActivityOrFragment.peek());
         AlertDialog.Builder builder;
         if (mThemeResId != -1) {
-            builder = new AlertDialog.Builder(mContext, mThemeResId);
+            builder = new AlertDialog.Builder(context, mThemeResId);
         } else {
-            builder = new AlertDialog.Builder(mContext);
+            builder = new AlertDialog.Builder(context);
         }
         return builder
                 .setCancelable(false)
@@ -165,12 +230,38 @@ public class AppSettingsDialog implements Parcelable {
         dest.writeString(mNegativeButtonText);
         dest.writeInt(mRequestCode);
         dest.writeInt(mIntentFlags);
+        dest.writeStringArray(mPermissions);
+        dest.writeInt(mCorrelationId);
+        dest.writeString(mSettingsAction);
+        dest.writeInt(mReportAll ? 1 : 0);
     }
 
     int getIntentFlags() {
         return mIntentFlags;
     }
 
+    int getRequestCode() {
+        return mRequestCode;
+    }
+
+    @Nullable
+    String[] getPermissions() {
+        return mPermissions;
+    }
+
+    int getCorrelationId() {
+        return mCorrelationId;
+    }
+
+    @Nullable
+    String getSettingsAction() {
+        return mSettingsAction;
+    }
+
+    boolean isReportAll() {
+        return mReportAll;
+    }
+
     /**
      * Builder for an {@link AppSettingsDialog}.
      */
@@ -186,6 +277,11 @@ public class AppSettingsDialog implements Parcelable {
         private String mNegativeButtonText;
         private int mRequestCode = -1;
         private boolean mOpenInNewTask = false;
+        private String[] mPermissions;
+        private OnHostGoneListener mOnHostGoneListener;
+        private int mCorrelationId = CorrelationIds.NONE;
+        private String mSettingsAction;
+        private boolean mReportAll;
 
         /**
          * Create a new Builder for an {@link AppSettingsDialog}.
@@ -319,6 +415,63 @@ public class AppSettingsDialog implements Parcelable {
             return this;
         }
 
+        /**
+         * Set the permissions the settings screen is opened for. Their grant state is recorded
+         * before the settings screen is opened and compared when the user returns, so that {@link
+         * EasyPermissions#onActivityResult(int, Intent, Object...)} can report only the
+         * permissions that changed. Default is to not track any permissions.
+         */
+        @NonNull
+        public Builder setPermissions(@Nullable String... perms) {
+            mPermissions = perms;
+            return this;
+        }
+
+        /**
+         * Set the listener notified if the dialog is shown after its Activity or Fragment was
+         * destroyed. The dialog only references its host weakly, so it may be kept across
+         * configuration changes, but it can't be shown once its host is gone.
+         */
+        @NonNull
+        public Builder setOnHostGoneListener(@Nullable OnHostGoneListener listener) {
+            mOnHostGoneListener = listener;
+            return this;
+        }
+
+        /**
+         * Set the settings screen to open, such as {@link
+         * android.provider.Settings#ACTION_MANAGE_OVERLAY_PERMISSION} for a special access
+         * permission. The screen is opened for the app's package. Default is the app details
+         * screen.
+         *
+         * @param action the action of the settings screen, or null for the default.
+         */
+        @NonNull
+        public Builder setSettingsAction(@Nullable String action) {
+            mSettingsAction = action;
+            return this;
+        }
+
+        /**
+         * Report every permission set with {@link #setPermissions(String...)} when the user
+         * returns, not only the ones that changed, including when the dialog is declined.
+         */
+        @NonNull
+        Builder setReportAll(boolean reportAll) {
+            mReportAll = reportAll;
+            return this;
+        }
+
+        /**
+         * Tie the dialog to the flow of a permission request, for {@link
+         * PermissionInstrumentation}. A new ID is used by default.
+         */
+        @NonNull
+        Builder setCorrelationId(int correlationId) {
+            mCorrelationId = correlationId;
+            return this;
+        }
+
         /**
          * Build the {@link AppSettingsDialog} from the specified options. Generally followed by a
          * call to {@link AppSettingsDialog#show()}.
@@ -348,7 +501,14 @@ public class AppSettingsDialog implements Parcelable {
                     mPositiveButtonText,
                     mNegativeButtonText,
                     mRequestCode,
-                    intentFlags);
+                    intentFlags,
+                    mPermissions,
+                    mOnHostGoneListener,
+                    mCorrelationId != CorrelationIds.NONE
+                            ? mCorrelationId
+                            : CorrelationIds.next(),
+                    mSettingsAction,
+                    mReportAll);
         }
 
     }
@@ -2,6 +2,7 @@ package pub.devrel.easypermissions;
 
 import android.app.Activity;
 import android.app.Dialog;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -12,12 +13,23 @@ import androidx.annotation.RestrictTo;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
+import pub.devrel.easypermissions.helper.PermissionEvents;
+import pub.devrel.easypermissions.helper.PermissionPrewarmer;
+import pub.devrel.easypermissions.helper.RationaleStateTracker;
+
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public class AppSettingsDialogHolderActivity extends AppCompatActivity implements DialogInterface.OnClickListener {
     private static final int APP_SETTINGS_RC = 7534;
+    private static final String KEY_RESULTS_BEFORE = "resultsBefore";
 
     private AlertDialog mDialog;
     private int mIntentFlags;
+    private int mRequestCode;
+    private int mCorrelationId;
+    private String mSettingsAction;
+    private boolean mReportAll;
+    private String[] mPermissions;
+    private int[] mResultsBefore;
 
     public static Intent createShowDialogIntent(Context context, AppSettingsDialog dialog) {
         Intent intent = new Intent(context, AppSettingsDialogHolderActivity.class);
@@ -30,9 +42,23 @@ public class AppSettingsDialogHolderActivity extends AppCompatActivity implement
         super.onCreate(savedInstanceState);
         AppSettingsDialog appSettingsDialog = AppSettingsDialog.fromIntent(getIntent(), this);
         mIntentFlags = appSettingsDialog.getIntentFlags();
+        mRequestCode = appSettingsDialog.getRequestCode();
+        mCorrelationId = appSettingsDialog.getCorrelationId();
+        mSettingsAction = appSettingsDialog.getSettingsAction();
+        mReportAll = appSettingsDialog.isReportAll();
+        mPermissions = appSettingsDialog.getPermissions();
+        if (savedInstanceState != null) {
+            mResultsBefore = savedInstanceState.getIntArray(KEY_RESULTS_BEFORE);
+        }
         mDialog = appSettingsDialog.showDialog(this, this);
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putIntArray(KEY_RESULTS_BEFORE, mResultsBefore);
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
@@ -44,12 +70,36 @@ public class AppSettingsDialogHolderActivity extends AppCompatActivity implement
     @Override
     public void onClick(DialogInterface dialog, int which) {
         if (which == Dialog.BUTTON_POSITIVE) {
-            Intent intent = new Intent(Settings.ACTION_APPLICATION_DETAILS_SETTINGS)
+            Intent intent = new Intent(mSettingsAction != null
+                    ? mSettingsAction
+                    : Settings.ACTION_APPLICATION_DETAILS_SETTINGS)
                     .setData(Uri.fromParts("package", getPackageName(), null));
             intent.addFlags(mIntentFlags);
+            // Skip resolving the intent again if it was done while prewarming, which is only done
+            // for the app details screen
+            ComponentName settings = PermissionPrewarmer.getSettingsComponent();
+            if (settings != null && mSettingsAction == null) {
+                intent.setComponent(settings);
+            }
+
+            // Permanent denials may be reverted on the settings screen
+            RationaleStateTracker.clear();
+
+            // Snapshot the permissions so the caller can be told which ones changed
+            if (mPermissions != null) {
+                mResultsBefore = EasyPermissions.checkPermissions(this, mPermissions);
+            }
+            PermissionEvents.emit(PermissionInstrumentation.EVENT_SETTINGS_OPENED,
+                    mCorrelationId, mRequestCode, mPermissions);
             startActivityForResult(intent, APP_SETTINGS_RC);
         } else if (which == Dialog.BUTTON_NEGATIVE) {
-            setResult(Activity.RESULT_CANCELED);
+            if (mReportAll && mPermissions != null) {
+                // Nothing changed, but the caller still gets the outcome of its request
+                mResultsBefore = EasyPermissions.checkPermissions(this, mPermissions);
+                setResult(Activity.RESULT_CANCELED, createResultData());
+            } else {
+                setResult(Activity.RESULT_CANCELED);
+            }
             finish();
         } else {
             throw new IllegalStateException("Unknown button type: " + which);
@@ -59,7 +109,22 @@ public class AppSettingsDialogHolderActivity extends AppCompatActivity implement
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
+        PermissionEvents.emit(PermissionInstrumentation.EVENT_SETTINGS_RETURNED,
+                mCorrelationId, mRequestCode, mPermissions);
+        if (mPermissions != null && mResultsBefore != null) {
+            data = createResultData();
+        }
         setResult(resultCode, data);
         finish();
     }
+
+    private Intent createResultData() {
+        return new Intent()
+                .putExtra(AppSettingsDialog.EXTRA_CORRELATION_ID, mCorrelationId)
+                .putExtra(AppSettingsDialog.EXTRA_PERMISSIONS, mPermissions)
+                .putExtra(AppSettingsDialog.EXTRA_RESULTS_BEFORE, mResultsBefore)
+                .putExtra(AppSettingsDialog.EXTRA_RESULTS_AFTER,
+                        EasyPermissions.checkPermissions(this, mPermissions))
+                .putExtra(AppSettingsDialog.EXTRA_REPORT_ALL, mReportAll);
+    }
 }
@@ -0,0 +1,153 @@
+package pub.devrel.easypermissions;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Color;
+import android.os.Build;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+/**
+ * {@link RationaleRenderer} showing the rationale in a banner at the bottom of the activity's
+ * content instead of a dialog. The banner is built from code, without inflating a layout or
+ * creating a window, and stays attached once answered so later rationales of the activity reuse
+ * it.
+ * <p>
+ * The banner's message and buttons use the {@link android.R.id#message}, {@link
+ * android.R.id#button1} and {@link android.R.id#button2} IDs, like the dialog.
+ */
+public final class BannerRationaleRenderer implements RationaleRenderer {
+
+    private static final Object VIEW_TAG = new Object();
+
+    @Override
+    public boolean show(@NonNull Activity activity, @NonNull PermissionRequest request,
+                        @NonNull Callback callback) {
+        BannerView banner = getBanner(activity);
+        if (banner.mCallback != null) {
+            return false;
+        }
+
+        banner.mMessage.setText(request.getRationale());
+        banner.mPositive.setText(request.getPositiveButtonText());
+        banner.mNegative.setText(request.getNegativeButtonText());
+        banner.mCallback = callback;
+        banner.mCorrelationId = request.getCorrelationId();
+        banner.setVisibility(View.VISIBLE);
+        return true;
+    }
+
+    @Override
+    public void dismiss(@NonNull Activity activity, @NonNull PermissionRequest request) {
+        ViewGroup content = activity.findViewById(android.R.id.content);
+        BannerView banner = content != null ? (BannerView) content.findViewWithTag(VIEW_TAG) : null;
+        if (banner == null || banner.mCallback == null
+                || banner.mCorrelationId != request.getCorrelationId()) {
+            return;
+        }
+
+        banner.mCallback = null;
+        banner.setVisibility(View.GONE);
+    }
+
+    /**
+     * Build the banner of an activity ahead of its first rationale, for example once the activity
+     * is created. The banner stays hidden until a rationale is shown.
+     */
+    public void prepare(@NonNull Activity activity) {
+        getBanner(activity);
+    }
+
+    @NonNull
+    private static BannerView getBanner(@NonNull Activity activity) {
+        ViewGroup content = activity.findViewById(android.R.id.content);
+        BannerView banner = (BannerView) content.findViewWithTag(VIEW_TAG);
+        if (banner == null) {
+            banner = new BannerView(activity);
+            banner.setTag(VIEW_TAG);
+            banner.setVisibility(View.GONE);
+            content.addView(banner, new FrameLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT,
+                    Gravity.BOTTOM));
+        }
+        return banner;
+    }
+
+    private static final class BannerView extends LinearLayout implements View.OnClickListener {
+
+        final TextView mMessage;
+        final Button mPositive;
+        final Button mNegative;
+        @Nullable Callback mCallback;
+        int mCorrelationId;
+
+        BannerView(@NonNull Context context) {
+            super(context);
+            int padding = dp(16);
+            setOrientation(VERTICAL);
+            setPadding(padding, padding, padding, dp(8));
+            setBackgroundColor(ContextCompat.getColor(context, R.color.colorPrimary));
+            setClickable(true);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                setElevation(dp(6));
+            }
+
+            mMessage = new TextView(context);
+            mMessage.setId(android.R.id.message);
+            mMessage.setTextColor(Color.WHITE);
+            mMessage.setTextSize(TypedValue.COMPLEX_UNIT_SP, 14);
+            addView(mMessage, new LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+
+            LinearLayout buttons = new LinearLayout(context);
+            buttons.setGravity(Gravity.END);
+            mNegative = createButton(context, android.R.id.button2);
+            mPositive = createButton(context, android.R.id.button1);
+            buttons.addView(mNegative);
+            buttons.addView(mPositive);
+            addView(buttons, new LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        }
+
+        @NonNull
+        private Button createButton(@NonNull Context context, int id) {
+            Button button = new Button(context, null, android.R.attr.borderlessButtonStyle);
+            button.setId(id);
+            button.setTextColor(ContextCompat.getColor(context, R.color.colorAccent));
+            button.setOnClickListener(this);
+            return button;
+        }
+
+        private int dp(int value) {
+            return (int) TypedValue.applyDimension(
+                    TypedValue.COMPLEX_UNIT_DIP, value, getResources().getDisplayMetrics());
+        }
+
+        @Override
+        public void onClick(View view) {
+            Callback callback = mCallback;
+            if (callback == null) {
+                return;
+            }
+
+            mCallback = null;
+            setVisibility(View.GONE);
+            if (view == mPositive) {
+                callback.onRationaleAccepted();
+            } else {
+                callback.onRationaleDenied();
+            }
+        }
+    }
+}
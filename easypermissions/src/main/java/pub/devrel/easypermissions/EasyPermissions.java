@@ -18,20 +18,33 @@ package pub.devrel.easypermissions;
 import android.Manifest;
 import android.app.Activity;
 import android.content.Context;
+import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
 import androidx.annotation.Size;
 import androidx.core.app.ActivityCompat;
 import androidx.fragment.app.Fragment;
 import androidx.core.content.ContextCompat;
-import android.util.Log;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import pub.devrel.easypermissions.helper.AnnotatedMethods;
+import pub.devrel.easypermissions.helper.CorrelationIds;
+import pub.devrel.easypermissions.helper.DeclaredPermissions;
+import pub.devrel.easypermissions.helper.GrantStateCache;
+import pub.devrel.easypermissions.helper.PermissionEventLog;
+import pub.devrel.easypermissions.helper.PermissionEvents;
 import pub.devrel.easypermissions.helper.PermissionHelper;
+import pub.devrel.easypermissions.helper.PermissionLog;
+import pub.devrel.easypermissions.helper.PermissionPrewarmer;
+import pub.devrel.easypermissions.helper.PermissionTrace;
+import pub.devrel.easypermissions.helper.RationaleStateTracker;
 
 /**
  * Utility to request and check System permissions for apps targeting Android M (API &gt;= 23).
@@ -60,8 +73,199 @@ public class EasyPermissions {
 
     private static final String TAG = "EasyPermissions";
 
+    // Decision for a request that was handled without a prompt
+    private static final int NO_PROMPT = -1;
+
+    /**
+     * Default time during which a request duplicating a pending request is joined to it.
+     *
+     * @see #setDebounceWindowMillis(long)
+     */
+    public static final long DEFAULT_DEBOUNCE_WINDOW_MILLIS = 500;
+
+    private static volatile PermissionHistory sPermissionHistory;
+    private static volatile RequestPolicy sRequestPolicy;
+    private static volatile PermissionInstrumentation sInstrumentation =
+            PermissionInstrumentation.NONE;
+    private static volatile PermissionApplicability sApplicability =
+            PermissionApplicability.DEFAULT;
+    private static volatile OnUndeclaredPermissionsListener sUndeclaredListener;
+    private static volatile long sDebounceWindowMillis = DEFAULT_DEBOUNCE_WINDOW_MILLIS;
+
+    /**
+     * Record every permission request and its result in a {@link PermissionHistory}, which is
+     * persisted across app sessions. History is not recorded by default.
+     *
+     * @param history the history to record to, or null to stop recording.
+     */
+    public static void setPermissionHistory(@Nullable PermissionHistory history) {
+        sPermissionHistory = history;
+    }
+
+    /**
+     * @return the history set with {@link #setPermissionHistory(PermissionHistory)}, if any.
+     */
+    @Nullable
+    public static PermissionHistory getPermissionHistory() {
+        return sPermissionHistory;
+    }
+
+    /**
+     * Decide how every request that is not already granted is handled, for example to stop asking
+     * for permissions the user keeps denying. Without a policy, the rationale is shown if the
+     * system suggests it and the permissions are requested otherwise.
+     *
+     * @param policy the policy to apply, or null to remove the current policy.
+     * @see ExponentialBackoffPolicy
+     * @see MaxPromptsPerSessionPolicy
+     */
+    public static void setRequestPolicy(@Nullable RequestPolicy policy) {
+        sRequestPolicy = policy;
+    }
+
+    /**
+     * Called when the system prompt is issued for a set of permissions.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public static void onPromptIssued(@NonNull String... perms) {
+        RequestPolicy policy = sRequestPolicy;
+        if (policy instanceof MaxPromptsPerSessionPolicy) {
+            ((MaxPromptsPerSessionPolicy) policy).onPromptIssued(perms);
+        }
+    }
+
+    /**
+     * Set the table of the SDK levels each permission applies to. Permissions that don't apply to
+     * the app on the running SDK are treated as granted by {@link #hasPermissions(Context,
+     * String...)} and left out of system requests.
+     *
+     * @param applicability the table to use, or null to restore {@link
+     *                      PermissionApplicability#DEFAULT}.
+     */
+    public static void setPermissionApplicability(
+            @Nullable PermissionApplicability applicability) {
+        sApplicability = applicability != null
+                ? applicability
+                : PermissionApplicability.DEFAULT;
+    }
+
+    /**
+     * @return the table set with {@link #setPermissionApplicability(PermissionApplicability)}, or
+     * {@link PermissionApplicability#DEFAULT}.
+     */
+    @NonNull
+    public static PermissionApplicability getPermissionApplicability() {
+        return sApplicability;
+    }
+
+    /**
+     * Verify that checked and requested permissions are declared in the app's merged manifest.
+     * The declared permissions are loaded once, in the background, then each check is a lookup.
+     * Undeclared permissions are reported when a {@link PermissionRequest} is built and when they
+     * are checked or requested; requests for them are denied without a system request. Disabled
+     * by default.
+     *
+     * @param context  any context of the app, to load the declared permissions with.
+     * @param listener the listener to report undeclared permissions to, such as {@link
+     *                 OnUndeclaredPermissionsListener#THROW} in debug builds, or null to stop
+     *                 verifying.
+     */
+    public static void setManifestVerification(
+            @NonNull Context context, @Nullable OnUndeclaredPermissionsListener listener) {
+        if (listener != null) {
+            DeclaredPermissions.load(context);
+        }
+        sUndeclaredListener = listener;
+    }
+
+    /**
+     * Set how long after a request is made an identical request, for the same permissions and
+     * request code from the same host, is joined to it instead of being made again, for example
+     * when a button starting the request is tapped twice. The duplicate gets the handle of the
+     * first request, whose result is delivered once, even if it was handled without a prompt. The
+     * default is {@link #DEFAULT_DEBOUNCE_WINDOW_MILLIS}.
+     *
+     * @param windowMillis the window in milliseconds, or 0 to make every request.
+     */
+    public static void setDebounceWindowMillis(long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("Window can't be negative: " + windowMillis);
+        }
+        sDebounceWindowMillis = windowMillis;
+    }
+
+    /**
+     * Receive an event for each step of every permission flow, for example to collect {@link
+     * PermissionMetrics}. No events are created by default.
+     *
+     * @param instrumentation the instrumentation to notify, or null to stop notifying.
+     */
+    public static void setInstrumentation(@Nullable PermissionInstrumentation instrumentation) {
+        sInstrumentation = instrumentation != null
+                ? instrumentation
+                : PermissionInstrumentation.NONE;
+    }
+
+    /**
+     * @return the instrumentation set with {@link #setInstrumentation(PermissionInstrumentation)},
+     * or {@link PermissionInstrumentation#NONE}.
+     */
+    @NonNull
+    public static PermissionInstrumentation getInstrumentation() {
+        return sInstrumentation;
+    }
+
+    /**
+     * Emit {@link android.os.Trace} sections around the library's work so it shows up as its own
+     * slices in systrace and Perfetto. On API 29+ an async section also links each system request
+     * to its result. Tracing is disabled by default.
+     *
+     * @param enabled whether to emit trace sections.
+     */
+    public static void setTracingEnabled(boolean enabled) {
+        PermissionTrace.setEnabled(enabled);
+    }
+
+    /**
+     * Send the library's log messages to a {@link PermissionLogger}. By default warnings and errors
+     * are logged to Logcat, and debug messages only if enabled with {@code adb shell setprop
+     * log.tag.EasyPermissions DEBUG}.
+     *
+     * @param logger the logger to use, or null to restore the default.
+     */
+    public static void setLogger(@Nullable PermissionLogger logger) {
+        PermissionLog.setLogger(logger);
+    }
+
     /**
-     * Check if the calling context has a set of permissions.
+     * Write the most recent permission events kept by the library, such as requests, results and
+     * rationales that were not shown, for example from {@code Activity#dump} or a bug report hook.
+     *
+     * @param prefix prefix for each line.
+     * @param writer where to write the events.
+     */
+    public static void dumpEvents(@NonNull String prefix, @NonNull PrintWriter writer) {
+        PermissionEventLog.get().dump(prefix, writer);
+    }
+
+    /**
+     * Prepare the rationale and app settings dialogs the next time the main thread is idle, so the
+     * first one shows faster, if any of the permissions is not granted yet. Call this from the main
+     * thread, for example in {@code onCreate} of an activity that is going to request the
+     * permissions. The time saved is reported to the {@link PermissionInstrumentation}.
+     *
+     * @param activity the activity that is going to request the permissions.
+     * @param perms    the permissions.
+     */
+    public static void prewarm(@NonNull Activity activity, @Size(min = 1) @NonNull String... perms) {
+        if (!hasPermissions(activity, perms)) {
+            PermissionPrewarmer.schedule(activity, perms);
+        }
+    }
+
+    /**
+     * Check if the calling context has a set of permissions. May be called from any thread, see
+     * {@link PermissionStatus} for more ways to check permissions off the main thread.
      *
      * @param context the calling context.
      * @param perms   one ore more permissions, such as {@link Manifest.permission#CAMERA}.
@@ -71,9 +275,28 @@ public class EasyPermissions {
      */
     public static boolean hasPermissions(@NonNull Context context,
                                          @Size(min = 1) @NonNull String... perms) {
+        boolean traced = PermissionTrace.begin("EasyPermissions.hasPermissions");
+        try {
+            // Undeclared permissions can't be granted
+            return verifyDeclared(context, perms) && checkHasPermissions(context, perms);
+        } finally {
+            PermissionTrace.end(traced);
+        }
+    }
+
+    /**
+     * Like {@link #hasPermissions(Context, String...)}, without reporting undeclared permissions,
+     * for the checks made while a request is handled. They are reported once, when it is built.
+     */
+    static boolean hasPermissionsQuietly(@NonNull Context context, @NonNull String... perms) {
+        return areDeclared(context, perms) && checkHasPermissions(context, perms);
+    }
+
+    private static boolean checkHasPermissions(@NonNull Context context,
+                                               @NonNull String... perms) {
         // Always return true for SDK < M, let the system deal with the permissions
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
-            Log.w(TAG, "hasPermissions: API version < M, returning true by default");
+            PermissionLog.w(TAG, "hasPermissions: API version < M, returning true by default");
 
             // DANGER ZONE!!! Changing this will break the library.
             return true;
@@ -85,9 +308,16 @@ public class EasyPermissions {
             throw new IllegalArgumentException("Can't check permissions for null context");
         }
 
+        PermissionApplicability applicability = sApplicability;
         for (String perm : perms) {
-            if (ContextCompat.checkSelfPermission(context, perm)
-                    != PackageManager.PERMISSION_GRANTED) {
+            // A permission that doesn't apply on this SDK can't be granted, nor needs to be
+            if (!applicability.isApplicable(context, perm)) {
+                continue;
+            }
+            boolean granted = SpecialAccess.isSpecial(perm)
+                    ? SpecialAccess.isGranted(context, perm)
+                    : GrantStateCache.isGranted(context, perm);
+            if (!granted) {
                 return false;
             }
         }
@@ -133,24 +363,202 @@ public class EasyPermissions {
      *
      * @param request the permission request
      * @see PermissionRequest
+     * @see #startRequest(PermissionRequest)
      */
     public static void requestPermissions(PermissionRequest request) {
+        startRequest(request);
+    }
 
-        // Check for permissions before dispatching the request
-        if (hasPermissions(request.getHelper().getContext(), request.getPerms())) {
-            notifyAlreadyHasPermissions(
-                    request.getHelper().getHost(), request.getRequestCode(), request.getPerms());
-            return;
+    /**
+     * Request a set of permissions, like {@link #requestPermissions(PermissionRequest)}, and keep
+     * a handle to the request.
+     *
+     * @param request the permission request
+     * @return a handle to cancel the request, pending until its result is delivered.
+     * @see PendingPermissionRequest
+     */
+    @NonNull
+    public static PendingPermissionRequest startRequest(@NonNull PermissionRequest request) {
+        boolean traced = PermissionTrace.begin("EasyPermissions.startRequest");
+        try {
+            // Every call is a flow of its own, even for a request that is kept and made again
+            request = withApplicablePerms(request.forNewFlow());
+            PendingPermissionRequest duplicate =
+                    PendingPermissionRequest.findDuplicate(request, sDebounceWindowMillis);
+            if (duplicate != null) {
+                PermissionLog.d(TAG, "Request " + request.getRequestCode()
+                        + " duplicates a request made just before, joining it.");
+                PermissionEventLog.get().record(PermissionEventLog.CODE_DEBOUNCED,
+                        request.getCorrelationId(), request.getRequestCode(), request.getPerms());
+                return duplicate;
+            }
+
+            // Requests handled without a prompt are still joined by duplicates, so a double tap
+            // doesn't open a settings screen twice
+            PermissionRequest routed = SpecialAccess.route(request);
+            if (routed == null) {
+                // Sent to the settings screen of a special access permission
+                return PendingPermissionRequest.startHandled(request, sDebounceWindowMillis);
+            }
+
+            request = routed;
+            if (finishWithoutPrompt(request)) {
+                return PendingPermissionRequest.start(request, false);
+            }
+
+            int decision = decide(request);
+            if (decision == NO_PROMPT) {
+                return PendingPermissionRequest.startHandled(request, sDebounceWindowMillis);
+            }
+
+            // Wait for the requests of other hosts to finish prompting
+            PendingPermissionRequest pending = PendingPermissionRequest.start(request, true);
+            PromptCoordinator.get(request.getHelper().getContext()).prompt(pending, decision);
+            return pending;
+        } finally {
+            PermissionTrace.end(traced);
         }
+    }
 
-        // Request permissions
-        request.getHelper().requestPermissions(
-                request.getRationale(),
-                request.getPositiveButtonText(),
-                request.getNegativeButtonText(),
-                request.getTheme(),
-                request.getRequestCode(),
-                request.getPerms());
+    /**
+     * Request a set of permissions in stages, for permissions that can only be requested once
+     * others are granted, such as {@link Manifest.permission#ACCESS_BACKGROUND_LOCATION}. The
+     * receivers get one result, once all stages are done.
+     *
+     * @param request      the permission request, its options apply to every stage.
+     * @param dependencies the table to plan the stages with, such as {@link
+     *                     PermissionDependencies#DEFAULT}.
+     * @return a handle to cancel the request, pending until its last result is delivered.
+     * @see StagedPermissionRequest
+     */
+    @NonNull
+    public static StagedPermissionRequest requestPermissions(
+            @NonNull PermissionRequest request, @NonNull PermissionDependencies dependencies) {
+        return StagedPermissionRequest.start(request, dependencies);
+    }
+
+    /**
+     * Leave the permissions that don't apply on the running SDK out of a request, unless none
+     * apply, in which case the request is handled as already granted.
+     */
+    @NonNull
+    private static PermissionRequest withApplicablePerms(@NonNull PermissionRequest request) {
+        if (request.getHelper().isHostGone()) {
+            return request;
+        }
+
+        String[] perms = request.getPerms();
+        Context context = request.getHelper().getContext();
+        String[] applicable = sApplicability.filter(context, perms);
+        if (applicable.length == perms.length || applicable.length == 0) {
+            return request;
+        }
+
+        PermissionLog.d(TAG, "Request " + request.getRequestCode() + ": "
+                + (perms.length - applicable.length) + " permissions don't apply on SDK "
+                + Build.VERSION.SDK_INT + ", target SDK "
+                + context.getApplicationInfo().targetSdkVersion + ".");
+        return request.withPerms(applicable, request.getCorrelationId());
+    }
+
+    /**
+     * Report the permissions that are not declared in the manifest, if verification is enabled.
+     * Permissions that don't apply on the running SDK are left out, they may be declared with a
+     * {@code maxSdkVersion}.
+     *
+     * @param context the calling context, or null if it is not known.
+     * @return false if some permissions are known not to be declared.
+     */
+    static boolean verifyDeclared(@Nullable Context context, @NonNull String... perms) {
+        OnUndeclaredPermissionsListener listener = sUndeclaredListener;
+        if (listener == null) {
+            return true;
+        }
+
+        String[] undeclared = DeclaredPermissions.getUndeclared(applicablePerms(context, perms));
+        if (undeclared.length == 0) {
+            return true;
+        }
+
+        PermissionLog.w(TAG, "Permissions not declared in the manifest: "
+                + Arrays.toString(undeclared));
+        listener.onUndeclaredPermissions(undeclared);
+        return false;
+    }
+
+    /**
+     * Like {@link #verifyDeclared(Context, String...)}, without reporting.
+     */
+    private static boolean areDeclared(@Nullable Context context, @NonNull String... perms) {
+        return sUndeclaredListener == null
+                || DeclaredPermissions.getUndeclared(applicablePerms(context, perms)).length == 0;
+    }
+
+    @NonNull
+    private static String[] applicablePerms(@Nullable Context context, @NonNull String... perms) {
+        return context != null ? sApplicability.filter(context, perms) : perms;
+    }
+
+    /**
+     * Handle a request that must not prompt, because of its manifest declarations or the {@link
+     * RequestPolicy}.
+     *
+     * @return the {@link RequestPolicy} decision of how to prompt for the request, or {@link
+     * #NO_PROMPT} if it was handled.
+     */
+    private static int decide(@NonNull PermissionRequest request) {
+        if (!areDeclared(request.getHelper().getContext(), request.getPerms())) {
+            // Reported when the request was built, the system would deny them without asking
+            PermissionEventLog.get().record(PermissionEventLog.CODE_UNDECLARED,
+                    request.getCorrelationId(), request.getRequestCode(), request.getPerms());
+            notifyDeniedWithoutPrompt(request);
+            return NO_PROMPT;
+        }
+
+        RequestPolicy policy = sRequestPolicy;
+        int decision = policy != null
+                ? policy.decide(request, sPermissionHistory)
+                : RequestPolicy.DECISION_DEFAULT;
+        switch (decision) {
+            case RequestPolicy.DECISION_APP_SETTINGS:
+                PermissionEventLog.get().record(PermissionEventLog.CODE_POLICY_APP_SETTINGS,
+                        request.getCorrelationId(), request.getRequestCode(), request.getPerms());
+                showAppSettingsDialog(request);
+                return NO_PROMPT;
+            case RequestPolicy.DECISION_DENY:
+                PermissionEventLog.get().record(PermissionEventLog.CODE_POLICY_DENIED,
+                        request.getCorrelationId(), request.getRequestCode(), request.getPerms());
+                notifyDeniedWithoutPrompt(request);
+                return NO_PROMPT;
+            case RequestPolicy.DECISION_REQUEST:
+            case RequestPolicy.DECISION_RATIONALE:
+                return decision;
+            default:
+                return RequestPolicy.DECISION_DEFAULT;
+        }
+    }
+
+    /**
+     * Handle a request whose host is gone or whose permissions are already granted. Checked again
+     * for requests that waited for another request to prompt.
+     *
+     * @return true if the request was handled.
+     */
+    static boolean finishWithoutPrompt(@NonNull PermissionRequest request) {
+        if (request.getHelper().isHostGone()) {
+            notifyHostGone(request);
+            return true;
+        }
+
+        // Check for permissions before dispatching the request, undeclared ones are reported after
+        if (checkHasPermissions(request.getHelper().getContext(), request.getPerms())) {
+            PermissionEventLog.get().record(PermissionEventLog.CODE_ALREADY_GRANTED,
+                    request.getCorrelationId(), request.getRequestCode(), request.getPerms());
+            notifyAlreadyHasPermissions(request.getHelper().getHost(),
+                    request.getCorrelationId(), request.getRequestCode(), request.getPerms());
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -172,39 +580,119 @@ public class EasyPermissions {
                                                   @NonNull String[] permissions,
                                                   @NonNull int[] grantResults,
                                                   @NonNull Object... receivers) {
+        PermissionTrace.endRequest(requestCode);
+        int correlationId = CorrelationIds.onResult(requestCode);
+
         // Make a collection of granted and denied permissions from the request.
         List<String> granted = new ArrayList<>();
         List<String> denied = new ArrayList<>();
-        for (int i = 0; i < permissions.length; i++) {
-            String perm = permissions[i];
-            if (grantResults[i] == PackageManager.PERMISSION_GRANTED) {
-                granted.add(perm);
-            } else {
-                denied.add(perm);
+        boolean traced = PermissionTrace.begin("EasyPermissions.onRequestPermissionsResult");
+        try {
+            for (int i = 0; i < permissions.length; i++) {
+                String perm = permissions[i];
+                if (grantResults[i] == PackageManager.PERMISSION_GRANTED) {
+                    granted.add(perm);
+                } else {
+                    denied.add(perm);
+                }
             }
+        } finally {
+            PermissionTrace.end(traced);
         }
 
-        // iterate through all receivers
-        for (Object object : receivers) {
-            // Report granted permissions, if any.
-            if (!granted.isEmpty()) {
-                if (object instanceof PermissionCallbacks) {
-                    ((PermissionCallbacks) object).onPermissionsGranted(requestCode, granted);
-                }
-            }
+        PermissionEvents.emit(PermissionInstrumentation.EVENT_RESULT_GRANTED,
+                correlationId, requestCode, granted);
+        PermissionEvents.emit(PermissionInstrumentation.EVENT_RESULT_DENIED,
+                correlationId, requestCode, denied);
+        GrantStateCache.invalidate(denied);
+        List<String> permanentlyDenied = recordResults(granted, denied, receivers);
+        PermissionGuardedExecutor.onResults(granted, permanentlyDenied);
+        PermissionState.recheckAll();
+
+        // The result of a cancelled request is recorded, but not delivered
+        if (!PendingPermissionRequest.onResult(correlationId)) {
+            SpecialAccess.discard(correlationId);
+            return;
+        }
 
-            // Report denied permissions, if any.
-            if (!denied.isEmpty()) {
-                if (object instanceof PermissionCallbacks) {
-                    ((PermissionCallbacks) object).onPermissionsDenied(requestCode, denied);
-                }
+        // Special access permissions are left out of system requests, add their outcome
+        if (SpecialAccess.onResult(correlationId, granted, denied)) {
+            return;
+        }
+
+        // The result of a stage is delivered once the last stage is done
+        if (StagedPermissionRequest.onStageResult(correlationId, granted, denied, receivers)) {
+            return;
+        }
+
+        // If 100% successful, call annotated methods
+        boolean runAnnotatedMethods = !granted.isEmpty() && denied.isEmpty();
+        notifyReceivers(correlationId, requestCode, granted, denied, runAnnotatedMethods,
+                receivers);
+    }
+
+    /**
+     * Handle the result of an {@link AppSettingsDialog} built with {@link
+     * AppSettingsDialog.Builder#setPermissions(String...)}, should be called from the calling
+     * {@link Activity}'s or {@link Fragment}'s {@code onActivityResult(int, int, Intent)} method.
+     * <p>
+     * The grant state of the permissions is compared with their state before the settings screen
+     * was opened, and the {@code receivers} only receive {@link PermissionCallbacks} for the
+     * permissions whose state changed. Methods annotated with {@link AfterPermissionGranted} are
+     * run if a permission was granted and all of the permissions are now granted.
+     *
+     * @param requestCode requestCode argument to the activity result callback.
+     * @param data        data argument to the activity result callback.
+     * @param receivers   an array of objects that have a method annotated with {@link
+     *                    AfterPermissionGranted} or implement {@link PermissionCallbacks}.
+     * @return true if the result came from an {@link AppSettingsDialog} tracking permissions,
+     * false otherwise.
+     */
+    public static boolean onActivityResult(int requestCode,
+                                           @Nullable Intent data,
+                                           @NonNull Object... receivers) {
+        if (data == null) {
+            return false;
+        }
+
+        String[] perms = data.getStringArrayExtra(AppSettingsDialog.EXTRA_PERMISSIONS);
+        int[] before = data.getIntArrayExtra(AppSettingsDialog.EXTRA_RESULTS_BEFORE);
+        int[] after = data.getIntArrayExtra(AppSettingsDialog.EXTRA_RESULTS_AFTER);
+        if (perms == null || before == null || after == null) {
+            return false;
+        }
+
+        // Only report the permissions that changed while the settings screen was open, unless
+        // the screen was opened for the outcome of a whole request
+        boolean reportAll = data.getBooleanExtra(AppSettingsDialog.EXTRA_REPORT_ALL, false);
+        List<String> granted = new ArrayList<>();
+        List<String> denied = new ArrayList<>();
+        List<String> stillDenied = new ArrayList<>();
+        for (int i = 0; i < perms.length; i++) {
+            if (after[i] != PackageManager.PERMISSION_GRANTED) {
+                stillDenied.add(perms[i]);
+            }
+            if (before[i] == after[i] && !reportAll) {
+                continue;
             }
 
-            // If 100% successful, call annotated methods
-            if (!granted.isEmpty() && denied.isEmpty()) {
-                runAnnotatedMethods(object, requestCode);
+            if (after[i] == PackageManager.PERMISSION_GRANTED) {
+                granted.add(perms[i]);
+            } else {
+                denied.add(perms[i]);
             }
         }
+
+        GrantStateCache.invalidate(denied);
+        PermissionGuardedExecutor.onResults(granted,
+                getPermanentlyDenied(stillDenied, receivers));
+        PermissionState.recheckAll();
+        boolean runAnnotatedMethods = !granted.isEmpty() && stillDenied.isEmpty();
+        int correlationId = data.getIntExtra(
+                AppSettingsDialog.EXTRA_CORRELATION_ID, CorrelationIds.NONE);
+        notifyReceivers(correlationId, requestCode, granted, denied, runAnnotatedMethods,
+                receivers);
+        return true;
     }
 
     /**
@@ -216,6 +704,10 @@ public class EasyPermissions {
      * has been denied and your app has received the onPermissionsDenied callback.
      * Otherwise the library cannot distinguish permanent denial from the
      * "not yet denied" case.
+     * <p>
+     * Denials are classified once when the result is passed to {@link
+     * #onRequestPermissionsResult(int, String[], int[], Object...)}, and that classification is
+     * reused until the permission is requested again or the app settings screen is opened.
      *
      * @param host              context requesting permissions.
      * @param deniedPermissions list of denied permissions, usually from {@link
@@ -279,80 +771,244 @@ public class EasyPermissions {
     }
 
     /**
-     * Run permission callbacks on an object that requested permissions but already has them by
-     * simulating {@link PackageManager#PERMISSION_GRANTED}.
+     * Classify each denial once, right after the result, so later permanent denial checks don't
+     * need to ask the system again, and add the result to the {@link PermissionHistory}.
      *
-     * @param object      the object requesting permissions.
-     * @param requestCode the permission request code.
-     * @param perms       a list of permissions requested.
+     * @param granted   the granted permissions.
+     * @param denied    the denied permissions.
+     * @param receivers the receivers of the result, the first Activity or Fragment is used as the
+     *                  host to query the rationale state.
+     * @return the permanently denied permissions.
      */
-    private static void notifyAlreadyHasPermissions(@NonNull Object object,
-                                                    int requestCode,
-                                                    @NonNull String[] perms) {
-        int[] grantResults = new int[perms.length];
-        for (int i = 0; i < perms.length; i++) {
-            grantResults[i] = PackageManager.PERMISSION_GRANTED;
+    @NonNull
+    private static List<String> recordResults(@NonNull List<String> granted,
+                                              @NonNull List<String> denied,
+                                              @NonNull Object... receivers) {
+        PermissionHelper<?> helper = getReceiverHelper(receivers);
+
+        Context context = helper != null ? helper.getContext() : null;
+        List<String> permanentlyDenied = new ArrayList<>();
+        List<String> temporarilyDenied = new ArrayList<>();
+        for (String perm : granted) {
+            RationaleStateTracker.onGranted(context, perm);
+        }
+        for (String perm : denied) {
+            if (helper != null && RationaleStateTracker.onDenied(context, perm,
+                    helper.shouldShowRequestPermissionRationale(perm))
+                    == RationaleStateTracker.PERMANENTLY_DENIED) {
+                permanentlyDenied.add(perm);
+            } else {
+                temporarilyDenied.add(perm);
+            }
         }
 
-        onRequestPermissionsResult(requestCode, perms, grantResults, object);
+        PermissionHistory history = sPermissionHistory;
+        if (history != null) {
+            history.record(toArray(granted), PermissionHistory.EVENT_GRANTED);
+            history.record(toArray(temporarilyDenied), PermissionHistory.EVENT_DENIED);
+            history.record(toArray(permanentlyDenied), PermissionHistory.EVENT_PERMANENTLY_DENIED);
+        }
+        return permanentlyDenied;
     }
 
     /**
-     * Find all methods annotated with {@link AfterPermissionGranted} on a given object with the
-     * correct requestCode argument.
+     * @return the denied permissions the system won't prompt for anymore, as seen by the first
+     * Activity or Fragment receiver, or none if there is no such receiver.
+     */
+    @NonNull
+    private static List<String> getPermanentlyDenied(@NonNull List<String> denied,
+                                                     @NonNull Object... receivers) {
+        PermissionHelper<?> helper = getReceiverHelper(receivers);
+        if (helper == null || denied.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> permanentlyDenied = new ArrayList<>();
+        for (String perm : denied) {
+            // The settings screen of a special access permission can always be opened again
+            if (!SpecialAccess.isSpecial(perm) && helper.permissionPermanentlyDenied(perm)) {
+                permanentlyDenied.add(perm);
+            }
+        }
+        return permanentlyDenied;
+    }
+
+    /**
+     * @return the helper of the first Activity or Fragment receiver, or null.
+     */
+    @Nullable
+    private static PermissionHelper<?> getReceiverHelper(@NonNull Object... receivers) {
+        for (Object object : receivers) {
+            if (object instanceof Activity) {
+                return PermissionHelper.newInstance((Activity) object);
+            } else if (object instanceof Fragment) {
+                return PermissionHelper.newInstance((Fragment) object);
+            }
+        }
+        return null;
+    }
+
+    @NonNull
+    private static String[] toArray(@NonNull List<String> perms) {
+        return perms.toArray(new String[perms.size()]);
+    }
+
+    /**
+     * Check the grant state of each permission, without short-circuiting on the first denial.
      *
-     * @param object      the object with annotated methods.
-     * @param requestCode the requestCode passed to the annotation.
+     * @param context the calling context.
+     * @param perms   the permissions to check.
+     * @return one of {@link PackageManager#PERMISSION_GRANTED} or {@link
+     * PackageManager#PERMISSION_DENIED} for each permission, in order.
+     */
+    @NonNull
+    static int[] checkPermissions(@NonNull Context context, @NonNull String[] perms) {
+        int[] results = new int[perms.length];
+        for (int i = 0; i < perms.length; i++) {
+            if (SpecialAccess.isSpecial(perms[i])) {
+                results[i] = SpecialAccess.isGranted(context, perms[i])
+                        ? PackageManager.PERMISSION_GRANTED
+                        : PackageManager.PERMISSION_DENIED;
+                continue;
+            }
+            results[i] = Build.VERSION.SDK_INT < Build.VERSION_CODES.M
+                    ? PackageManager.PERMISSION_GRANTED
+                    : ContextCompat.checkSelfPermission(context, perms[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Report granted and denied permissions to each receiver.
+     *
+     * @param correlationId       the ID of the flow the result belongs to.
+     * @param requestCode         the request code to report.
+     * @param granted             the granted permissions, may be empty.
+     * @param denied              the denied permissions, may be empty.
+     * @param runAnnotatedMethods whether to run methods annotated with {@link
+     *                            AfterPermissionGranted} for the request code.
+     * @param receivers           the objects to notify.
      */
-    private static void runAnnotatedMethods(@NonNull Object object, int requestCode) {
-        Class clazz = object.getClass();
-        if (isUsingAndroidAnnotations(object)) {
-            clazz = clazz.getSuperclass();
-        }
-
-        while (clazz != null) {
-            for (Method method : clazz.getDeclaredMethods()) {
-                AfterPermissionGranted ann = method.getAnnotation(AfterPermissionGranted.class);
-                if (ann != null) {
-                    // Check for annotated methods with matching request code.
-                    if (ann.value() == requestCode) {
-                        // Method must be void so that we can invoke it
-                        if (method.getParameterTypes().length > 0) {
-                            throw new RuntimeException(
-                                    "Cannot execute method " + method.getName() + " because it is non-void method and/or has input parameters.");
-                        }
-
-                        try {
-                            // Make method accessible if private
-                            if (!method.isAccessible()) {
-                                method.setAccessible(true);
-                            }
-                            method.invoke(object);
-                        } catch (IllegalAccessException e) {
-                            Log.e(TAG, "runDefaultMethod:IllegalAccessException", e);
-                        } catch (InvocationTargetException e) {
-                            Log.e(TAG, "runDefaultMethod:InvocationTargetException", e);
-                        }
-                    }
+    static void notifyReceivers(int correlationId,
+                                int requestCode,
+                                @NonNull List<String> granted,
+                                @NonNull List<String> denied,
+                                boolean runAnnotatedMethods,
+                                @NonNull Object... receivers) {
+        boolean dispatched = false;
+
+        // iterate through all receivers
+        for (Object object : receivers) {
+            // Report granted permissions, if any.
+            if (!granted.isEmpty()) {
+                if (object instanceof PermissionCallbacks) {
+                    ((PermissionCallbacks) object).onPermissionsGranted(requestCode, granted);
+                }
+            }
+
+            // Report denied permissions, if any.
+            if (!denied.isEmpty()) {
+                if (object instanceof PermissionCallbacks) {
+                    ((PermissionCallbacks) object).onPermissionsDenied(requestCode, denied);
                 }
             }
 
-            clazz = clazz.getSuperclass();
+            if (runAnnotatedMethods) {
+                boolean traced = PermissionTrace.begin("EasyPermissions.runAnnotatedMethods");
+                try {
+                    dispatched |= runAnnotatedMethods(object, requestCode);
+                } finally {
+                    PermissionTrace.end(traced);
+                }
+            }
+        }
+
+        if (dispatched) {
+            PermissionEvents.emit(PermissionInstrumentation.EVENT_ANNOTATED_METHOD_DISPATCHED,
+                    correlationId, requestCode, granted);
         }
     }
 
     /**
-     * Determine if the project is using the AndroidAnnotations library.
+     * Open the app settings for a request a {@link RequestPolicy} decided not to prompt for. The
+     * result is reported through {@link #onActivityResult(int, Intent, Object...)}.
      */
-    private static boolean isUsingAndroidAnnotations(@NonNull Object object) {
-        if (!object.getClass().getSimpleName().endsWith("_")) {
-            return false;
+    private static void showAppSettingsDialog(@NonNull PermissionRequest request) {
+        Object host = request.getHelper().getHost();
+        AppSettingsDialog.Builder builder = host instanceof Fragment
+                ? new AppSettingsDialog.Builder((Fragment) host)
+                : new AppSettingsDialog.Builder((Activity) host);
+        builder.setCorrelationId(request.getCorrelationId())
+                .setRationale(request.getRationale())
+                .setPermissions(request.getPerms())
+                .build()
+                .show();
+    }
+
+    /**
+     * Report a request made after its host was destroyed. Nothing can be shown, so no other
+     * callback is called.
+     */
+    private static void notifyHostGone(@NonNull PermissionRequest request) {
+        PermissionLog.w(TAG, "Host of request " + request.getRequestCode()
+                + " is gone, not requesting permissions.");
+        PermissionEventLog.get().record(PermissionEventLog.CODE_HOST_GONE,
+                request.getCorrelationId(), request.getRequestCode(), request.getPerms());
+
+        OnHostGoneListener listener = request.getOnHostGoneListener();
+        if (listener != null) {
+            listener.onHostGone(request.getRequestCode(), request.getPerms());
         }
-        try {
-            Class clazz = Class.forName("org.androidannotations.api.view.HasViews");
-            return clazz.isInstance(object);
-        } catch (ClassNotFoundException e) {
-            return false;
+    }
+
+    /**
+     * Report the permissions of a request a {@link RequestPolicy} decided to deny as denied,
+     * without prompting. Nothing was asked, so there is no result to record.
+     */
+    private static void notifyDeniedWithoutPrompt(@NonNull PermissionRequest request) {
+        String[] perms = request.getPerms();
+        int[] results = checkPermissions(request.getHelper().getContext(), perms);
+        List<String> granted = new ArrayList<>();
+        List<String> denied = new ArrayList<>();
+        for (int i = 0; i < perms.length; i++) {
+            if (results[i] == PackageManager.PERMISSION_GRANTED) {
+                granted.add(perms[i]);
+            } else {
+                denied.add(perms[i]);
+            }
         }
+
+        notifyReceivers(request.getCorrelationId(), request.getRequestCode(), granted, denied,
+                false, request.getHelper().getHost());
+    }
+
+    /**
+     * Run permission callbacks on an object that requested permissions but already has them by
+     * reporting all of them as granted.
+     *
+     * @param object        the object requesting permissions.
+     * @param correlationId the ID of the request.
+     * @param requestCode   the permission request code.
+     * @param perms         a list of permissions requested.
+     */
+    private static void notifyAlreadyHasPermissions(@NonNull Object object,
+                                                    int correlationId,
+                                                    int requestCode,
+                                                    @NonNull String[] perms) {
+        // Nothing was asked, so there is no result to record
+        notifyReceivers(correlationId, requestCode, new ArrayList<>(Arrays.asList(perms)),
+                Collections.<String>emptyList(), true, object);
+    }
+
+    /**
+     * Find all methods annotated with {@link AfterPermissionGranted} on a given object with the
+     * correct requestCode argument.
+     *
+     * @param object      the object with annotated methods.
+     * @param requestCode the requestCode passed to the annotation.
+     * @return true if at least one method was run.
+     */
+    private static boolean runAnnotatedMethods(@NonNull Object object, int requestCode) {
+        return AnnotatedMethods.get(object.getClass()).invoke(object, requestCode);
     }
 }
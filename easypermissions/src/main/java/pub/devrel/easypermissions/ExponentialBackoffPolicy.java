@@ -0,0 +1,84 @@
+package pub.devrel.easypermissions;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * {@link RequestPolicy} that backs off exponentially from permissions the user keeps denying.
+ * <p>
+ * After the n-th recorded denial of a permission since it was last granted, it is not asked for
+ * again until {@code baseDelay * 2^(n - 1)} (at most {@code maxDelay}) has passed; until then
+ * requests are reported as denied without prompting. Once the delay has passed, denied permissions
+ * are asked for with a rationale, and permanently denied permissions are redirected to the {@link
+ * AppSettingsDialog}.
+ * <p>
+ * Requires a {@link PermissionHistory}, without one every request is handled as usual.
+ */
+public final class ExponentialBackoffPolicy implements RequestPolicy {
+
+    // Avoid overflowing the delay, it is capped by the max delay long before this
+    private static final int MAX_EXPONENT = 30;
+
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+
+    /**
+     * @param baseDelayMillis how long to wait after the first denial, in milliseconds.
+     * @param maxDelayMillis  the longest to wait after any number of denials, in milliseconds.
+     */
+    public ExponentialBackoffPolicy(long baseDelayMillis, long maxDelayMillis) {
+        if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Invalid delays: base=" + baseDelayMillis
+                    + ", max=" + maxDelayMillis);
+        }
+
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+    }
+
+    @Override
+    public int decide(@NonNull PermissionRequest request, @Nullable PermissionHistory history) {
+        if (history == null) {
+            return DECISION_DEFAULT;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean someDenied = false;
+        boolean somePermanentlyDenied = false;
+        for (String perm : request.getPerms()) {
+            PermissionHistory.Record record = history.get(perm);
+            long lastGranted = record.getLastTimeMillis(PermissionHistory.EVENT_GRANTED);
+            long lastDenied = record.getLastTimeMillis(PermissionHistory.EVENT_DENIED);
+            long lastPermanentlyDenied =
+                    record.getLastTimeMillis(PermissionHistory.EVENT_PERMANENTLY_DENIED);
+
+            // Only denials since the permission was last granted count
+            long lastAnyDenied = Math.max(lastDenied, lastPermanentlyDenied);
+            if (lastAnyDenied <= lastGranted) {
+                continue;
+            }
+
+            int denials = record.getCountSince(PermissionHistory.EVENT_DENIED, lastGranted)
+                    + record.getCountSince(PermissionHistory.EVENT_PERMANENTLY_DENIED, lastGranted);
+            if (now - lastAnyDenied < getDelayMillis(denials)) {
+                return DECISION_DENY;
+            }
+
+            someDenied = true;
+            somePermanentlyDenied |= lastPermanentlyDenied >= lastDenied;
+        }
+
+        if (somePermanentlyDenied) {
+            return DECISION_APP_SETTINGS;
+        } else if (someDenied) {
+            return DECISION_RATIONALE;
+        } else {
+            return DECISION_DEFAULT;
+        }
+    }
+
+    private long getDelayMillis(int denials) {
+        int exponent = Math.min(Math.max(denials - 1, 0), MAX_EXPONENT);
+        return Math.min(mBaseDelayMillis << exponent, mMaxDelayMillis);
+    }
+}
@@ -0,0 +1,58 @@
+package pub.devrel.easypermissions;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link RequestPolicy} that limits how many times each permission is prompted for in a session.
+ * Only the system prompts that are issued count, once the limit is reached further requests are
+ * reported as denied without prompting.
+ * <p>
+ * A session lasts as long as the policy instance, so a policy set once in {@code
+ * Application#onCreate()} limits prompts per process.
+ */
+public final class MaxPromptsPerSessionPolicy implements RequestPolicy {
+
+    private final int mMaxPrompts;
+    private final Map<String, Integer> mPrompts = new HashMap<>();
+
+    /**
+     * @param maxPrompts how many times each permission may be prompted for, at least 1.
+     */
+    public MaxPromptsPerSessionPolicy(int maxPrompts) {
+        if (maxPrompts < 1) {
+            throw new IllegalArgumentException("maxPrompts must be at least 1: " + maxPrompts);
+        }
+
+        mMaxPrompts = maxPrompts;
+    }
+
+    @Override
+    public synchronized int decide(@NonNull PermissionRequest request,
+                                   @Nullable PermissionHistory history) {
+        for (String perm : request.getPerms()) {
+            if (getPrompts(perm) >= mMaxPrompts) {
+                return DECISION_DENY;
+            }
+        }
+        return DECISION_DEFAULT;
+    }
+
+    /**
+     * Count a system prompt, once it is issued. A request whose rationale is declined, or that is
+     * cancelled before its turn, doesn't prompt.
+     */
+    synchronized void onPromptIssued(@NonNull String... perms) {
+        for (String perm : perms) {
+            mPrompts.put(perm, getPrompts(perm) + 1);
+        }
+    }
+
+    private int getPrompts(@NonNull String perm) {
+        Integer prompts = mPrompts.get(perm);
+        return prompts != null ? prompts : 0;
+    }
+}
@@ -0,0 +1,18 @@
+package pub.devrel.easypermissions;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Notified when a {@link PermissionRequest} or an {@link AppSettingsDialog} is used after its
+ * Activity or Fragment was destroyed, in which case nothing is shown and no other callback is
+ * called. Requests and dialogs only reference their host weakly, so this listener should not
+ * reference it either.
+ */
+public interface OnHostGoneListener {
+
+    /**
+     * @param requestCode the request code of the request or dialog.
+     * @param perms       the permissions of the request or dialog, may be empty.
+     */
+    void onHostGone(int requestCode, @NonNull String[] perms);
+}
@@ -0,0 +1,34 @@
+package pub.devrel.easypermissions;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Notified when permissions that are not declared in the app's merged manifest are checked or
+ * requested. The system denies such permissions without asking the user, which looks like a user
+ * decision, so this is almost always a missing {@code <uses-permission>} tag.
+ *
+ * @see EasyPermissions#setManifestVerification(android.content.Context,
+ * OnUndeclaredPermissionsListener)
+ */
+public interface OnUndeclaredPermissionsListener {
+
+    /**
+     * Throws an {@link IllegalStateException}, for example in debug builds.
+     */
+    OnUndeclaredPermissionsListener THROW = new OnUndeclaredPermissionsListener() {
+        @Override
+        public void onUndeclaredPermissions(@NonNull String[] perms) {
+            throw new IllegalStateException("Permissions not declared in the manifest: "
+                    + Arrays.toString(perms));
+        }
+    };
+
+    /**
+     * Called on the thread that checked or requested the permissions.
+     *
+     * @param perms the undeclared permissions.
+     */
+    void onUndeclaredPermissions(@NonNull String[] perms);
+}
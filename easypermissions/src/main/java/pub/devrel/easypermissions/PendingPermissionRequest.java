@@ -0,0 +1,566 @@
+package pub.devrel.easypermissions;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import pub.devrel.easypermissions.helper.CorrelationIds;
+import pub.devrel.easypermissions.helper.PermissionEventLog;
+import pub.devrel.easypermissions.helper.PermissionHelper;
+import pub.devrel.easypermissions.helper.PermissionLog;
+
+/**
+ * Handle of a request made with {@link EasyPermissions#startRequest(PermissionRequest)}. The request
+ * is pending until its result is delivered or its rationale is declined.
+ * <p>
+ * A pending request is cancelled by {@link #cancel()}, when the timeout set with {@link
+ * PermissionRequest.Builder#setTimeoutMillis(long)} elapses, or when its host is destroyed for good.
+ * A host recreated for a configuration change doesn't cancel the request, its result is delivered
+ * to the new instance. Only a rationale dialog is restored in the new instance, so a request whose
+ * rationale was rendered, or that still waited for its turn, is cancelled once the new instance is
+ * resumed. Cancelling dismisses the rationale if it is showing and drops it if it is
+ * queued. The system prompt can't be dismissed, so if it is showing its result is still recorded,
+ * but not delivered to the receivers.
+ * <p>
+ * Must only be used from the main thread.
+ */
+public final class PendingPermissionRequest {
+
+    /**
+     * Notified when a pending request is cancelled.
+     */
+    public interface OnCancelledListener {
+
+        /**
+         * @param pending the cancelled request.
+         * @param reason  one of the {@code REASON_*} constants.
+         */
+        void onCancelled(@NonNull PendingPermissionRequest pending, int reason);
+    }
+
+    /**
+     * The request was cancelled with {@link #cancel()}.
+     */
+    public static final int REASON_CANCELLED = 0;
+
+    /**
+     * The timeout of the request elapsed.
+     */
+    public static final int REASON_TIMED_OUT = 1;
+
+    /**
+     * The host of the request was destroyed.
+     */
+    public static final int REASON_HOST_DESTROYED = 2;
+
+    private static final String TAG = "PendingRequest";
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_FINISHED = 1;
+    private static final int STATE_CANCELLED = 2;
+
+    // Most cancelled requests remembered, their answer or result usually arrives soon if at all
+    private static final int DISCARDED_CAPACITY = 32;
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+    // Main thread only, by correlation ID
+    private static final SparseArray<PendingPermissionRequest> sPending = new SparseArray<>();
+    // Main thread only, requests handled without a prompt during their debounce window
+    private static final ArrayList<PendingPermissionRequest> sHandled = new ArrayList<>();
+    private static final ArrayDeque<Integer> sDiscarded = new ArrayDeque<>();
+
+    private final PermissionRequest mRequest;
+    private final long mStartMillis = SystemClock.uptimeMillis();
+    private int mState = STATE_PENDING;
+    private OnCancelledListener mListener;
+    private PromptCoordinator mCoordinator;
+
+    private final Runnable mTimeout = new Runnable() {
+        @Override
+        public void run() {
+            cancel(REASON_TIMED_OUT);
+        }
+    };
+    private boolean mWatching;
+    private boolean mPausedWhileIssued;
+    private boolean mRationaleRestored;
+    private Lifecycle mWatchedLifecycle;
+    private LifecycleEventObserver mLifecycleObserver;
+    private Application mWatchedApplication;
+    private Application.ActivityLifecycleCallbacks mActivityCallbacks;
+
+    private PendingPermissionRequest(@NonNull PermissionRequest request) {
+        mRequest = request;
+    }
+
+    /**
+     * @param request the request that was made.
+     * @param pending false if the request already finished, for example because the permissions
+     *                were already granted.
+     */
+    @MainThread
+    @NonNull
+    static PendingPermissionRequest start(@NonNull PermissionRequest request, boolean pending) {
+        PendingPermissionRequest handle = new PendingPermissionRequest(request);
+        if (!pending) {
+            handle.mState = STATE_FINISHED;
+            return handle;
+        }
+
+        // The same request made again replaces the previous handle
+        PendingPermissionRequest previous = sPending.get(request.getCorrelationId());
+        if (previous != null) {
+            previous.finish();
+        }
+
+        sPending.put(request.getCorrelationId(), handle);
+        if (request.getTimeoutMillis() > 0) {
+            // Handler delays are measured on the monotonic uptime clock
+            sHandler.postDelayed(handle.mTimeout, request.getTimeoutMillis());
+        }
+        handle.watch(request.getHelper().getHost());
+        return handle;
+    }
+
+    /**
+     * Start a request that was handled without a prompt, for example by opening a settings screen.
+     * It is finished right away but duplicates made within the window are still joined to it.
+     *
+     * @param windowMillis how long duplicates are joined to the request.
+     */
+    @MainThread
+    @NonNull
+    static PendingPermissionRequest startHandled(@NonNull PermissionRequest request,
+                                                 long windowMillis) {
+        final PendingPermissionRequest handle = start(request, false);
+        if (windowMillis > 0) {
+            sHandled.add(handle);
+            sHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    sHandled.remove(handle);
+                }
+            }, windowMillis);
+        }
+        return handle;
+    }
+
+    /**
+     * Find a request a new request duplicates, such as one made by a double tap.
+     *
+     * @param windowMillis how long after a request is made duplicates are joined to it.
+     * @return the pending or handled request for the same permissions and request code, from the
+     * same host, made less than {@code windowMillis} ago, or null.
+     */
+    @MainThread
+    @Nullable
+    static PendingPermissionRequest findDuplicate(@NonNull PermissionRequest request,
+                                                  long windowMillis) {
+        if (windowMillis <= 0) {
+            return null;
+        }
+
+        PermissionHelper helper = request.getHelper();
+        if (helper.isHostGone()) {
+            return null;
+        }
+
+        long now = SystemClock.uptimeMillis();
+        for (int i = 0; i < sPending.size(); i++) {
+            PendingPermissionRequest pending = sPending.valueAt(i);
+            if (pending.duplicates(request, helper, now, windowMillis)) {
+                return pending;
+            }
+        }
+        for (int i = 0; i < sHandled.size(); i++) {
+            PendingPermissionRequest handled = sHandled.get(i);
+            if (handled.duplicates(request, helper, now, windowMillis)) {
+                return handled;
+            }
+        }
+        return null;
+    }
+
+    private boolean duplicates(@NonNull PermissionRequest request, @NonNull PermissionHelper helper,
+                               long now, long windowMillis) {
+        PermissionHelper other = mRequest.getHelper();
+        return now - mStartMillis < windowMillis
+                && mRequest.equals(request)
+                && !other.isHostGone()
+                && other.getHost() == helper.getHost();
+    }
+
+    /**
+     * Called when the result of a request arrives.
+     *
+     * @return false if the request was cancelled and the result must not be delivered.
+     */
+    static boolean onResult(int correlationId) {
+        if (sDiscarded.remove(correlationId)) {
+            return false;
+        }
+
+        PendingPermissionRequest pending = sPending.get(correlationId);
+        if (pending != null) {
+            pending.finish();
+        }
+        return true;
+    }
+
+    /**
+     * Called when the rationale of a request is answered.
+     *
+     * @return false if the request was cancelled and the answer must be ignored.
+     */
+    static boolean onRationaleAnswered(int correlationId, boolean accepted) {
+        if (sDiscarded.remove(correlationId)) {
+            return false;
+        }
+
+        PendingPermissionRequest pending = sPending.get(correlationId);
+        if (pending != null && !accepted) {
+            pending.finish();
+        }
+        return true;
+    }
+
+    /**
+     * Called when the rationale dialog of a request is restored in a recreated host.
+     */
+    static void onRationaleRestored(int correlationId) {
+        PendingPermissionRequest pending = sPending.get(correlationId);
+        if (pending != null) {
+            pending.mRationaleRestored = true;
+        }
+    }
+
+    /**
+     * @return true if the request was cancelled before its rationale could be shown.
+     */
+    static boolean isDiscarded(int correlationId) {
+        return sDiscarded.contains(correlationId);
+    }
+
+    /**
+     * Set the coordinator the request waits in for its turn to prompt.
+     */
+    void setCoordinator(@NonNull PromptCoordinator coordinator) {
+        mCoordinator = coordinator;
+    }
+
+    /**
+     * @return the request.
+     */
+    @NonNull
+    public PermissionRequest getRequest() {
+        return mRequest;
+    }
+
+    /**
+     * @return true until the request finishes or is cancelled.
+     */
+    @MainThread
+    public boolean isPending() {
+        return mState == STATE_PENDING;
+    }
+
+    /**
+     * @return true if the request was cancelled, for any reason.
+     */
+    @MainThread
+    public boolean isCancelled() {
+        return mState == STATE_CANCELLED;
+    }
+
+    /**
+     * Set the listener notified if the request is cancelled.
+     *
+     * @return this handle.
+     */
+    @MainThread
+    @NonNull
+    public PendingPermissionRequest setOnCancelledListener(
+            @Nullable OnCancelledListener listener) {
+        mListener = listener;
+        return this;
+    }
+
+    /**
+     * Cancel the request if it is pending.
+     *
+     * @return true if the request was cancelled, false if it was not pending anymore.
+     */
+    @MainThread
+    public boolean cancel() {
+        return cancel(REASON_CANCELLED);
+    }
+
+    private boolean cancel(int reason) {
+        if (mState != STATE_PENDING) {
+            return false;
+        }
+
+        mState = STATE_CANCELLED;
+        release();
+        discard(mRequest.getCorrelationId());
+
+        PermissionHelper helper = mRequest.getHelper();
+        if (!helper.isHostGone()) {
+            helper.cancelRationale(mRequest);
+        }
+
+        PermissionLog.d(TAG, "Cancelled request " + mRequest.getRequestCode()
+                + ", reason " + reason + ".");
+        PermissionEventLog.get().record(PermissionEventLog.CODE_CANCELLED,
+                mRequest.getCorrelationId(), mRequest.getRequestCode(), mRequest.getPerms());
+        if (mListener != null) {
+            mListener.onCancelled(this, reason);
+        }
+        return true;
+    }
+
+    /**
+     * Finish the request without a result, for example because it no longer needs a prompt.
+     */
+    void finish() {
+        if (mState == STATE_PENDING) {
+            mState = STATE_FINISHED;
+            release();
+        }
+    }
+
+    private void release() {
+        int correlationId = mRequest.getCorrelationId();
+        if (sPending.get(correlationId) == this) {
+            sPending.remove(correlationId);
+        }
+        sHandler.removeCallbacks(mTimeout);
+        unwatch();
+        if (mCoordinator != null) {
+            mCoordinator.onFinished(this);
+        }
+    }
+
+    private static void discard(int correlationId) {
+        if (correlationId == CorrelationIds.NONE || sDiscarded.contains(correlationId)) {
+            return;
+        }
+
+        if (sDiscarded.size() >= DISCARDED_CAPACITY) {
+            sDiscarded.poll();
+        }
+        sDiscarded.add(correlationId);
+    }
+
+    private void watch(@NonNull Object host) {
+        if (host instanceof LifecycleOwner) {
+            final Object watched = host;
+            mWatchedLifecycle = ((LifecycleOwner) host).getLifecycle();
+            mLifecycleObserver = new LifecycleEventObserver() {
+                @Override
+                public void onStateChanged(@NonNull LifecycleOwner source,
+                                           @NonNull Lifecycle.Event event) {
+                    if (event == Lifecycle.Event.ON_START) {
+                        onHostStarted();
+                    } else if (event == Lifecycle.Event.ON_RESUME) {
+                        onHostResumed();
+                    } else if (event == Lifecycle.Event.ON_PAUSE
+                            || event == Lifecycle.Event.ON_STOP) {
+                        onHostPaused();
+                    } else if (event == Lifecycle.Event.ON_DESTROY) {
+                        onHostDestroyed(watched instanceof Fragment
+                                ? ((Fragment) watched).getActivity()
+                                : (Activity) watched);
+                    }
+                }
+            };
+            // Adding the observer replays the events up to the current state, ignore them
+            mWatchedLifecycle.addObserver(mLifecycleObserver);
+        } else if (host instanceof Activity) {
+            // Weak, the application outlives the host
+            final WeakReference<Activity> watched = new WeakReference<>((Activity) host);
+            mWatchedApplication = ((Activity) host).getApplication();
+            mActivityCallbacks = new Application.ActivityLifecycleCallbacks() {
+                @Override
+                public void onActivityDestroyed(Activity activity) {
+                    if (activity == watched.get()) {
+                        onHostDestroyed(activity);
+                    }
+                }
+
+                @Override
+                public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+                }
+
+                @Override
+                public void onActivityStarted(Activity activity) {
+                    if (activity == watched.get()) {
+                        onHostStarted();
+                    }
+                }
+
+                @Override
+                public void onActivityResumed(Activity activity) {
+                    if (activity == watched.get()) {
+                        onHostResumed();
+                    }
+                }
+
+                @Override
+                public void onActivityPaused(Activity activity) {
+                    if (activity == watched.get()) {
+                        onHostPaused();
+                    }
+                }
+
+                @Override
+                public void onActivityStopped(Activity activity) {
+                    if (activity == watched.get()) {
+                        onHostPaused();
+                    }
+                }
+
+                @Override
+                public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+                }
+            };
+            mWatchedApplication.registerActivityLifecycleCallbacks(mActivityCallbacks);
+        }
+        mWatching = true;
+    }
+
+    private void unwatch() {
+        mWatching = false;
+        if (mWatchedLifecycle != null) {
+            mWatchedLifecycle.removeObserver(mLifecycleObserver);
+            mWatchedLifecycle = null;
+            mLifecycleObserver = null;
+        }
+        if (mWatchedApplication != null) {
+            mWatchedApplication.unregisterActivityLifecycleCallbacks(mActivityCallbacks);
+            mWatchedApplication = null;
+            mActivityCallbacks = null;
+        }
+    }
+
+    private void onHostStarted() {
+        if (mWatching && mCoordinator != null) {
+            // The request may be waiting for its host to be started
+            mCoordinator.next();
+        }
+    }
+
+    private void onHostPaused() {
+        // The system prompt pauses the host, a pause before the request is made is not the prompt
+        if (mWatching && CorrelationIds.isIssued(mRequest.getCorrelationId())) {
+            mPausedWhileIssued = true;
+        }
+    }
+
+    private void onHostResumed() {
+        // The host is resumed once the system prompt closes, after its result was delivered. If
+        // the app didn't pass the result on, the request would otherwise stay pending for good.
+        // A request made before its host is first resumed is resumed while it still prompts.
+        if (mWatching && mPausedWhileIssued
+                && CorrelationIds.isIssued(mRequest.getCorrelationId())) {
+            finish();
+        }
+    }
+
+    private void onHostDestroyed(@Nullable Activity activity) {
+        if (activity != null && activity.isChangingConfigurations()) {
+            // The recreated host receives the result, watch it instead of this instance
+            unwatch();
+            watchRecreated(activity);
+            return;
+        }
+
+        cancel(REASON_HOST_DESTROYED);
+    }
+
+    private void watchRecreated(@NonNull Activity destroyed) {
+        final Class<?> hostClass = destroyed.getClass();
+        mWatchedApplication = destroyed.getApplication();
+        mActivityCallbacks = new Application.ActivityLifecycleCallbacks() {
+            private WeakReference<Activity> mRecreated;
+
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+                if (mRecreated == null && activity.getClass() == hostClass) {
+                    mRecreated = new WeakReference<>(activity);
+                }
+            }
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+                if (mRecreated != null && activity == mRecreated.get()) {
+                    onRecreatedHostResumed(activity);
+                }
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+                if (mRecreated != null && activity == mRecreated.get()) {
+                    onHostDestroyed(activity);
+                }
+            }
+        };
+        mWatchedApplication.registerActivityLifecycleCallbacks(mActivityCallbacks);
+        mWatching = true;
+    }
+
+    private void onRecreatedHostResumed(@NonNull Activity activity) {
+        unwatch();
+        if (CorrelationIds.isIssued(mRequest.getCorrelationId())) {
+            // The result is delivered before the recreated host is resumed, it wasn't passed on
+            finish();
+        } else if (mRationaleRestored) {
+            // The rationale dialog was restored in the recreated host and still makes the request
+            watch(activity);
+        } else {
+            // A rendered or queued rationale, or a request still waiting for its turn, is lost
+            cancel(REASON_HOST_DESTROYED);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PendingPermissionRequest{" +
+                "mRequest=" + mRequest +
+                ", mState=" + mState +
+                '}';
+    }
+}
@@ -0,0 +1,221 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.content.Context;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A table of the SDK levels each permission applies to. Outside of its range a permission doesn't
+ * exist yet, such as {@code POST_NOTIFICATIONS} before API 33, or no longer grants anything, such
+ * as {@link Manifest.permission#WRITE_EXTERNAL_STORAGE} from API 30. The system can only answer
+ * such a permission with a denial, so {@link EasyPermissions#hasPermissions} treats it as granted
+ * and {@link EasyPermissions#requestPermissions(PermissionRequest)} leaves it out of the system
+ * request, and out of the reported result.
+ * <p>
+ * A permission applies from its first SDK level on the running SDK. Up to its last SDK level, it
+ * applies on the running SDK or the app's target SDK, whichever is lower: a permission that no
+ * longer grants anything, such as {@link Manifest.permission#READ_EXTERNAL_STORAGE} from API 33,
+ * still does for apps targeting an older SDK.
+ * <p>
+ * Which permissions don't apply is computed once for the app's target SDK, on first use. Tables
+ * are immutable and thread safe, {@link #DEFAULT} may be extended with {@link
+ * Builder#Builder(PermissionApplicability)} and replaced with {@link
+ * EasyPermissions#setPermissionApplicability(PermissionApplicability)}.
+ */
+public final class PermissionApplicability {
+
+    /**
+     * Range bound for permissions that still apply on the latest SDK.
+     */
+    public static final int NO_MAX_SDK = Integer.MAX_VALUE;
+
+    /**
+     * The SDK ranges of the platform permissions that don't apply on every SDK from API 23.
+     */
+    @NonNull
+    public static final PermissionApplicability DEFAULT = new Builder()
+            .setSdkRange(Manifest.permission.READ_PHONE_NUMBERS, Build.VERSION_CODES.O, NO_MAX_SDK)
+            .setSdkRange(Manifest.permission.ANSWER_PHONE_CALLS, Build.VERSION_CODES.O, NO_MAX_SDK)
+            .setSdkRange(Manifest.permission.ACCEPT_HANDOVER, Build.VERSION_CODES.P, NO_MAX_SDK)
+            .setSdkRange(Manifest.permission.ACCESS_BACKGROUND_LOCATION, Build.VERSION_CODES.Q,
+                    NO_MAX_SDK)
+            .setSdkRange(Manifest.permission.ACCESS_MEDIA_LOCATION, Build.VERSION_CODES.Q,
+                    NO_MAX_SDK)
+            .setSdkRange(Manifest.permission.ACTIVITY_RECOGNITION, Build.VERSION_CODES.Q,
+                    NO_MAX_SDK)
+            .setSdkRange(Manifest.permission.MANAGE_EXTERNAL_STORAGE, Build.VERSION_CODES.R,
+                    NO_MAX_SDK)
+            .setSdkRange(Manifest.permission.WRITE_EXTERNAL_STORAGE, Build.VERSION_CODES.M,
+                    Build.VERSION_CODES.Q)
+            .setSdkRange(Manifest.permission.READ_EXTERNAL_STORAGE, Build.VERSION_CODES.M,
+                    32 /* S_V2 */)
+            // Not in the compile SDK yet
+            .setSdkRange("android.permission.BLUETOOTH_SCAN", 31 /* S */, NO_MAX_SDK)
+            .setSdkRange("android.permission.BLUETOOTH_CONNECT", 31 /* S */, NO_MAX_SDK)
+            .setSdkRange("android.permission.BLUETOOTH_ADVERTISE", 31 /* S */, NO_MAX_SDK)
+            .setSdkRange("android.permission.UWB_RANGING", 31 /* S */, NO_MAX_SDK)
+            .setSdkRange("android.permission.POST_NOTIFICATIONS", 33 /* TIRAMISU */, NO_MAX_SDK)
+            .setSdkRange("android.permission.NEARBY_WIFI_DEVICES", 33 /* TIRAMISU */, NO_MAX_SDK)
+            .setSdkRange("android.permission.BODY_SENSORS_BACKGROUND", 33 /* TIRAMISU */,
+                    NO_MAX_SDK)
+            .setSdkRange("android.permission.READ_MEDIA_IMAGES", 33 /* TIRAMISU */, NO_MAX_SDK)
+            .setSdkRange("android.permission.READ_MEDIA_VIDEO", 33 /* TIRAMISU */, NO_MAX_SDK)
+            .setSdkRange("android.permission.READ_MEDIA_AUDIO", 33 /* TIRAMISU */, NO_MAX_SDK)
+            .build();
+
+    // Permission to its {min, max} SDK, both inclusive
+    private final Map<String, int[]> mRanges;
+    private final int mSdkInt;
+    // Apps have a single target SDK, recomputed only if another one is seen
+    private volatile NotApplicable mNotApplicable;
+
+    private PermissionApplicability(@NonNull Map<String, int[]> ranges, int sdkInt) {
+        mRanges = ranges;
+        mSdkInt = sdkInt;
+    }
+
+    /**
+     * @param context any context of the app, to read its target SDK.
+     * @return true if the permission applies to the app on the running SDK, which is the case of
+     * every permission not in the table.
+     */
+    public boolean isApplicable(@NonNull Context context, @NonNull String perm) {
+        return !getNotApplicable(context).contains(perm);
+    }
+
+    /**
+     * @return the permissions that apply to the app on the running SDK, or {@code perms} itself if
+     * all do.
+     */
+    @NonNull
+    String[] filter(@NonNull Context context, @NonNull String[] perms) {
+        Set<String> notApplicable = getNotApplicable(context);
+        List<String> applicable = null;
+        for (int i = 0; i < perms.length; i++) {
+            if (!notApplicable.contains(perms[i])) {
+                if (applicable != null) {
+                    applicable.add(perms[i]);
+                }
+            } else if (applicable == null) {
+                // Only copied once a permission is left out, most requests have none
+                applicable = new ArrayList<>(perms.length);
+                for (int j = 0; j < i; j++) {
+                    applicable.add(perms[j]);
+                }
+            }
+        }
+        return applicable != null ? applicable.toArray(new String[0]) : perms;
+    }
+
+    @NonNull
+    private Set<String> getNotApplicable(@NonNull Context context) {
+        int targetSdkInt = context.getApplicationInfo().targetSdkVersion;
+        NotApplicable notApplicable = mNotApplicable;
+        if (notApplicable != null && notApplicable.targetSdkInt == targetSdkInt) {
+            return notApplicable.perms;
+        }
+
+        // Apps targeting an older SDK keep the behavior of permissions that stopped applying
+        int legacySdkInt = Math.min(mSdkInt, targetSdkInt);
+        Set<String> perms = new HashSet<>();
+        for (Map.Entry<String, int[]> entry : mRanges.entrySet()) {
+            int[] range = entry.getValue();
+            if (mSdkInt < range[0] || (range[1] != NO_MAX_SDK && legacySdkInt > range[1])) {
+                perms.add(entry.getKey());
+            }
+        }
+        notApplicable = new NotApplicable(targetSdkInt, Collections.unmodifiableSet(perms));
+        mNotApplicable = notApplicable;
+        return notApplicable.perms;
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionApplicability{" +
+                "mSdkInt=" + mSdkInt +
+                ", mRanges=" + mRanges.keySet() +
+                '}';
+    }
+
+    private static final class NotApplicable {
+        final int targetSdkInt;
+        final Set<String> perms;
+
+        NotApplicable(int targetSdkInt, @NonNull Set<String> perms) {
+            this.targetSdkInt = targetSdkInt;
+            this.perms = perms;
+        }
+    }
+
+    /**
+     * Builder of an applicability table.
+     */
+    public static final class Builder {
+
+        private final Map<String, int[]> mRanges = new HashMap<>();
+        private int mSdkInt = Build.VERSION.SDK_INT;
+
+        /**
+         * Start an empty table.
+         */
+        public Builder() {
+        }
+
+        /**
+         * Start from the entries of another table, such as {@link #DEFAULT}.
+         */
+        public Builder(@NonNull PermissionApplicability applicability) {
+            mRanges.putAll(applicability.mRanges);
+        }
+
+        /**
+         * Set the SDK levels a permission applies to, replacing its previous range.
+         *
+         * @param perm   the permission.
+         * @param minSdk the first SDK level it applies to.
+         * @param maxSdk the last SDK level it applies to, or {@link #NO_MAX_SDK}.
+         */
+        @NonNull
+        public Builder setSdkRange(@NonNull String perm, int minSdk, int maxSdk) {
+            if (minSdk > maxSdk) {
+                throw new IllegalArgumentException("Empty SDK range for " + perm + ": "
+                        + minSdk + " > " + maxSdk);
+            }
+            mRanges.put(perm, new int[]{minSdk, maxSdk});
+            return this;
+        }
+
+        /**
+         * Treat a permission as applicable on every SDK level.
+         */
+        @NonNull
+        public Builder remove(@NonNull String perm) {
+            mRanges.remove(perm);
+            return this;
+        }
+
+        /**
+         * Build the table for another SDK level than the running one, for tests.
+         */
+        @NonNull
+        Builder setSdkInt(int sdkInt) {
+            mSdkInt = sdkInt;
+            return this;
+        }
+
+        @NonNull
+        public PermissionApplicability build() {
+            return new PermissionApplicability(new HashMap<>(mRanges), mSdkInt);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Size;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A table of permissions that can only be requested once others are granted, used to plan the
+ * stages of a {@link StagedPermissionRequest}. For example {@link
+ * Manifest.permission#ACCESS_BACKGROUND_LOCATION} is only granted once fine or coarse location is,
+ * and has to be requested on its own.
+ * <p>
+ * Tables are immutable, {@link #DEFAULT} covers the permissions of the platform and may be
+ * extended with {@link Builder#Builder(PermissionDependencies)}.
+ *
+ * @see EasyPermissions#requestPermissions(PermissionRequest, PermissionDependencies)
+ */
+public final class PermissionDependencies {
+
+    /**
+     * The dependencies of the platform permissions.
+     */
+    @NonNull
+    public static final PermissionDependencies DEFAULT = new Builder()
+            .require(Manifest.permission.ACCESS_BACKGROUND_LOCATION,
+                    Manifest.permission.ACCESS_FINE_LOCATION,
+                    Manifest.permission.ACCESS_COARSE_LOCATION)
+            .requestAlone(Manifest.permission.ACCESS_BACKGROUND_LOCATION)
+            .build();
+
+    // Permission to the permissions it requires, any one of them is enough
+    private final Map<String, String[]> mRequirements;
+    private final Set<String> mAlone;
+
+    private PermissionDependencies(@NonNull Map<String, String[]> requirements,
+                                   @NonNull Set<String> alone) {
+        mRequirements = requirements;
+        mAlone = alone;
+    }
+
+    /**
+     * Plan the stages to request permissions in, the fewest that request each permission after
+     * one of the permissions it requires. A permission whose requirements are not in {@code
+     * perms} is planned in the first stage, it is only granted if one of them already is.
+     *
+     * @param perms the permissions to request.
+     * @return the permissions of each stage, in order.
+     */
+    @NonNull
+    public List<String[]> plan(@NonNull String... perms) {
+        Set<String> requested = new LinkedHashSet<>(Arrays.asList(perms));
+        Map<String, Integer> depths = new HashMap<>();
+        int maxDepth = 0;
+        for (String perm : requested) {
+            maxDepth = Math.max(maxDepth, depth(perm, requested, depths));
+        }
+
+        List<String[]> stages = new ArrayList<>();
+        for (int depth = 0; depth <= maxDepth; depth++) {
+            List<String> together = new ArrayList<>();
+            List<String> alone = new ArrayList<>();
+            for (String perm : requested) {
+                if (depths.get(perm) != depth) {
+                    continue;
+                }
+                if (mAlone.contains(perm)) {
+                    alone.add(perm);
+                } else {
+                    together.add(perm);
+                }
+            }
+
+            if (!together.isEmpty()) {
+                stages.add(together.toArray(new String[0]));
+            }
+            for (String perm : alone) {
+                stages.add(new String[]{perm});
+            }
+        }
+        return stages;
+    }
+
+    /**
+     * @return true if the permission requires no other, or one of the permissions it requires is
+     * granted.
+     */
+    boolean isSatisfied(@NonNull Context context, @NonNull String perm) {
+        String[] required = mRequirements.get(perm);
+        if (required == null) {
+            return true;
+        }
+
+        for (String requirement : required) {
+            if (EasyPermissions.hasPermissionsQuietly(context, requirement)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the stage of a permission: one after the earliest of the permissions it requires,
+     * since any one of them is enough.
+     */
+    private int depth(@NonNull String perm,
+                      @NonNull Set<String> requested,
+                      @NonNull Map<String, Integer> depths) {
+        Integer known = depths.get(perm);
+        if (known != null) {
+            return known;
+        }
+
+        int depth = 0;
+        String[] required = mRequirements.get(perm);
+        if (required != null) {
+            int earliest = -1;
+            for (String requirement : required) {
+                if (requested.contains(requirement)) {
+                    int requirementDepth = depth(requirement, requested, depths);
+                    earliest = earliest < 0
+                            ? requirementDepth
+                            : Math.min(earliest, requirementDepth);
+                }
+            }
+            depth = earliest + 1;
+        }
+
+        depths.put(perm, depth);
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder requirements = new StringBuilder();
+        for (Map.Entry<String, String[]> entry : mRequirements.entrySet()) {
+            requirements.append(entry.getKey()).append("=")
+                    .append(Arrays.toString(entry.getValue())).append(", ");
+        }
+        return "PermissionDependencies{" +
+                "mRequirements={" + requirements + "}" +
+                ", mAlone=" + mAlone +
+                '}';
+    }
+
+    /**
+     * Builder of a dependency table.
+     */
+    public static final class Builder {
+
+        private final Map<String, String[]> mRequirements = new HashMap<>();
+        private final Set<String> mAlone = new HashSet<>();
+
+        /**
+         * Start an empty table.
+         */
+        public Builder() {
+        }
+
+        /**
+         * Start from the entries of another table, such as {@link #DEFAULT}.
+         */
+        public Builder(@NonNull PermissionDependencies dependencies) {
+            mRequirements.putAll(dependencies.mRequirements);
+            mAlone.addAll(dependencies.mAlone);
+        }
+
+        /**
+         * Only request a permission once one of some other permissions is granted. Replaces the
+         * previous requirements of the permission.
+         *
+         * @param perm  the dependent permission.
+         * @param anyOf the permissions it requires, any one of them is enough.
+         */
+        @NonNull
+        public Builder require(@NonNull String perm, @NonNull @Size(min = 1) String... anyOf) {
+            if (anyOf.length == 0) {
+                throw new IllegalArgumentException("No requirement for " + perm);
+            }
+            mRequirements.put(perm, anyOf.clone());
+            return this;
+        }
+
+        /**
+         * Request a permission in a stage of its own, for permissions the system only grants when
+         * asked for alone.
+         */
+        @NonNull
+        public Builder requestAlone(@NonNull String perm) {
+            mAlone.add(perm);
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if a permission requires itself, directly or not.
+         */
+        @NonNull
+        public PermissionDependencies build() {
+            Set<String> checked = new HashSet<>();
+            for (String perm : mRequirements.keySet()) {
+                checkAcyclic(perm, new HashSet<String>(), checked);
+            }
+            return new PermissionDependencies(new HashMap<>(mRequirements),
+                    new HashSet<>(mAlone));
+        }
+
+        private void checkAcyclic(@NonNull String perm,
+                                  @NonNull Set<String> visiting,
+                                  @NonNull Set<String> checked) {
+            if (checked.contains(perm)) {
+                return;
+            }
+            if (!visiting.add(perm)) {
+                throw new IllegalArgumentException("Permission requires itself: " + perm);
+            }
+
+            String[] required = mRequirements.get(perm);
+            if (required != null) {
+                for (String requirement : required) {
+                    checkAcyclic(requirement, visiting, checked);
+                }
+            }
+            visiting.remove(perm);
+            checked.add(perm);
+        }
+    }
+}
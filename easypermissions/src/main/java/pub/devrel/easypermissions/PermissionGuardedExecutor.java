@@ -0,0 +1,268 @@
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.Size;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link Executor} that only runs tasks once a set of permissions is granted. While any of the
+ * permissions is missing, tasks are parked in a bounded queue. Parked tasks run in submission
+ * order as soon as a grant completing the set is passed to {@link
+ * EasyPermissions#onRequestPermissionsResult(int, String[], int[], Object...)} or {@link
+ * EasyPermissions#onActivityResult(int, android.content.Intent, Object...)}, and are dropped if
+ * one of the permissions is permanently denied.
+ * <p>
+ * This executor never requests permissions itself. It may be used from any thread.
+ *
+ * @see PermissionGuardedExecutor.Builder
+ */
+public final class PermissionGuardedExecutor implements Executor {
+
+    /**
+     * Receives the parked tasks that were dropped.
+     */
+    public interface OnTasksDroppedListener {
+
+        /**
+         * @param tasks the dropped tasks, in submission order.
+         */
+        void onTasksDropped(@NonNull List<Runnable> tasks);
+    }
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    // Guarded by the list, executors are notified of results until they are collected
+    private static final List<WeakReference<PermissionGuardedExecutor>> sExecutors =
+            new ArrayList<>();
+
+    private final Context mContext;
+    private final String[] mPerms;
+    private final Executor mExecutor;
+    private final int mCapacity;
+    private final OnTasksDroppedListener mListener;
+
+    // Guarded by this
+    private final ArrayDeque<Runnable> mParked = new ArrayDeque<>();
+    private boolean mDraining;
+
+    private PermissionGuardedExecutor(@NonNull Context context,
+                                      @NonNull String[] perms,
+                                      @NonNull Executor executor,
+                                      int capacity,
+                                      @Nullable OnTasksDroppedListener listener) {
+        mContext = context;
+        mPerms = perms;
+        mExecutor = executor;
+        mCapacity = capacity;
+        mListener = listener;
+    }
+
+    /**
+     * Run the task now if the permissions are granted, otherwise park it until they are.
+     *
+     * @throws RejectedExecutionException if the task has to be parked and the queue is full.
+     */
+    @Override
+    public void execute(@NonNull Runnable task) {
+        boolean granted = PermissionStatus.areGranted(mContext, mPerms);
+        synchronized (this) {
+            if (!granted || mDraining || !mParked.isEmpty()) {
+                // Keep the submission order behind the tasks already parked
+                if (mParked.size() >= mCapacity) {
+                    throw new RejectedExecutionException(
+                            "Too many tasks waiting for " + mPerms.length + " permission(s)");
+                }
+                mParked.add(task);
+                if (mDraining) {
+                    return;
+                }
+                mDraining = granted;
+                task = null;
+            }
+        }
+
+        if (task != null) {
+            mExecutor.execute(task);
+        } else if (granted) {
+            drain();
+        } else {
+            // A grant dispatched between the check and parking found no task to run
+            onGranted();
+        }
+    }
+
+    /**
+     * @return the number of tasks waiting for the permissions.
+     */
+    public synchronized int getParkedCount() {
+        return mParked.size();
+    }
+
+    /**
+     * Notify the executors of a permission result.
+     *
+     * @param granted            the permissions reported as granted.
+     * @param permanentlyDenied  the permissions the system won't prompt for anymore.
+     */
+    static void onResults(@NonNull List<String> granted,
+                          @NonNull List<String> permanentlyDenied) {
+        if (granted.isEmpty() && permanentlyDenied.isEmpty()) {
+            return;
+        }
+
+        List<PermissionGuardedExecutor> executors = new ArrayList<>();
+        synchronized (sExecutors) {
+            Iterator<WeakReference<PermissionGuardedExecutor>> iterator = sExecutors.iterator();
+            while (iterator.hasNext()) {
+                PermissionGuardedExecutor executor = iterator.next().get();
+                if (executor == null) {
+                    iterator.remove();
+                } else {
+                    executors.add(executor);
+                }
+            }
+        }
+
+        for (PermissionGuardedExecutor executor : executors) {
+            if (executor.guards(permanentlyDenied)) {
+                executor.dropParked();
+            } else if (executor.guards(granted)) {
+                executor.onGranted();
+            }
+        }
+    }
+
+    private boolean guards(@NonNull List<String> perms) {
+        for (String perm : mPerms) {
+            if (perms.contains(perm)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onGranted() {
+        if (!PermissionStatus.areGranted(mContext, mPerms)) {
+            return;
+        }
+
+        synchronized (this) {
+            if (mDraining || mParked.isEmpty()) {
+                return;
+            }
+            mDraining = true;
+        }
+        drain();
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable task;
+            synchronized (this) {
+                task = mParked.poll();
+                if (task == null) {
+                    mDraining = false;
+                    return;
+                }
+            }
+            mExecutor.execute(task);
+        }
+    }
+
+    private void dropParked() {
+        List<Runnable> dropped;
+        synchronized (this) {
+            if (mParked.isEmpty()) {
+                return;
+            }
+            dropped = new ArrayList<>(mParked);
+            mParked.clear();
+        }
+
+        if (mListener != null) {
+            mListener.onTasksDropped(Collections.unmodifiableList(dropped));
+        }
+    }
+
+    /**
+     * Builder for a {@link PermissionGuardedExecutor}.
+     */
+    public static final class Builder {
+        private final Context mContext;
+        private final String[] mPerms;
+
+        private Executor mExecutor = DIRECT;
+        private int mCapacity = 16;
+        private OnTasksDroppedListener mListener;
+
+        /**
+         * @param context any context of the app.
+         * @param perms   the permissions tasks need.
+         */
+        public Builder(@NonNull Context context, @Size(min = 1) @NonNull String... perms) {
+            mContext = context.getApplicationContext() != null
+                    ? context.getApplicationContext()
+                    : context;
+            mPerms = perms.clone();
+        }
+
+        /**
+         * Set the executor tasks run on once the permissions are granted. By default tasks run on
+         * the thread that submits them or, for parked tasks, that delivers the result, usually the
+         * main thread.
+         */
+        @NonNull
+        public Builder setExecutor(@NonNull Executor executor) {
+            mExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Set how many tasks may be parked, 16 by default.
+         */
+        @NonNull
+        public Builder setCapacity(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+            }
+            mCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Set a listener for the parked tasks dropped because a permission was permanently
+         * denied, for example to fail the work they represent.
+         */
+        @NonNull
+        public Builder setOnTasksDroppedListener(@Nullable OnTasksDroppedListener listener) {
+            mListener = listener;
+            return this;
+        }
+
+        @NonNull
+        public PermissionGuardedExecutor build() {
+            PermissionGuardedExecutor executor = new PermissionGuardedExecutor(
+                    mContext, mPerms, mExecutor, mCapacity, mListener);
+            synchronized (sExecutors) {
+                sExecutors.add(new WeakReference<>(executor));
+            }
+            return executor;
+        }
+    }
+}
@@ -0,0 +1,584 @@
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.util.AtomicFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import pub.devrel.easypermissions.helper.BackgroundExecutor;
+import pub.devrel.easypermissions.helper.PermissionIds;
+import pub.devrel.easypermissions.helper.PermissionLog;
+
+/**
+ * Optional on-device history of how often each permission was requested, granted, denied and
+ * permanently denied, kept across app sessions.
+ * <p>
+ * The history lives in a compact append-only file that is loaded lazily and written in batches on
+ * a background thread, so recording and lookups never touch the disk on the calling thread.
+ * Lookups are served from memory; until the file has been loaded they only reflect events
+ * recorded in the current session.
+ *
+ * @see EasyPermissions#setPermissionHistory(PermissionHistory)
+ */
+public final class PermissionHistory {
+
+    /**
+     * The permission was requested from the system.
+     */
+    public static final int EVENT_REQUESTED = 0;
+
+    /**
+     * The permission was granted.
+     */
+    public static final int EVENT_GRANTED = 1;
+
+    /**
+     * The permission was denied, the user can still be asked again.
+     */
+    public static final int EVENT_DENIED = 2;
+
+    /**
+     * The permission was denied and the system will not ask the user again.
+     */
+    public static final int EVENT_PERMANENTLY_DENIED = 3;
+
+    private static final int EVENT_COUNT = 4;
+
+    /**
+     * How many of the latest times of each event are kept, for {@link Record#getCountSince(int,
+     * long)}.
+     */
+    public static final int RECENT_TIMES = 16;
+
+    private static final String TAG = "PermissionHistory";
+    private static final String FILE_NAME = "easypermissions_history";
+
+    private static final int MAGIC = 0x45504831;
+    private static final byte RECORD_DEFINE = 1;
+    private static final byte RECORD_EVENT = 2;
+    private static final byte RECORD_ENTRY = 3;
+    private static final byte RECORD_TIMES = 4;
+
+    // Rewrite the file as one entry per permission once it holds this many records
+    private static final int COMPACT_THRESHOLD = 512;
+
+    private static PermissionHistory sInstance;
+
+    private final Executor mExecutor;
+    private final Object mLock = new Object();
+
+    // Only accessed on the executor
+    private Context mContext;
+    private AtomicFile mFile;
+    private final Set<Integer> mDefinedIds = new HashSet<>();
+    private int mRecordCount;
+
+    // Guarded by mLock
+    private Entry[] mEntries = new Entry[8];
+    private List<Event> mPending = new ArrayList<>();
+    private boolean mFlushScheduled;
+    private boolean mLoaded;
+
+    /**
+     * Get the history of this app, loading it in the background the first time.
+     *
+     * @param context any context of the app.
+     */
+    @NonNull
+    public static synchronized PermissionHistory getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new PermissionHistory(
+                    context.getApplicationContext(), BackgroundExecutor.get());
+        }
+        return sInstance;
+    }
+
+    private PermissionHistory(@NonNull Context context, @NonNull Executor executor) {
+        mContext = context;
+        mExecutor = executor;
+        scheduleLoad();
+    }
+
+    @VisibleForTesting
+    PermissionHistory(@NonNull File file, @NonNull Executor executor) {
+        mFile = new AtomicFile(file);
+        mExecutor = executor;
+        scheduleLoad();
+    }
+
+    /**
+     * @return true once the persisted history has been read, after which lookups include previous
+     * sessions.
+     */
+    public boolean isLoaded() {
+        synchronized (mLock) {
+            return mLoaded;
+        }
+    }
+
+    /**
+     * Look up the history of a permission.
+     *
+     * @param perm the permission, such as {@link android.Manifest.permission#CAMERA}.
+     * @return a snapshot of the history, empty if the permission was never recorded.
+     */
+    @NonNull
+    public Record get(@NonNull String perm) {
+        int id = PermissionIds.intern(perm);
+        synchronized (mLock) {
+            Entry entry = id < mEntries.length ? mEntries[id] : null;
+            return entry == null
+                    ? new Record(perm, new Entry())
+                    : new Record(perm, entry.copy());
+        }
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public void record(@NonNull String[] perms, int event) {
+        if (perms.length == 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (mLock) {
+            for (String perm : perms) {
+                int id = PermissionIds.intern(perm);
+                getEntryLocked(id).add(event, now);
+                mPending.add(new Event(id, event, now));
+            }
+
+            if (mFlushScheduled) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+
+        // Everything recorded until the flush runs is written as one batch
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        });
+    }
+
+    private Entry getEntryLocked(int id) {
+        if (id >= mEntries.length) {
+            Entry[] grown = new Entry[Math.max(mEntries.length * 2, id + 1)];
+            System.arraycopy(mEntries, 0, grown, 0, mEntries.length);
+            mEntries = grown;
+        }
+
+        Entry entry = mEntries[id];
+        if (entry == null) {
+            entry = new Entry();
+            mEntries[id] = entry;
+        }
+        return entry;
+    }
+
+    private void scheduleLoad() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    // ============================================================================
+    // Executor methods
+    // ============================================================================
+
+    private AtomicFile getFile() {
+        if (mFile == null) {
+            mFile = new AtomicFile(new File(mContext.getFilesDir(), FILE_NAME));
+            mContext = null;
+        }
+        return mFile;
+    }
+
+    private void load() {
+        Map<String, Entry> loaded = new HashMap<>();
+        boolean needsCompaction = false;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(getFile().openRead()));
+            needsCompaction = !readRecords(in, loaded);
+        } catch (FileNotFoundException e) {
+            // Nothing recorded yet
+        } catch (IOException e) {
+            PermissionLog.e(TAG, "Failed to read permission history, starting over.", e);
+            needsCompaction = true;
+        } finally {
+            closeQuietly(in);
+        }
+
+        synchronized (mLock) {
+            for (Map.Entry<String, Entry> loadedEntry : loaded.entrySet()) {
+                getEntryLocked(PermissionIds.intern(loadedEntry.getKey()))
+                        .merge(loadedEntry.getValue());
+            }
+            mLoaded = true;
+        }
+
+        if (needsCompaction || mRecordCount > COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * Read all records, keyed by permission name.
+     *
+     * @return false if the file is damaged and should be rewritten.
+     */
+    private boolean readRecords(@NonNull DataInputStream in,
+                                @NonNull Map<String, Entry> entries) throws IOException {
+        // IDs are only valid within the session that wrote them
+        Map<Integer, String> names = new HashMap<>();
+
+        try {
+            if (in.readInt() != MAGIC) {
+                return false;
+            }
+
+            while (true) {
+                int type = in.read();
+                if (type == -1) {
+                    return true;
+                }
+
+                int id = in.readInt();
+                if (type == RECORD_DEFINE) {
+                    names.put(id, in.readUTF());
+                } else if (type == RECORD_EVENT) {
+                    int event = in.readByte();
+                    long time = in.readLong();
+                    Entry entry = getEntry(entries, names.get(id));
+                    if (entry == null || event < 0 || event >= EVENT_COUNT) {
+                        return false;
+                    }
+                    entry.add(event, time);
+                } else if (type == RECORD_ENTRY) {
+                    Entry entry = getEntry(entries, names.get(id));
+                    if (entry == null) {
+                        return false;
+                    }
+                    for (int event = 0; event < EVENT_COUNT; event++) {
+                        entry.addCount(event, in.readInt(), in.readLong());
+                    }
+                } else if (type == RECORD_TIMES) {
+                    Entry entry = getEntry(entries, names.get(id));
+                    int event = in.readByte();
+                    int count = in.readByte();
+                    if (entry == null || event < 0 || event >= EVENT_COUNT
+                            || count < 0 || count > RECENT_TIMES) {
+                        return false;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        entry.addRecentTime(event, in.readLong());
+                    }
+                } else {
+                    return false;
+                }
+                mRecordCount++;
+            }
+        } catch (EOFException e) {
+            // A write was interrupted part way through a record
+            return false;
+        }
+    }
+
+    private static Entry getEntry(@NonNull Map<String, Entry> entries, String name) {
+        if (name == null) {
+            return null;
+        }
+
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(name, entry);
+        }
+        return entry;
+    }
+
+    private void flush() {
+        List<Event> batch;
+        synchronized (mLock) {
+            batch = mPending;
+            mPending = new ArrayList<>();
+            mFlushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        File file = getFile().getBaseFile();
+        DataOutputStream out = null;
+        try {
+            boolean isNew = file.length() == 0;
+            out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file, true)));
+            if (isNew) {
+                out.writeInt(MAGIC);
+                mDefinedIds.clear();
+            }
+
+            for (Event event : batch) {
+                writeDefineIfNeeded(out, event.id);
+                out.writeByte(RECORD_EVENT);
+                out.writeInt(event.id);
+                out.writeByte(event.event);
+                out.writeLong(event.time);
+                mRecordCount++;
+            }
+            out.flush();
+        } catch (IOException e) {
+            PermissionLog.e(TAG, "Failed to write permission history.", e);
+        } finally {
+            closeQuietly(out);
+        }
+
+        if (mRecordCount > COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    private void writeDefineIfNeeded(@NonNull DataOutputStream out, int id) throws IOException {
+        if (mDefinedIds.add(id)) {
+            out.writeByte(RECORD_DEFINE);
+            out.writeInt(id);
+            out.writeUTF(PermissionIds.name(id));
+            mRecordCount++;
+        }
+    }
+
+    /**
+     * Rewrite the file as a single entry per permission.
+     */
+    private void compact() {
+        Entry[] entries;
+        synchronized (mLock) {
+            entries = new Entry[mEntries.length];
+            for (int id = 0; id < mEntries.length; id++) {
+                if (mEntries[id] != null) {
+                    entries[id] = mEntries[id].copy();
+                }
+            }
+
+            // Pending events are part of the snapshot, don't write them again
+            mPending = new ArrayList<>();
+        }
+
+        AtomicFile file = getFile();
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+
+            mDefinedIds.clear();
+            mRecordCount = 0;
+            for (int id = 0; id < entries.length; id++) {
+                Entry entry = entries[id];
+                if (entry == null) {
+                    continue;
+                }
+
+                writeDefineIfNeeded(out, id);
+                out.writeByte(RECORD_ENTRY);
+                out.writeInt(id);
+                for (int event = 0; event < EVENT_COUNT; event++) {
+                    out.writeInt(entry.counts[event]);
+                    out.writeLong(entry.lastTimes[event]);
+                }
+                mRecordCount++;
+
+                for (int event = 0; event < EVENT_COUNT; event++) {
+                    long[] times = entry.recentTimes[event];
+                    if (times.length == 0) {
+                        continue;
+                    }
+                    out.writeByte(RECORD_TIMES);
+                    out.writeInt(id);
+                    out.writeByte(event);
+                    out.writeByte(times.length);
+                    for (long time : times) {
+                        out.writeLong(time);
+                    }
+                    mRecordCount++;
+                }
+            }
+            out.flush();
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            PermissionLog.e(TAG, "Failed to compact permission history.", e);
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * Immutable snapshot of the history of a single permission.
+     */
+    public static final class Record {
+        private final String mPermission;
+        private final int[] mCounts;
+        private final long[] mLastTimes;
+        private final long[][] mRecentTimes;
+
+        Record(@NonNull String permission, @NonNull Entry entry) {
+            mPermission = permission;
+            mCounts = entry.counts;
+            mLastTimes = entry.lastTimes;
+            mRecentTimes = entry.recentTimes;
+        }
+
+        @NonNull
+        public String getPermission() {
+            return mPermission;
+        }
+
+        /**
+         * @param event one of the {@code EVENT_*} constants of {@link PermissionHistory}.
+         * @return how many times the event was recorded.
+         */
+        public int getCount(int event) {
+            return mCounts[event];
+        }
+
+        /**
+         * @param event one of the {@code EVENT_*} constants of {@link PermissionHistory}.
+         * @return the wall clock time the event was last recorded at, in milliseconds, or 0 if it
+         * was never recorded.
+         */
+        public long getLastTimeMillis(int event) {
+            return mLastTimes[event];
+        }
+
+        /**
+         * @param event       one of the {@code EVENT_*} constants of {@link PermissionHistory}.
+         * @param sinceMillis the wall clock time to count from, in milliseconds, exclusive.
+         * @return how many times the event was recorded after the time, counting only the last
+         * {@link PermissionHistory#RECENT_TIMES} times it was recorded.
+         */
+        public int getCountSince(int event, long sinceMillis) {
+            // Sorted oldest first
+            long[] times = mRecentTimes[event];
+            int count = 0;
+            for (int i = times.length - 1; i >= 0 && times[i] > sinceMillis; i--) {
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return "Record{" +
+                    "mPermission='" + mPermission + '\'' +
+                    ", requested=" + mCounts[EVENT_REQUESTED] +
+                    ", granted=" + mCounts[EVENT_GRANTED] +
+                    ", denied=" + mCounts[EVENT_DENIED] +
+                    ", permanentlyDenied=" + mCounts[EVENT_PERMANENTLY_DENIED] +
+                    '}';
+        }
+    }
+
+    private static final class Entry {
+        final int[] counts = new int[EVENT_COUNT];
+        final long[] lastTimes = new long[EVENT_COUNT];
+        // The latest times of each event, oldest first, events from older sessions may be merged
+        // in after newer ones
+        final long[][] recentTimes = new long[EVENT_COUNT][0];
+
+        void add(int event, long time) {
+            addCount(event, 1, time);
+            addRecentTime(event, time);
+        }
+
+        void addCount(int event, int count, long lastTime) {
+            counts[event] += count;
+            lastTimes[event] = Math.max(lastTimes[event], lastTime);
+        }
+
+        void addRecentTime(int event, long time) {
+            long[] times = recentTimes[event];
+            int index = times.length;
+            while (index > 0 && times[index - 1] > time) {
+                index--;
+            }
+            if (index == 0 && times.length == RECENT_TIMES) {
+                // Older than all the kept times
+                return;
+            }
+
+            long[] added = new long[times.length + 1];
+            System.arraycopy(times, 0, added, 0, index);
+            added[index] = time;
+            System.arraycopy(times, index, added, index + 1, times.length - index);
+            recentTimes[event] = added.length > RECENT_TIMES
+                    ? Arrays.copyOfRange(added, added.length - RECENT_TIMES, added.length)
+                    : added;
+        }
+
+        void merge(@NonNull Entry other) {
+            for (int event = 0; event < EVENT_COUNT; event++) {
+                addCount(event, other.counts[event], other.lastTimes[event]);
+                for (long time : other.recentTimes[event]) {
+                    addRecentTime(event, time);
+                }
+            }
+        }
+
+        Entry copy() {
+            Entry copy = new Entry();
+            copy.merge(this);
+            return copy;
+        }
+    }
+
+    private static final class Event {
+        final int id;
+        final int event;
+        final long time;
+
+        Event(int id, int event, long time) {
+            this.id = id;
+            this.event = event;
+            this.time = time;
+        }
+    }
+}
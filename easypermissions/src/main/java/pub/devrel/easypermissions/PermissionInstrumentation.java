@@ -0,0 +1,114 @@
+package pub.devrel.easypermissions;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Receives an event for each step of a permission flow, for example to measure how long flows take
+ * and how often they end in a grant. Events are delivered synchronously on the thread the step ran
+ * on, usually the main thread, so implementations should return quickly.
+ *
+ * @see EasyPermissions#setInstrumentation(PermissionInstrumentation)
+ * @see PermissionMetrics
+ */
+public interface PermissionInstrumentation {
+
+    /**
+     * The permissions were requested from the system.
+     */
+    int EVENT_REQUEST_ISSUED = 0;
+
+    /**
+     * The rationale dialog was shown.
+     */
+    int EVENT_RATIONALE_SHOWN = 1;
+
+    /**
+     * The positive button of the rationale dialog was clicked.
+     */
+    int EVENT_RATIONALE_ACCEPTED = 2;
+
+    /**
+     * The negative button of the rationale dialog was clicked.
+     */
+    int EVENT_RATIONALE_DENIED = 3;
+
+    /**
+     * The system reported the permissions as granted.
+     */
+    int EVENT_RESULT_GRANTED = 4;
+
+    /**
+     * The system reported the permissions as denied.
+     */
+    int EVENT_RESULT_DENIED = 5;
+
+    /**
+     * The app settings screen was opened from an {@link AppSettingsDialog}.
+     */
+    int EVENT_SETTINGS_OPENED = 6;
+
+    /**
+     * The user returned from the app settings screen.
+     */
+    int EVENT_SETTINGS_RETURNED = 7;
+
+    /**
+     * Methods annotated with {@link AfterPermissionGranted} were run.
+     */
+    int EVENT_ANNOTATED_METHOD_DISPATCHED = 8;
+
+    /**
+     * Prewarming of the rationale and app settings dialogs started, see {@link
+     * EasyPermissions#prewarm(android.app.Activity, String...)}.
+     */
+    int EVENT_PREWARM_STARTED = 9;
+
+    /**
+     * Prewarming finished. The time since {@link #EVENT_PREWARM_STARTED} is work the first
+     * rationale or app settings dialog no longer does while the user waits.
+     */
+    int EVENT_PREWARM_FINISHED = 10;
+
+    /**
+     * The rationale was queued because the state of its host was already saved. It is shown once
+     * the host is resumed.
+     */
+    int EVENT_RATIONALE_QUEUED = 11;
+
+    /**
+     * The queued rationale is about to be shown. The time since {@link #EVENT_RATIONALE_QUEUED} is
+     * how long the rationale waited for its host.
+     */
+    int EVENT_RATIONALE_DEQUEUED = 12;
+
+    /**
+     * The number of event types.
+     */
+    int EVENT_COUNT = 13;
+
+    /**
+     * Instrumentation that ignores every event, used when none is set.
+     */
+    PermissionInstrumentation NONE = new PermissionInstrumentation() {
+        @Override
+        public void onEvent(int event, int correlationId, int requestCode,
+                            @NonNull String[] perms, long timestampNanos) {
+            // Nothing to do
+        }
+    };
+
+    /**
+     * Called for each step of a permission flow.
+     *
+     * @param event          one of the {@code EVENT_*} constants.
+     * @param correlationId  ID shared by all events of one flow, see {@link
+     *                       PermissionRequest#getCorrelationId()}. 0 if the event can't be tied
+     *                       to a flow.
+     * @param requestCode    the request code of the flow.
+     * @param perms          the permissions the event applies to, may be empty when the
+     *                       permissions are unknown. Must not be modified.
+     * @param timestampNanos when the event happened, from {@link System#nanoTime()}.
+     */
+    void onEvent(int event, int correlationId, int requestCode, @NonNull String[] perms,
+                 long timestampNanos);
+}
@@ -0,0 +1,33 @@
+package pub.devrel.easypermissions;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Receives the library's log messages, for example to forward them to an app's own logging.
+ * Messages are only built after {@link #isLoggable(int)} returned true for their priority.
+ * <p>
+ * Debug messages are removed from apps minified with R8 or ProGuard, see the library's consumer
+ * rules.
+ *
+ * @see EasyPermissions#setLogger(PermissionLogger)
+ */
+public interface PermissionLogger {
+
+    /**
+     * @param priority one of the {@link android.util.Log} priorities, such as {@link
+     *                 android.util.Log#DEBUG}.
+     * @return whether messages of the priority should be logged.
+     */
+    boolean isLoggable(int priority);
+
+    /**
+     * Log a message.
+     *
+     * @param priority one of the {@link android.util.Log} priorities.
+     * @param tag      the tag of the library class logging the message.
+     * @param message  the message.
+     * @param tr       an exception to log along with the message, if any.
+     */
+    void log(int priority, @NonNull String tag, @NonNull String message, @Nullable Throwable tr);
+}
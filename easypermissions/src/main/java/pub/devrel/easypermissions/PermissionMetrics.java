@@ -0,0 +1,179 @@
+package pub.devrel.easypermissions;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link PermissionInstrumentation} that keeps per-permission event counters and a histogram of
+ * flow latencies, which can be read at any time from any thread. Recording an event doesn't lock.
+ * <p>
+ * A flow starts when the rationale is shown or the permission is requested, and ends with the
+ * system result, the rationale being denied or the return from the app settings screen. Latencies
+ * are counted in buckets whose upper bounds double, see {@link #getBucketUpperBoundMillis(int)}.
+ */
+public final class PermissionMetrics implements PermissionInstrumentation {
+
+    /**
+     * The number of latency buckets, the last one counts every flow longer than the others.
+     */
+    public static final int BUCKET_COUNT = 20;
+
+    private static final long NO_FLOW = Long.MIN_VALUE;
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private final ConcurrentHashMap<String, Stats> mStats = new ConcurrentHashMap<>();
+    private final AtomicLong mPrewarmStart = new AtomicLong(NO_FLOW);
+    private final AtomicLong mPrewarmNanos = new AtomicLong();
+
+    @Override
+    public void onEvent(int event, int correlationId, int requestCode, @NonNull String[] perms,
+                        long timestampNanos) {
+        if (event == EVENT_PREWARM_STARTED) {
+            mPrewarmStart.set(timestampNanos);
+        } else if (event == EVENT_PREWARM_FINISHED) {
+            long start = mPrewarmStart.getAndSet(NO_FLOW);
+            if (start != NO_FLOW) {
+                mPrewarmNanos.addAndGet(timestampNanos - start);
+            }
+        }
+
+        for (String perm : perms) {
+            Stats stats = getStats(perm);
+            stats.counts.incrementAndGet(event);
+
+            switch (event) {
+                case EVENT_RATIONALE_SHOWN:
+                case EVENT_REQUEST_ISSUED:
+                    // Keep the start of a flow that began with the rationale
+                    stats.flowStart.compareAndSet(NO_FLOW, timestampNanos);
+                    break;
+                case EVENT_RATIONALE_DENIED:
+                case EVENT_RESULT_GRANTED:
+                case EVENT_RESULT_DENIED:
+                case EVENT_SETTINGS_RETURNED:
+                    long start = stats.flowStart.getAndSet(NO_FLOW);
+                    if (start != NO_FLOW) {
+                        stats.latencies.incrementAndGet(
+                                getBucket((timestampNanos - start) / NANOS_PER_MILLI));
+                    }
+                    break;
+                case EVENT_RATIONALE_QUEUED:
+                    stats.queuedAt.set(timestampNanos);
+                    break;
+                case EVENT_RATIONALE_DEQUEUED:
+                    long queuedAt = stats.queuedAt.getAndSet(NO_FLOW);
+                    if (queuedAt != NO_FLOW) {
+                        stats.rationaleWaitNanos.addAndGet(timestampNanos - queuedAt);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return the permissions events were recorded for.
+     */
+    @NonNull
+    public List<String> getPermissions() {
+        return new ArrayList<>(mStats.keySet());
+    }
+
+    /**
+     * @param perm  the permission.
+     * @param event one of the {@link PermissionInstrumentation} {@code EVENT_*} constants.
+     * @return how many times the event was recorded for the permission.
+     */
+    public long getCount(@NonNull String perm, int event) {
+        Stats stats = mStats.get(perm);
+        return stats != null ? stats.counts.get(event) : 0;
+    }
+
+    /**
+     * @param perm the permission.
+     * @return the number of flows of the permission in each latency bucket, {@link #BUCKET_COUNT}
+     * entries.
+     */
+    @NonNull
+    public long[] getLatencyHistogram(@NonNull String perm) {
+        long[] histogram = new long[BUCKET_COUNT];
+        Stats stats = mStats.get(perm);
+        if (stats != null) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                histogram[i] = stats.latencies.get(i);
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @param perm the permission.
+     * @return the total time in nanoseconds rationales for the permission waited for their host to
+     * be resumed, because they were requested after its state was saved.
+     */
+    public long getRationaleWaitNanos(@NonNull String perm) {
+        Stats stats = mStats.get(perm);
+        return stats != null ? stats.rationaleWaitNanos.get() : 0;
+    }
+
+    /**
+     * @return the time spent prewarming in nanoseconds, which is latency taken off the first
+     * rationale and app settings dialog. Prewarming happens at most once per process.
+     * @see EasyPermissions#prewarm(android.app.Activity, String...)
+     */
+    public long getPrewarmNanos() {
+        return mPrewarmNanos.get();
+    }
+
+    /**
+     * @param bucket a latency bucket index.
+     * @return the exclusive upper bound of the bucket in milliseconds, {@link Long#MAX_VALUE} for
+     * the last bucket.
+     */
+    public static long getBucketUpperBoundMillis(int bucket) {
+        return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * Clear all counters and histograms, for example after they have been reported.
+     */
+    public void reset() {
+        mStats.clear();
+        mPrewarmNanos.set(0);
+    }
+
+    private static int getBucket(long millis) {
+        int bucket = 0;
+        while (bucket < BUCKET_COUNT - 1 && millis >= getBucketUpperBoundMillis(bucket)) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    @NonNull
+    private Stats getStats(@NonNull String perm) {
+        Stats stats = mStats.get(perm);
+        if (stats == null) {
+            Stats created = new Stats();
+            stats = mStats.putIfAbsent(perm, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    private static final class Stats {
+        final AtomicLongArray counts = new AtomicLongArray(EVENT_COUNT);
+        final AtomicLongArray latencies = new AtomicLongArray(BUCKET_COUNT);
+        final AtomicLong flowStart = new AtomicLong(NO_FLOW);
+        final AtomicLong queuedAt = new AtomicLong(NO_FLOW);
+        final AtomicLong rationaleWaitNanos = new AtomicLong();
+    }
+}
@@ -10,7 +10,9 @@ import androidx.annotation.StyleRes;
 import androidx.fragment.app.Fragment;
 
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import pub.devrel.easypermissions.helper.CorrelationIds;
 import pub.devrel.easypermissions.helper.PermissionHelper;
 
 /**
@@ -28,6 +30,13 @@ public final class PermissionRequest {
     private final String mPositiveButtonText;
     private final String mNegativeButtonText;
     private final int mTheme;
+    private final RationaleRenderer mRationaleRenderer;
+    private final OnHostGoneListener mOnHostGoneListener;
+    private final long mTimeoutMillis;
+    private final int mCorrelationId;
+
+    // Set once the request was made, later calls get a copy with a new correlation ID
+    private final AtomicBoolean mMade = new AtomicBoolean();
 
     private PermissionRequest(PermissionHelper helper,
                               String[] perms,
@@ -35,7 +44,11 @@ public final class PermissionRequest {
                               String rationale,
                               String positiveButtonText,
                               String negativeButtonText,
-                              int theme) {
+                              int theme,
+                              RationaleRenderer rationaleRenderer,
+                              OnHostGoneListener onHostGoneListener,
+                              long timeoutMillis,
+                              int correlationId) {
         mHelper = helper;
         mPerms = perms.clone();
         mRequestCode = requestCode;
@@ -43,6 +56,10 @@ public final class PermissionRequest {
         mPositiveButtonText = positiveButtonText;
         mNegativeButtonText = negativeButtonText;
         mTheme = theme;
+        mRationaleRenderer = rationaleRenderer;
+        mOnHostGoneListener = onHostGoneListener;
+        mTimeoutMillis = timeoutMillis;
+        mCorrelationId = correlationId;
     }
 
     @NonNull
@@ -80,6 +97,80 @@ public final class PermissionRequest {
         return mTheme;
     }
 
+    /**
+     * @return the renderer showing the rationale, or null to show it in the default dialog.
+     */
+    @Nullable
+    public RationaleRenderer getRationaleRenderer() {
+        return mRationaleRenderer;
+    }
+
+    /**
+     * @return the listener notified if the request is made after its host was destroyed.
+     */
+    @Nullable
+    public OnHostGoneListener getOnHostGoneListener() {
+        return mOnHostGoneListener;
+    }
+
+    /**
+     * @return the time after which the request is cancelled if still pending, 0 for none.
+     */
+    public long getTimeoutMillis() {
+        return mTimeoutMillis;
+    }
+
+    /**
+     * @return an ID unique to this request within the process, passed to {@link
+     * PermissionInstrumentation} with every event of the request's flow. A request that is made
+     * again starts a flow with a new ID, see {@link PendingPermissionRequest#getRequest()}.
+     */
+    public int getCorrelationId() {
+        return mCorrelationId;
+    }
+
+    /**
+     * @return this request the first time it is made, then a copy with its own correlation ID, so
+     * a cancelled flow doesn't affect the next one.
+     */
+    @NonNull
+    PermissionRequest forNewFlow() {
+        if (mMade.compareAndSet(false, true)) {
+            return this;
+        }
+
+        PermissionRequest request = withPerms(mPerms, CorrelationIds.next());
+        request.mMade.set(true);
+        return request;
+    }
+
+    /**
+     * @return a request with the same options for other permissions, with its own correlation ID.
+     */
+    @NonNull
+    PermissionRequest withPerms(@NonNull String[] perms) {
+        return withPerms(perms, CorrelationIds.next());
+    }
+
+    /**
+     * @return a request with the same options for other permissions, in the flow of the ID.
+     */
+    @NonNull
+    PermissionRequest withPerms(@NonNull String[] perms, int correlationId) {
+        return new PermissionRequest(
+                mHelper,
+                perms,
+                mRequestCode,
+                mRationale,
+                mPositiveButtonText,
+                mNegativeButtonText,
+                mTheme,
+                mRationaleRenderer,
+                mOnHostGoneListener,
+                mTimeoutMillis,
+                correlationId);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -107,6 +198,10 @@ public final class PermissionRequest {
                 ", mPositiveButtonText='" + mPositiveButtonText + '\'' +
                 ", mNegativeButtonText='" + mNegativeButtonText + '\'' +
                 ", mTheme=" + mTheme +
+                ", mRationaleRenderer=" + mRationaleRenderer +
+                ", mOnHostGoneListener=" + mOnHostGoneListener +
+                ", mTimeoutMillis=" + mTimeoutMillis +
+                ", mCorrelationId=" + mCorrelationId +
                 '}';
     }
 
@@ -124,6 +219,9 @@ public final class PermissionRequest {
         private String mPositiveButtonText;
         private String mNegativeButtonText;
         private int mTheme = -1;
+        private RationaleRenderer mRationaleRenderer;
+        private OnHostGoneListener mOnHostGoneListener;
+        private long mTimeoutMillis;
 
         /**
          * Construct a new permission request builder with a host, request code, and the requested
@@ -228,6 +326,47 @@ public final class PermissionRequest {
             return this;
         }
 
+        /**
+         * Set the renderer used to show the rationale should it be shown, for example a {@link
+         * BannerRationaleRenderer} to avoid creating a dialog. The theme only applies to the
+         * default dialog.
+         *
+         * @param rationaleRenderer the renderer, or null for the default dialog
+         */
+        @NonNull
+        public Builder setRationaleRenderer(@Nullable RationaleRenderer rationaleRenderer) {
+            mRationaleRenderer = rationaleRenderer;
+            return this;
+        }
+
+        /**
+         * Set the listener notified if the request is made after its host was destroyed. The
+         * request only references its host weakly, so it may be kept across configuration
+         * changes, but it can't be used once its host is gone.
+         *
+         * @param onHostGoneListener the listener, or null to only log the failure
+         */
+        @NonNull
+        public Builder setOnHostGoneListener(@Nullable OnHostGoneListener onHostGoneListener) {
+            mOnHostGoneListener = onHostGoneListener;
+            return this;
+        }
+
+        /**
+         * Set the time after which the request is cancelled if it is still pending, see {@link
+         * PendingPermissionRequest}. The default is to never time out.
+         *
+         * @param timeoutMillis the timeout in milliseconds, or 0 for none
+         */
+        @NonNull
+        public Builder setTimeoutMillis(long timeoutMillis) {
+            if (timeoutMillis < 0) {
+                throw new IllegalArgumentException("Timeout can't be negative: " + timeoutMillis);
+            }
+            mTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
         /**
          * Build the permission request.
          *
@@ -246,6 +385,7 @@ public final class PermissionRequest {
             if (mNegativeButtonText == null) {
                 mNegativeButtonText = mHelper.getContext().getString(android.R.string.cancel);
             }
+            EasyPermissions.verifyDeclared(mHelper.getContext(), mPerms);
 
             return new PermissionRequest(
                     mHelper,
@@ -254,7 +394,11 @@ public final class PermissionRequest {
                     mRationale,
                     mPositiveButtonText,
                     mNegativeButtonText,
-                    mTheme);
+                    mTheme,
+                    mRationaleRenderer,
+                    mOnHostGoneListener,
+                    mTimeoutMillis,
+                    CorrelationIds.next());
         }
     }
 }
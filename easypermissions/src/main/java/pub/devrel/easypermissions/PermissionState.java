@@ -0,0 +1,200 @@
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.Size;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Observable grant state of a set of permissions, so screens can update when it changes instead
+ * of polling {@link EasyPermissions#hasPermissions(Context, String...)}. Observers are only
+ * notified when the state actually changes.
+ * <p>
+ * The state is checked again after results are passed to {@link
+ * EasyPermissions#onRequestPermissionsResult(int, String[], int[], Object...)} or {@link
+ * EasyPermissions#onActivityResult(int, android.content.Intent, Object...)}, and whenever a
+ * lifecycle-bound observer is started. Re-checks are conflated: a burst of results is checked, and
+ * reported, once.
+ * <p>
+ * Must only be used from the main thread, observers are called on it.
+ */
+public final class PermissionState {
+
+    /**
+     * Receives the grant state of a {@link PermissionState}.
+     */
+    public interface Observer {
+
+        /**
+         * @param granted true if all of the permissions are granted.
+         */
+        void onChanged(boolean granted);
+    }
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+    // The states with observers, checked again on results
+    private static final List<PermissionState> sObserved = new ArrayList<>();
+    private static final Runnable sRecheck = new Runnable() {
+        @Override
+        public void run() {
+            for (PermissionState state : new ArrayList<>(sObserved)) {
+                state.update();
+            }
+        }
+    };
+
+    private final Context mContext;
+    private final String[] mPerms;
+    private final List<ObserverWrapper> mObservers = new ArrayList<>();
+    private boolean mGranted;
+
+    private PermissionState(@NonNull Context context, @NonNull String[] perms) {
+        mContext = context;
+        mPerms = perms;
+    }
+
+    /**
+     * @param context any context of the app.
+     * @param perms   the permissions whose state to observe.
+     * @return a new observable state of the permissions.
+     */
+    @NonNull
+    public static PermissionState of(@NonNull Context context,
+                                     @Size(min = 1) @NonNull String... perms) {
+        Context appContext = context.getApplicationContext() != null
+                ? context.getApplicationContext()
+                : context;
+        return new PermissionState(appContext, perms.clone());
+    }
+
+    /**
+     * @return true if all of the permissions are granted, checked now.
+     */
+    @MainThread
+    public boolean isGranted() {
+        return PermissionStatus.areGranted(mContext, mPerms);
+    }
+
+    /**
+     * Observe the state until {@link #removeObserver(Observer)} is called. The observer receives
+     * the current state right away.
+     */
+    @MainThread
+    public void observe(@NonNull Observer observer) {
+        ObserverWrapper wrapper = new ObserverWrapper(observer, null);
+        wrapper.mActive = true;
+        add(wrapper);
+        update();
+    }
+
+    /**
+     * Observe the state while the owner is started. The state is checked again each time the
+     * owner is started, and the observer is removed when the owner is destroyed.
+     */
+    @MainThread
+    public void observe(@NonNull LifecycleOwner owner, @NonNull Observer observer) {
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return;
+        }
+
+        ObserverWrapper wrapper = new ObserverWrapper(observer, owner);
+        add(wrapper);
+        owner.getLifecycle().addObserver(wrapper);
+    }
+
+    /**
+     * Stop notifying an observer.
+     */
+    @MainThread
+    public void removeObserver(@NonNull Observer observer) {
+        for (ObserverWrapper wrapper : new ArrayList<>(mObservers)) {
+            if (wrapper.mObserver == observer) {
+                remove(wrapper);
+            }
+        }
+    }
+
+    /**
+     * Check every observed state again soon, once for any number of calls in a row.
+     */
+    static void recheckAll() {
+        // A pending re-check covers this call too
+        sHandler.removeCallbacks(sRecheck);
+        sHandler.post(sRecheck);
+    }
+
+    private void add(@NonNull ObserverWrapper wrapper) {
+        if (mObservers.isEmpty()) {
+            sObserved.add(this);
+        }
+        mObservers.add(wrapper);
+    }
+
+    private void remove(@NonNull ObserverWrapper wrapper) {
+        if (!mObservers.remove(wrapper)) {
+            return;
+        }
+
+        if (wrapper.mOwner != null) {
+            wrapper.mOwner.getLifecycle().removeObserver(wrapper);
+        }
+        if (mObservers.isEmpty()) {
+            sObserved.remove(this);
+        }
+    }
+
+    private void update() {
+        mGranted = isGranted();
+        for (ObserverWrapper wrapper : new ArrayList<>(mObservers)) {
+            wrapper.dispatch();
+        }
+    }
+
+    private final class ObserverWrapper implements LifecycleEventObserver {
+        final Observer mObserver;
+        final LifecycleOwner mOwner;
+        boolean mActive;
+        boolean mDelivered;
+        boolean mLastGranted;
+
+        ObserverWrapper(@NonNull Observer observer, @Nullable LifecycleOwner owner) {
+            mObserver = observer;
+            mOwner = owner;
+        }
+
+        void dispatch() {
+            if (!mActive || (mDelivered && mLastGranted == mGranted)) {
+                return;
+            }
+
+            mDelivered = true;
+            mLastGranted = mGranted;
+            mObserver.onChanged(mGranted);
+        }
+
+        @Override
+        public void onStateChanged(@NonNull LifecycleOwner source,
+                                   @NonNull Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_START) {
+                mActive = true;
+                // The permissions may have changed while stopped, such as in the app settings
+                update();
+            } else if (event == Lifecycle.Event.ON_STOP) {
+                mActive = false;
+            } else if (event == Lifecycle.Event.ON_DESTROY) {
+                remove(this);
+            }
+        }
+    }
+}
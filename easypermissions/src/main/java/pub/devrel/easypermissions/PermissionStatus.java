@@ -0,0 +1,123 @@
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Size;
+
+import java.util.concurrent.Executor;
+
+import pub.devrel.easypermissions.helper.GrantStateCache;
+
+/**
+ * Checks the grant state of permissions from any thread, for example from a WorkManager job, a
+ * sync adapter or a repository, without a Fragment or Activity. Only the application context is
+ * kept.
+ * <p>
+ * Grants are cached, see {@link GrantStateCache} for why they stay valid; permissions that are not
+ * granted are checked again every time, so a grant made in the system settings is seen
+ * immediately. The cache is shared with {@link EasyPermissions#hasPermissions(Context,
+ * String...)}.
+ */
+public final class PermissionStatus {
+
+    /**
+     * Receives the result of {@link #checkAsync(Context, String[], Executor, Callback)}.
+     */
+    public interface Callback {
+
+        /**
+         * @param perms        the checked permissions.
+         * @param grantResults {@link PackageManager#PERMISSION_GRANTED} or {@link
+         *                     PackageManager#PERMISSION_DENIED} for each permission, in order.
+         */
+        void onChecked(@NonNull String[] perms, @NonNull int[] grantResults);
+    }
+
+    private PermissionStatus() {
+    }
+
+    /**
+     * @param context any context of the app.
+     * @param perm    the permission, such as {@link android.Manifest.permission#CAMERA}.
+     * @return true if the permission is granted.
+     */
+    @AnyThread
+    public static boolean isGranted(@NonNull Context context, @NonNull String perm) {
+        // Below M every permission is granted at install time
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.M
+                || GrantStateCache.isGranted(context, perm);
+    }
+
+    /**
+     * @return true if all of the permissions are granted.
+     * @see #isGranted(Context, String)
+     */
+    @AnyThread
+    public static boolean areGranted(@NonNull Context context,
+                                     @Size(min = 1) @NonNull String... perms) {
+        for (String perm : perms) {
+            if (!isGranted(context, perm)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return {@link PackageManager#PERMISSION_GRANTED} or {@link
+     * PackageManager#PERMISSION_DENIED} for each permission, in order.
+     * @see #isGranted(Context, String)
+     */
+    @AnyThread
+    @NonNull
+    public static int[] check(@NonNull Context context, @Size(min = 1) @NonNull String... perms) {
+        int[] results = new int[perms.length];
+        for (int i = 0; i < perms.length; i++) {
+            results[i] = isGranted(context, perms[i])
+                    ? PackageManager.PERMISSION_GRANTED
+                    : PackageManager.PERMISSION_DENIED;
+        }
+        return results;
+    }
+
+    /**
+     * Check the permissions on an executor and deliver the result on it, so callers on a
+     * background pipeline never have to go through the main thread.
+     *
+     * @param context  any context of the app.
+     * @param perms    the permissions to check.
+     * @param executor the executor to check on and to call the callback on.
+     * @param callback receives the result.
+     */
+    @AnyThread
+    public static void checkAsync(@NonNull Context context,
+                                  @Size(min = 1) @NonNull String[] perms,
+                                  @NonNull Executor executor,
+                                  @NonNull final Callback callback) {
+        final Context appContext = context.getApplicationContext() != null
+                ? context.getApplicationContext()
+                : context;
+        final String[] checked = perms.clone();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onChecked(checked, check(appContext, checked));
+            }
+        });
+    }
+
+    /**
+     * Forget the cached grants of the permissions, for example after granting or revoking them
+     * outside of the app in tests. Results received by {@link
+     * EasyPermissions#onRequestPermissionsResult(int, String[], int[], Object...)} are applied
+     * automatically.
+     */
+    @AnyThread
+    public static void invalidate(@Size(min = 1) @NonNull String... perms) {
+        GrantStateCache.invalidate(perms);
+    }
+}
@@ -0,0 +1,238 @@
+package pub.devrel.easypermissions;
+
+import android.os.Process;
+import android.util.SparseIntArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.Executor;
+
+import pub.devrel.easypermissions.helper.BackgroundExecutor;
+import pub.devrel.easypermissions.helper.PermissionLog;
+
+/**
+ * {@link PermissionInstrumentation} that writes each permission flow as spans to a JSON file in
+ * the Chrome trace event format, which can be opened in Perfetto or {@code chrome://tracing}. Spans
+ * of one flow share its correlation ID, so each request shows up as its own track.
+ * <p>
+ * Each recorder starts a new file. Events are written on a background thread; the file is a valid
+ * trace at any time, as the closing bracket of the event array is optional in this format.
+ */
+public final class PermissionTraceRecorder implements PermissionInstrumentation {
+
+    private static final String TAG = "PermissionTraceRecorder";
+
+    private static final int SPAN_RATIONALE = 1;
+    private static final int SPAN_REQUEST = 1 << 1;
+    private static final int SPAN_SETTINGS = 1 << 2;
+    private static final int SPAN_PREWARM = 1 << 3;
+    private static final int SPAN_RATIONALE_QUEUED = 1 << 4;
+
+    private final File mFile;
+    private final Executor mExecutor;
+    private final int mPid = Process.myPid();
+
+    // Guarded by this
+    private final SparseIntArray mOpenSpans = new SparseIntArray();
+    private StringBuilder mPending = new StringBuilder();
+    private boolean mFlushScheduled;
+    private boolean mStarted;
+
+    /**
+     * @param file the file to write the trace to, replaced if it exists.
+     */
+    public PermissionTraceRecorder(@NonNull File file) {
+        this(file, BackgroundExecutor.get());
+    }
+
+    @VisibleForTesting
+    PermissionTraceRecorder(@NonNull File file, @NonNull Executor executor) {
+        mFile = file;
+        mExecutor = executor;
+    }
+
+    /**
+     * @return the file the trace is written to.
+     */
+    @NonNull
+    public File getFile() {
+        return mFile;
+    }
+
+    @Override
+    public void onEvent(int event, int correlationId, int requestCode, @NonNull String[] perms,
+                        long timestampNanos) {
+        synchronized (this) {
+            TraceEvent traceEvent =
+                    new TraceEvent(correlationId, requestCode, perms, timestampNanos);
+            switch (event) {
+                case EVENT_RATIONALE_SHOWN:
+                    begin(traceEvent, SPAN_RATIONALE, "rationale");
+                    break;
+                case EVENT_RATIONALE_ACCEPTED:
+                    instant(traceEvent, "rationale accepted");
+                    end(traceEvent, SPAN_RATIONALE, "rationale");
+                    break;
+                case EVENT_RATIONALE_DENIED:
+                    instant(traceEvent, "rationale denied");
+                    end(traceEvent, SPAN_RATIONALE, "rationale");
+                    break;
+                case EVENT_REQUEST_ISSUED:
+                    begin(traceEvent, SPAN_REQUEST, "system request");
+                    break;
+                case EVENT_RESULT_GRANTED:
+                    instant(traceEvent, "granted");
+                    end(traceEvent, SPAN_REQUEST, "system request");
+                    break;
+                case EVENT_RESULT_DENIED:
+                    instant(traceEvent, "denied");
+                    end(traceEvent, SPAN_REQUEST, "system request");
+                    break;
+                case EVENT_SETTINGS_OPENED:
+                    begin(traceEvent, SPAN_SETTINGS, "app settings");
+                    break;
+                case EVENT_SETTINGS_RETURNED:
+                    end(traceEvent, SPAN_SETTINGS, "app settings");
+                    break;
+                case EVENT_ANNOTATED_METHOD_DISPATCHED:
+                    instant(traceEvent, "annotated methods");
+                    break;
+                case EVENT_PREWARM_STARTED:
+                    begin(traceEvent, SPAN_PREWARM, "prewarm");
+                    break;
+                case EVENT_PREWARM_FINISHED:
+                    end(traceEvent, SPAN_PREWARM, "prewarm");
+                    break;
+                case EVENT_RATIONALE_QUEUED:
+                    begin(traceEvent, SPAN_RATIONALE_QUEUED, "rationale queued");
+                    break;
+                case EVENT_RATIONALE_DEQUEUED:
+                    end(traceEvent, SPAN_RATIONALE_QUEUED, "rationale queued");
+                    break;
+                default:
+                    return;
+            }
+
+            if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+                });
+            }
+        }
+    }
+
+    private void begin(@NonNull TraceEvent event, int type, @NonNull String name) {
+        int open = mOpenSpans.get(event.correlationId);
+        if ((open & type) == 0) {
+            mOpenSpans.put(event.correlationId, open | type);
+            append(event, "b", name);
+        }
+    }
+
+    private void end(@NonNull TraceEvent event, int type, @NonNull String name) {
+        int open = mOpenSpans.get(event.correlationId);
+        if ((open & type) != 0) {
+            open &= ~type;
+            if (open == 0) {
+                mOpenSpans.delete(event.correlationId);
+            } else {
+                mOpenSpans.put(event.correlationId, open);
+            }
+            append(event, "e", name);
+        }
+    }
+
+    private void instant(@NonNull TraceEvent event, @NonNull String name) {
+        append(event, "n", name);
+    }
+
+    private void append(@NonNull TraceEvent event, @NonNull String phase, @NonNull String name) {
+        StringBuilder out = mPending;
+        out.append("{\"name\":\"").append(name)
+                .append("\",\"cat\":\"easypermissions\",\"ph\":\"").append(phase)
+                .append("\",\"id\":").append(event.correlationId)
+                .append(",\"pid\":").append(mPid)
+                .append(",\"tid\":").append(event.tid)
+                .append(",\"ts\":").append(event.timestampNanos / 1000)
+                .append(",\"args\":{\"requestCode\":").append(event.requestCode)
+                .append(",\"permissions\":[");
+        for (int i = 0; i < event.perms.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            appendString(out, event.perms[i]);
+        }
+        out.append("]}},\n");
+    }
+
+    private static void appendString(@NonNull StringBuilder out, @NonNull String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private void flush() {
+        String pending;
+        boolean started;
+        synchronized (this) {
+            pending = mPending.toString();
+            mPending = new StringBuilder();
+            mFlushScheduled = false;
+            started = mStarted;
+            mStarted = true;
+        }
+
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(mFile, started), "UTF-8");
+            if (!started) {
+                writer.write("[\n");
+            }
+            writer.write(pending);
+        } catch (IOException e) {
+            PermissionLog.e(TAG, "Failed to write trace to " + mFile, e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    PermissionLog.e(TAG, "Failed to close " + mFile, e);
+                }
+            }
+        }
+    }
+
+    private static final class TraceEvent {
+        final int correlationId;
+        final int requestCode;
+        final String[] perms;
+        final long timestampNanos;
+        final int tid = Process.myTid();
+
+        TraceEvent(int correlationId, int requestCode, @NonNull String[] perms, long timestampNanos) {
+            this.correlationId = correlationId;
+            this.requestCode = requestCode;
+            this.perms = perms;
+            this.timestampNanos = timestampNanos;
+        }
+    }
+}
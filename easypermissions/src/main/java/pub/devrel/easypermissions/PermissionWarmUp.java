@@ -0,0 +1,160 @@
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+
+import pub.devrel.easypermissions.helper.AnnotatedMethods;
+import pub.devrel.easypermissions.helper.BackgroundExecutor;
+import pub.devrel.easypermissions.helper.GrantStateCache;
+import pub.devrel.easypermissions.helper.PermissionLog;
+import pub.devrel.easypermissions.helper.PermissionTrace;
+
+/**
+ * Does the library's first-use work on a background thread, typically from {@code
+ * Application#onCreate} or an App Startup {@code Initializer}: indexing the methods annotated with
+ * {@link AfterPermissionGranted} of the given host classes, checking which permissions are granted
+ * and loading the {@link PermissionHistory}.
+ * <p>
+ * Warm-up never blocks the main thread. Anything used before the warm-up got to it is computed on
+ * the spot, as without warm-up, and the results are shared.
+ *
+ * @see PermissionWarmUp.Builder
+ */
+public final class PermissionWarmUp {
+
+    private static final String TAG = "PermissionWarmUp";
+
+    private final Context mContext;
+    private final Class<?>[] mHostClasses;
+    private final String[] mPerms;
+    private final boolean mLoadHistory;
+    private final Executor mExecutor;
+
+    private volatile boolean mDone;
+
+    private PermissionWarmUp(@NonNull Context context,
+                             @NonNull Class<?>[] hostClasses,
+                             @NonNull String[] perms,
+                             boolean loadHistory,
+                             @NonNull Executor executor) {
+        mContext = context;
+        mHostClasses = hostClasses;
+        mPerms = perms;
+        mLoadHistory = loadHistory;
+        mExecutor = executor;
+    }
+
+    /**
+     * Start the warm-up on the executor and return immediately.
+     */
+    public void start() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean traced = PermissionTrace.begin("PermissionWarmUp.run");
+                try {
+                    warmUp();
+                } catch (RuntimeException e) {
+                    // Warm-up is best effort, everything is computed again when needed
+                    PermissionLog.e(TAG, "Warm-up failed.", e);
+                } finally {
+                    PermissionTrace.end(traced);
+                    mDone = true;
+                }
+            }
+        });
+    }
+
+    /**
+     * @return true once the warm-up has finished.
+     */
+    public boolean isDone() {
+        return mDone;
+    }
+
+    private void warmUp() {
+        for (Class<?> hostClass : mHostClasses) {
+            AnnotatedMethods.get(hostClass);
+        }
+
+        // Below M every permission is granted at install time, nothing to check
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            GrantStateCache.prime(mContext, mPerms);
+        }
+
+        if (mLoadHistory) {
+            PermissionHistory.getInstance(mContext);
+        }
+    }
+
+    /**
+     * Builder for a {@link PermissionWarmUp}.
+     */
+    public static final class Builder {
+        private final Context mContext;
+
+        private Class<?>[] mHostClasses = new Class<?>[0];
+        private String[] mPerms = new String[0];
+        private boolean mLoadHistory;
+        private Executor mExecutor;
+
+        /**
+         * @param context any context of the app.
+         */
+        public Builder(@NonNull Context context) {
+            mContext = context.getApplicationContext();
+        }
+
+        /**
+         * Set the Activity and Fragment classes whose {@link AfterPermissionGranted} methods
+         * should be indexed.
+         */
+        @NonNull
+        public Builder setHostClasses(@NonNull Class<?>... hostClasses) {
+            mHostClasses = hostClasses.clone();
+            return this;
+        }
+
+        /**
+         * Set the permissions whose state should be checked, such as those requested on the first
+         * screen.
+         */
+        @NonNull
+        public Builder setPermissions(@NonNull String... perms) {
+            mPerms = perms.clone();
+            return this;
+        }
+
+        /**
+         * Set whether to load the {@link PermissionHistory}, for apps that use it. The default is
+         * false.
+         */
+        @NonNull
+        public Builder setLoadHistory(boolean loadHistory) {
+            mLoadHistory = loadHistory;
+            return this;
+        }
+
+        /**
+         * Set the executor to warm up on. The default is the library's background thread.
+         */
+        @NonNull
+        public Builder setExecutor(@NonNull Executor executor) {
+            mExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Build the warm-up, call {@link PermissionWarmUp#start()} to run it.
+         */
+        @NonNull
+        public PermissionWarmUp build() {
+            return new PermissionWarmUp(mContext, mHostClasses, mPerms, mLoadHistory,
+                    mExecutor != null ? mExecutor : BackgroundExecutor.get());
+        }
+    }
+}
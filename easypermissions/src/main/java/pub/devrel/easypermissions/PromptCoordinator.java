@@ -0,0 +1,162 @@
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import pub.devrel.easypermissions.helper.PermissionEventLog;
+import pub.devrel.easypermissions.helper.PermissionHelper;
+import pub.devrel.easypermissions.helper.PermissionLog;
+
+/**
+ * Lets one request at a time show its rationale or the system prompt, across all the Activities
+ * and Fragments of an app. Android answers a request made while another one is prompting as if it
+ * was denied, and each helper only knows about its own FragmentManager, so without coordination
+ * concurrent requests from different hosts, such as two Activities in multi-window mode, are lost.
+ * <p>
+ * Other requests wait, in order, until the active request finishes or is cancelled. A waiting
+ * request is then made from its own host, once that host is started.
+ * <p>
+ * Must only be used from the main thread.
+ */
+final class PromptCoordinator {
+
+    private static final String TAG = "PromptCoordinator";
+
+    // By application context
+    private static final Map<Context, PromptCoordinator> sCoordinators = new WeakHashMap<>();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mNext = new Runnable() {
+        @Override
+        public void run() {
+            next();
+        }
+    };
+
+    private final ArrayDeque<Entry> mWaiting = new ArrayDeque<>();
+    private PendingPermissionRequest mActive;
+
+    private PromptCoordinator() {
+    }
+
+    /**
+     * @return the coordinator of the context's app.
+     */
+    @NonNull
+    static PromptCoordinator get(@NonNull Context context) {
+        Context app = context.getApplicationContext() != null
+                ? context.getApplicationContext()
+                : context;
+        PromptCoordinator coordinator = sCoordinators.get(app);
+        if (coordinator == null) {
+            coordinator = new PromptCoordinator();
+            sCoordinators.put(app, coordinator);
+        }
+        return coordinator;
+    }
+
+    /**
+     * Show the rationale or the system prompt of a request now if no other request is prompting,
+     * otherwise once it is its turn.
+     *
+     * @param decision the {@link RequestPolicy} decision for the request.
+     */
+    void prompt(@NonNull PendingPermissionRequest pending, int decision) {
+        pending.setCoordinator(this);
+        mWaiting.add(new Entry(pending, decision));
+        next();
+        if (mActive == pending || !pending.isPending()) {
+            return;
+        }
+
+        PermissionRequest request = pending.getRequest();
+        PermissionLog.d(TAG, "Another request is prompting, request " + request.getRequestCode()
+                + " waits.");
+        PermissionEventLog.get().record(PermissionEventLog.CODE_PROMPT_QUEUED,
+                request.getCorrelationId(), request.getRequestCode(), request.getPerms());
+    }
+
+    /**
+     * Called when a request finishes or is cancelled, active or waiting.
+     */
+    void onFinished(@NonNull PendingPermissionRequest pending) {
+        if (pending == mActive) {
+            mActive = null;
+            // Posted, so the rationale or prompt of the finished request closes first
+            mHandler.removeCallbacks(mNext);
+            mHandler.post(mNext);
+            return;
+        }
+
+        Iterator<Entry> iterator = mWaiting.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().pending == pending) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Make the first waiting request whose host is started, if no request is prompting.
+     */
+    void next() {
+        while (mActive == null) {
+            Entry next = null;
+            for (Entry entry : mWaiting) {
+                if (isHostStarted(entry.pending)) {
+                    next = entry;
+                    break;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+
+            // Removed before it is made, making it may queue other requests
+            mWaiting.remove(next);
+            if (!EasyPermissions.finishWithoutPrompt(next.pending.getRequest())) {
+                activate(next);
+            } else {
+                next.pending.finish();
+            }
+        }
+    }
+
+    private void activate(@NonNull Entry entry) {
+        mActive = entry.pending;
+        PermissionRequest request = entry.pending.getRequest();
+        request.getHelper().requestPermissions(request, entry.decision);
+    }
+
+    private static boolean isHostStarted(@NonNull PendingPermissionRequest pending) {
+        PermissionHelper helper = pending.getRequest().getHelper();
+        if (helper.isHostGone()) {
+            // Made right away, to be finished
+            return true;
+        }
+
+        Object host = helper.getHost();
+        return !(host instanceof LifecycleOwner) || ((LifecycleOwner) host).getLifecycle()
+                .getCurrentState().isAtLeast(Lifecycle.State.STARTED);
+    }
+
+    private static final class Entry {
+        final PendingPermissionRequest pending;
+        final int decision;
+
+        Entry(PendingPermissionRequest pending, int decision) {
+            this.pending = pending;
+            this.decision = decision;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import androidx.fragment.app.Fragment;
 
 import java.util.Arrays;
 
+import pub.devrel.easypermissions.helper.PermissionEvents;
 import pub.devrel.easypermissions.helper.PermissionHelper;
 
 /**
@@ -46,26 +47,50 @@ class RationaleDialogClickListener implements Dialog.OnClickListener {
         mRationaleCallbacks = dialogCallback;
     }
 
+    RationaleDialogClickListener(Object host,
+                                 RationaleDialogConfig config,
+                                 EasyPermissions.PermissionCallbacks callbacks,
+                                 EasyPermissions.RationaleCallbacks rationaleCallbacks) {
+
+        mHost = host;
+
+        mConfig = config;
+        mCallbacks = callbacks;
+        mRationaleCallbacks = rationaleCallbacks;
+    }
+
     @Override
     public void onClick(DialogInterface dialog, int which) {
+        if (!PendingPermissionRequest.onRationaleAnswered(mConfig.correlationId,
+                which == Dialog.BUTTON_POSITIVE)) {
+            // The request was cancelled while its rationale was showing
+            return;
+        }
+
         int requestCode = mConfig.requestCode;
         if (which == Dialog.BUTTON_POSITIVE) {
             String[] permissions = mConfig.permissions;
+            PermissionEvents.emit(PermissionInstrumentation.EVENT_RATIONALE_ACCEPTED,
+                    mConfig.correlationId, requestCode, permissions);
             if (mRationaleCallbacks != null) {
                 mRationaleCallbacks.onRationaleAccepted(requestCode);
             }
             if (mHost instanceof Fragment) {
-                PermissionHelper.newInstance((Fragment) mHost).directRequestPermissions(requestCode, permissions);
+                PermissionHelper.newInstance((Fragment) mHost).dispatchRequestPermissions(mConfig.correlationId, requestCode, permissions);
             } else if (mHost instanceof Activity) {
-                PermissionHelper.newInstance((Activity) mHost).directRequestPermissions(requestCode, permissions);
+                PermissionHelper.newInstance((Activity) mHost).dispatchRequestPermissions(mConfig.correlationId, requestCode, permissions);
             } else {
                 throw new RuntimeException("Host must be an Activity or Fragment!");
             }
         } else {
+            PermissionEvents.emit(PermissionInstrumentation.EVENT_RATIONALE_DENIED,
+                    mConfig.correlationId, requestCode, mConfig.permissions);
             if (mRationaleCallbacks != null) {
                 mRationaleCallbacks.onRationaleDenied(requestCode);
             }
-            notifyPermissionDenied();
+            if (!StagedPermissionRequest.onStageDeclined(mConfig.correlationId, mCallbacks)) {
+                notifyPermissionDenied();
+            }
         }
     }
 
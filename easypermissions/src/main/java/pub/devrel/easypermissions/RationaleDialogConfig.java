@@ -2,7 +2,9 @@ package pub.devrel.easypermissions;
 
 import android.app.Dialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.os.Bundle;
+import android.widget.Button;
 import androidx.annotation.NonNull;
 import androidx.annotation.StyleRes;
 import androidx.appcompat.app.AlertDialog;
@@ -18,6 +20,7 @@ class RationaleDialogConfig {
     private static final String KEY_THEME = "theme";
     private static final String KEY_REQUEST_CODE = "requestCode";
     private static final String KEY_PERMISSIONS = "permissions";
+    private static final String KEY_CORRELATION_ID = "correlationId";
 
     String positiveButton;
     String negativeButton;
@@ -25,13 +28,15 @@ class RationaleDialogConfig {
     int requestCode;
     String rationaleMsg;
     String[] permissions;
+    int correlationId;
 
     RationaleDialogConfig(@NonNull String positiveButton,
                           @NonNull String negativeButton,
                           @NonNull String rationaleMsg,
                           @StyleRes int theme,
                           int requestCode,
-                          @NonNull String[] permissions) {
+                          @NonNull String[] permissions,
+                          int correlationId) {
 
         this.positiveButton = positiveButton;
         this.negativeButton = negativeButton;
@@ -39,6 +44,7 @@ class RationaleDialogConfig {
         this.theme = theme;
         this.requestCode = requestCode;
         this.permissions = permissions;
+        this.correlationId = correlationId;
     }
 
     RationaleDialogConfig(Bundle bundle) {
@@ -48,6 +54,7 @@ class RationaleDialogConfig {
         theme = bundle.getInt(KEY_THEME);
         requestCode = bundle.getInt(KEY_REQUEST_CODE);
         permissions = bundle.getStringArray(KEY_PERMISSIONS);
+        correlationId = bundle.getInt(KEY_CORRELATION_ID);
     }
 
     Bundle toBundle() {
@@ -58,6 +65,7 @@ class RationaleDialogConfig {
         bundle.putInt(KEY_THEME, theme);
         bundle.putInt(KEY_REQUEST_CODE, requestCode);
         bundle.putStringArray(KEY_PERMISSIONS, permissions);
+        bundle.putInt(KEY_CORRELATION_ID, correlationId);
 
         return bundle;
     }
@@ -77,6 +85,16 @@ class RationaleDialogConfig {
                 .create();
     }
 
+    /**
+     * Show this config in a dialog created by {@link #createSupportDialog(Context,
+     * Dialog.OnClickListener)} for another config with the same theme.
+     */
+    void updateSupportDialog(AlertDialog dialog) {
+        dialog.setMessage(rationaleMsg);
+        setText(dialog.getButton(DialogInterface.BUTTON_POSITIVE), positiveButton);
+        setText(dialog.getButton(DialogInterface.BUTTON_NEGATIVE), negativeButton);
+    }
+
     android.app.AlertDialog createFrameworkDialog(Context context, Dialog.OnClickListener listener) {
         android.app.AlertDialog.Builder builder;
         if (theme > 0) {
@@ -92,4 +110,20 @@ class RationaleDialogConfig {
                 .create();
     }
 
+    /**
+     * @see #updateSupportDialog(AlertDialog)
+     */
+    void updateFrameworkDialog(android.app.AlertDialog dialog) {
+        dialog.setMessage(rationaleMsg);
+        setText(dialog.getButton(DialogInterface.BUTTON_POSITIVE), positiveButton);
+        setText(dialog.getButton(DialogInterface.BUTTON_NEGATIVE), negativeButton);
+    }
+
+    private static void setText(Button button, String text) {
+        // Buttons only exist once the dialog has been shown
+        if (button != null) {
+            button.setText(text);
+        }
+    }
+
 }
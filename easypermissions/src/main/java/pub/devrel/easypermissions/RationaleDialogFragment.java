@@ -1,26 +1,42 @@
 package pub.devrel.easypermissions;
 
+import android.app.AlertDialog;
 import android.app.Dialog;
 import android.app.DialogFragment;
+import android.app.Fragment;
 import android.app.FragmentManager;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.os.Build;
 import android.os.Bundle;
+import android.view.View;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.StyleRes;
 
+import pub.devrel.easypermissions.helper.CorrelationIds;
+
 /**
  * {@link DialogFragment} to display rationale for permission requests when the request comes from
  * a Fragment or Activity that can host a Fragment.
+ * <p>
+ * Like {@link RationaleDialogFragmentCompat}, the fragment stays attached once the rationale is
+ * answered so the next rationale can reuse it with {@link #rearm}.
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public class RationaleDialogFragment extends DialogFragment {
 
     public static final String TAG = "RationaleDialogFragment";
 
+    private static final String KEY_CONFIG = "config";
+    private static final String KEY_IDLE = "idle";
+
     private EasyPermissions.PermissionCallbacks mPermissionCallbacks;
     private EasyPermissions.RationaleCallbacks mRationaleCallbacks;
+    private RationaleDialogConfig mConfig;
+    private Dialog.OnClickListener mClickListener;
+    private boolean mShowing;
     private boolean mStateSaved = false;
 
     public static RationaleDialogFragment newInstance(
@@ -29,19 +45,83 @@ public class RationaleDialogFragment extends DialogFragment {
             @NonNull String rationaleMsg,
             @StyleRes int theme,
             int requestCode,
-            @NonNull String[] permissions) {
+            @NonNull String[] permissions,
+            int correlationId) {
 
         // Create new Fragment
         RationaleDialogFragment dialogFragment = new RationaleDialogFragment();
 
         // Initialize configuration as arguments
         RationaleDialogConfig config = new RationaleDialogConfig(
-                positiveButton, negativeButton, rationaleMsg, theme, requestCode, permissions);
+                positiveButton, negativeButton, rationaleMsg, theme, requestCode, permissions,
+                correlationId);
         dialogFragment.setArguments(config.toBundle());
 
         return dialogFragment;
     }
 
+    /**
+     * @return the rationale fragment attached to a FragmentManager, showing or idle, if any.
+     */
+    @Nullable
+    public static RationaleDialogFragment find(@NonNull FragmentManager manager) {
+        Fragment fragment = manager.findFragmentByTag(TAG);
+        return fragment instanceof RationaleDialogFragment
+                ? (RationaleDialogFragment) fragment
+                : null;
+    }
+
+    /**
+     * @return true if the rationale is showing, false if the fragment is idle.
+     */
+    public boolean isShowing() {
+        return mShowing;
+    }
+
+    /**
+     * Show the rationale for another request in this idle fragment's dialog, without a fragment
+     * transaction or a new dialog.
+     *
+     * @return false if the fragment can't be reused, for example because the theme differs.
+     */
+    public boolean rearm(
+            @NonNull String positiveButton,
+            @NonNull String negativeButton,
+            @NonNull String rationaleMsg,
+            @StyleRes int theme,
+            int requestCode,
+            @NonNull String[] permissions,
+            int correlationId) {
+        Dialog dialog = getDialog();
+        if (mShowing || !(dialog instanceof AlertDialog) || theme != mConfig.theme
+                || isRemoving() || mStateSaved) {
+            return false;
+        }
+
+        mConfig = new RationaleDialogConfig(
+                positiveButton, negativeButton, rationaleMsg, theme, requestCode, permissions,
+                correlationId);
+        mConfig.updateFrameworkDialog((AlertDialog) dialog);
+        dialog.show();
+        mShowing = true;
+        return true;
+    }
+
+    /**
+     * @return the correlation ID of the request whose rationale is, or was last, shown.
+     */
+    public int getCorrelationId() {
+        return mConfig != null ? mConfig.correlationId : CorrelationIds.NONE;
+    }
+
+    /**
+     * Remove this fragment, for example when it can't be reused.
+     */
+    public void release() {
+        mShowing = false;
+        dismissAllowingStateLoss();
+    }
+
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
@@ -64,10 +144,63 @@ public class RationaleDialogFragment extends DialogFragment {
         }
     }
 
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        Bundle config = savedInstanceState != null
+                ? savedInstanceState.getBundle(KEY_CONFIG)
+                : null;
+        mConfig = new RationaleDialogConfig(config != null ? config : getArguments());
+
+        // Restored while idle, or cancelled before the fragment was created, there is nothing to
+        // show and the fragment is removed once started
+        mShowing = (savedInstanceState == null || !savedInstanceState.getBoolean(KEY_IDLE))
+                && !PendingPermissionRequest.isDiscarded(mConfig.correlationId);
+        setShowsDialog(mShowing);
+        if (mShowing && savedInstanceState != null) {
+            // Recreated with its host, the request keeps waiting for the answer
+            PendingPermissionRequest.onRationaleRestored(mConfig.correlationId);
+        }
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         mStateSaved = true;
         super.onSaveInstanceState(outState);
+        outState.putBundle(KEY_CONFIG, mConfig.toBundle());
+        outState.putBoolean(KEY_IDLE, !mShowing);
+    }
+
+    @Override
+    public void onStart() {
+        mStateSaved = false;
+        super.onStart();
+        if (!mShowing) {
+            release();
+            return;
+        }
+
+        // Answering hides the dialog instead of dismissing it, which would remove the fragment
+        Dialog dialog = getDialog();
+        if (dialog instanceof AlertDialog) {
+            hideOnClick((AlertDialog) dialog, DialogInterface.BUTTON_POSITIVE);
+            hideOnClick((AlertDialog) dialog, DialogInterface.BUTTON_NEGATIVE);
+        }
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        if (!mShowing) {
+            release();
+        }
+    }
+
+    @Override
+    public void onDismiss(DialogInterface dialog) {
+        super.onDismiss(dialog);
+        mShowing = false;
     }
 
     /**
@@ -101,13 +234,27 @@ public class RationaleDialogFragment extends DialogFragment {
         // Rationale dialog should not be cancelable
         setCancelable(false);
 
-        // Get config from arguments, create click listener
-        RationaleDialogConfig config = new RationaleDialogConfig(getArguments());
-        RationaleDialogClickListener clickListener =
-                new RationaleDialogClickListener(this, config, mPermissionCallbacks, mRationaleCallbacks);
+        // Create click listener for the config shown at the time of the click
+        mClickListener = new Dialog.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                new RationaleDialogClickListener(RationaleDialogFragment.this, mConfig,
+                        mPermissionCallbacks, mRationaleCallbacks).onClick(dialog, which);
+            }
+        };
 
         // Create an AlertDialog
-        return config.createFrameworkDialog(getActivity(), clickListener);
+        return mConfig.createFrameworkDialog(getActivity(), mClickListener);
     }
 
+    private void hideOnClick(final AlertDialog dialog, final int which) {
+        dialog.getButton(which).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                mShowing = false;
+                dialog.hide();
+                mClickListener.onClick(dialog, which);
+            }
+        });
+    }
 }
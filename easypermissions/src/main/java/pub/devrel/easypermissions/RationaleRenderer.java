@@ -0,0 +1,55 @@
+package pub.devrel.easypermissions;
+
+import android.app.Activity;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Shows the rationale of a permission request in place of the default dialog, for example to avoid
+ * the cost of creating a dialog window. Renderers are called on the main thread.
+ * <p>
+ * Unlike the default dialog, which is hosted by a fragment, a rendered rationale is not restored
+ * after a configuration change; the request is then dropped without a callback.
+ *
+ * @see PermissionRequest.Builder#setRationaleRenderer(RationaleRenderer)
+ * @see BannerRationaleRenderer
+ */
+public interface RationaleRenderer {
+
+    /**
+     * Show the rationale of a request.
+     *
+     * @param activity the activity of the request's host.
+     * @param request  the request, providing the rationale and button texts.
+     * @param callback to be called exactly once, when the user answers the rationale.
+     * @return true if the rationale is shown, false if it was not shown because the rationale of
+     * another request is still showing. The default dialog is shown instead.
+     */
+    boolean show(@NonNull Activity activity, @NonNull PermissionRequest request,
+                 @NonNull Callback callback);
+
+    /**
+     * Hide the rationale of a request that was cancelled while it is showing. Its callback must
+     * not be called anymore. Nothing is done if the rationale of another request is showing.
+     *
+     * @param activity the activity of the request's host.
+     * @param request  the cancelled request.
+     */
+    void dismiss(@NonNull Activity activity, @NonNull PermissionRequest request);
+
+    /**
+     * Receives the user's answer to a rendered rationale.
+     */
+    interface Callback {
+
+        /**
+         * The user agreed to be asked for the permissions, which are requested next.
+         */
+        void onRationaleAccepted();
+
+        /**
+         * The user declined, the permissions are reported as denied.
+         */
+        void onRationaleDenied();
+    }
+}
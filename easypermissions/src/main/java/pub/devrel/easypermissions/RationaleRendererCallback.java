@@ -0,0 +1,67 @@
+package pub.devrel.easypermissions;
+
+import android.app.Dialog;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+import androidx.fragment.app.Fragment;
+
+/**
+ * {@link RationaleRenderer.Callback} continuing the flow of a request the same way the buttons of
+ * the rationale dialog do. Answers after the first are ignored.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class RationaleRendererCallback implements RationaleRenderer.Callback {
+
+    private final RationaleDialogClickListener mListener;
+    private boolean mAnswered;
+
+    /**
+     * @param host    the Activity or Fragment the request was made from.
+     * @param request the request whose rationale is rendered.
+     */
+    public RationaleRendererCallback(@NonNull Object host, @NonNull PermissionRequest request) {
+        RationaleDialogConfig config = new RationaleDialogConfig(
+                request.getPositiveButtonText(),
+                request.getNegativeButtonText(),
+                request.getRationale(),
+                request.getTheme(),
+                request.getRequestCode(),
+                request.getPerms(),
+                request.getCorrelationId());
+
+        // Same precedence as the dialog fragments, the activity wins over a host fragment
+        EasyPermissions.PermissionCallbacks callbacks = null;
+        EasyPermissions.RationaleCallbacks rationaleCallbacks = null;
+        Object activity = host instanceof Fragment ? ((Fragment) host).getActivity() : host;
+        for (Object candidate : new Object[]{host, activity}) {
+            if (candidate instanceof EasyPermissions.PermissionCallbacks) {
+                callbacks = (EasyPermissions.PermissionCallbacks) candidate;
+            }
+            if (candidate instanceof EasyPermissions.RationaleCallbacks) {
+                rationaleCallbacks = (EasyPermissions.RationaleCallbacks) candidate;
+            }
+        }
+
+        mListener = new RationaleDialogClickListener(host, config, callbacks, rationaleCallbacks);
+    }
+
+    @Override
+    public void onRationaleAccepted() {
+        answer(Dialog.BUTTON_POSITIVE);
+    }
+
+    @Override
+    public void onRationaleDenied() {
+        answer(Dialog.BUTTON_NEGATIVE);
+    }
+
+    private void answer(int which) {
+        if (mAnswered) {
+            return;
+        }
+
+        mAnswered = true;
+        mListener.onClick(null, which);
+    }
+}
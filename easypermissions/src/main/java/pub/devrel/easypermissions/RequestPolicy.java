@@ -0,0 +1,52 @@
+package pub.devrel.easypermissions;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Decides how a permission request that is not yet granted should be handled, before any
+ * rationale or system prompt is shown. Policies let apps skip prompts that are pointless, such as
+ * asking again for a permission the user keeps denying.
+ *
+ * @see EasyPermissions#setRequestPolicy(RequestPolicy)
+ * @see ExponentialBackoffPolicy
+ * @see MaxPromptsPerSessionPolicy
+ */
+public interface RequestPolicy {
+
+    /**
+     * Show the rationale if the system suggests it, otherwise request the permissions directly.
+     */
+    int DECISION_DEFAULT = 0;
+
+    /**
+     * Request the permissions from the system without showing the rationale.
+     */
+    int DECISION_REQUEST = 1;
+
+    /**
+     * Show the rationale before requesting the permissions.
+     */
+    int DECISION_RATIONALE = 2;
+
+    /**
+     * Don't prompt for the permissions, open an {@link AppSettingsDialog} instead.
+     */
+    int DECISION_APP_SETTINGS = 3;
+
+    /**
+     * Don't prompt at all, report the permissions as denied right away.
+     */
+    int DECISION_DENY = 4;
+
+    /**
+     * Decide how to handle a request. Called on the main thread for every request that is not
+     * already granted.
+     *
+     * @param request the request.
+     * @param history the history set with {@link EasyPermissions#setPermissionHistory(
+     *                PermissionHistory)}, if any.
+     * @return one of the {@code DECISION_*} constants.
+     */
+    int decide(@NonNull PermissionRequest request, @Nullable PermissionHistory history);
+}
@@ -0,0 +1,219 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.app.Activity;
+import android.content.Context;
+import android.os.Build;
+import android.os.Environment;
+import android.provider.Settings;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pub.devrel.easypermissions.helper.GrantStateCache;
+import pub.devrel.easypermissions.helper.PermissionEventLog;
+import pub.devrel.easypermissions.helper.PermissionLog;
+
+/**
+ * Permissions granted on a settings screen of their own instead of the permission prompt, such as
+ * {@link Manifest.permission#SYSTEM_ALERT_WINDOW}. The system only answers a request for them with
+ * a denial, so they are checked with their dedicated APIs, left out of system requests, and the
+ * user is sent to their settings screen through an {@link AppSettingsDialog} instead.
+ * <p>
+ * The other permissions of a request are requested first. If they are all granted, the settings
+ * screen of the first missing special permission is opened, and the outcome of every permission of
+ * the request is reported to {@link EasyPermissions#onActivityResult(int, android.content.Intent,
+ * Object...)} with the request code of the request. Otherwise the missing special permissions are
+ * reported as denied along with the others.
+ * <p>
+ * Checks may be made from any thread, routing must only be done from the main thread.
+ */
+final class SpecialAccess {
+
+    private static final String TAG = "SpecialAccess";
+
+    // Main thread only, requests waiting for the result of their other permissions, by
+    // correlation ID
+    private static final SparseArray<PermissionRequest> sDeferred = new SparseArray<>();
+
+    private SpecialAccess() {
+    }
+
+    /**
+     * @return true if the permission is granted on a settings screen of its own.
+     */
+    static boolean isSpecial(@NonNull String perm) {
+        return getSettingsAction(perm) != null;
+    }
+
+    /**
+     * @return the action of the settings screen granting the permission, or null if it is not
+     * special.
+     */
+    @Nullable
+    static String getSettingsAction(@NonNull String perm) {
+        switch (perm) {
+            case Manifest.permission.SYSTEM_ALERT_WINDOW:
+                return Settings.ACTION_MANAGE_OVERLAY_PERMISSION;
+            case Manifest.permission.WRITE_SETTINGS:
+                return Settings.ACTION_MANAGE_WRITE_SETTINGS;
+            case Manifest.permission.REQUEST_INSTALL_PACKAGES:
+                return Settings.ACTION_MANAGE_UNKNOWN_APP_SOURCES;
+            case Manifest.permission.MANAGE_EXTERNAL_STORAGE:
+                return Settings.ACTION_MANAGE_APP_ALL_FILES_ACCESS_PERMISSION;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Check a permission with its dedicated API if it is special. Not cached, special access may
+     * be revoked without the app's process being killed.
+     */
+    static boolean isGranted(@NonNull Context context, @NonNull String perm) {
+        switch (perm) {
+            case Manifest.permission.SYSTEM_ALERT_WINDOW:
+                return Build.VERSION.SDK_INT < Build.VERSION_CODES.M
+                        || Settings.canDrawOverlays(context);
+            case Manifest.permission.WRITE_SETTINGS:
+                return Build.VERSION.SDK_INT < Build.VERSION_CODES.M
+                        || Settings.System.canWrite(context);
+            case Manifest.permission.REQUEST_INSTALL_PACKAGES:
+                // Granted at install before O
+                return Build.VERSION.SDK_INT < Build.VERSION_CODES.O
+                        || context.getPackageManager().canRequestPackageInstalls();
+            case Manifest.permission.MANAGE_EXTERNAL_STORAGE:
+                return Build.VERSION.SDK_INT < Build.VERSION_CODES.R
+                        || Environment.isExternalStorageManager();
+            default:
+                return GrantStateCache.isGranted(context, perm);
+        }
+    }
+
+    /**
+     * Split the special permissions off a request.
+     *
+     * @return the request to make for the other permissions, the request itself if it has no
+     * special permission, or null if it was handled by opening a settings screen.
+     */
+    @Nullable
+    static PermissionRequest route(@NonNull PermissionRequest request) {
+        if (request.getHelper().isHostGone()) {
+            return request;
+        }
+
+        Context context = request.getHelper().getContext();
+        List<String> others = new ArrayList<>();
+        boolean special = false;
+        boolean missing = false;
+        for (String perm : request.getPerms()) {
+            if (!isSpecial(perm)) {
+                others.add(perm);
+            } else {
+                special = true;
+                missing |= !isGranted(context, perm);
+            }
+        }
+
+        if (!special) {
+            return request;
+        }
+
+        String[] otherPerms = others.toArray(new String[0]);
+        if (others.isEmpty() || EasyPermissions.hasPermissionsQuietly(context, otherPerms)) {
+            if (!missing) {
+                // Handled as already granted
+                return request;
+            }
+
+            showSettings(request);
+            return null;
+        }
+
+        sDeferred.put(request.getCorrelationId(), request);
+        return request.withPerms(otherPerms, request.getCorrelationId());
+    }
+
+    /**
+     * Add the outcome of the special permissions of a request to the result of its other
+     * permissions, or open the settings screen of a missing one if the others were all granted.
+     *
+     * @return true if a settings screen was opened, and the result must not be delivered yet.
+     */
+    static boolean onResult(int correlationId,
+                            @NonNull List<String> granted,
+                            @NonNull List<String> denied) {
+        PermissionRequest request = sDeferred.get(correlationId);
+        if (request == null) {
+            return false;
+        }
+
+        sDeferred.remove(correlationId);
+        if (request.getHelper().isHostGone()) {
+            return false;
+        }
+
+        Context context = request.getHelper().getContext();
+        List<String> missing = new ArrayList<>();
+        for (String perm : request.getPerms()) {
+            if (!isSpecial(perm)) {
+                continue;
+            }
+            if (isGranted(context, perm)) {
+                granted.add(perm);
+            } else {
+                missing.add(perm);
+            }
+        }
+
+        if (!missing.isEmpty() && denied.isEmpty()) {
+            showSettings(request);
+            return true;
+        }
+
+        denied.addAll(missing);
+        return false;
+    }
+
+    /**
+     * Forget a request whose result is not delivered.
+     */
+    static void discard(int correlationId) {
+        sDeferred.remove(correlationId);
+    }
+
+    private static void showSettings(@NonNull PermissionRequest request) {
+        Context context = request.getHelper().getContext();
+        String perm = null;
+        for (String candidate : request.getPerms()) {
+            if (isSpecial(candidate) && !isGranted(context, candidate)) {
+                perm = candidate;
+                break;
+            }
+        }
+
+        PermissionLog.d(TAG, "Request " + request.getRequestCode() + ": opening the settings of "
+                + perm + ".");
+        PermissionEventLog.get().record(PermissionEventLog.CODE_SPECIAL_ACCESS,
+                request.getCorrelationId(), request.getRequestCode(), request.getPerms());
+
+        Object host = request.getHelper().getHost();
+        AppSettingsDialog.Builder builder = host instanceof Fragment
+                ? new AppSettingsDialog.Builder((Fragment) host)
+                : new AppSettingsDialog.Builder((Activity) host);
+        builder.setCorrelationId(request.getCorrelationId())
+                .setRequestCode(request.getRequestCode())
+                .setRationale(request.getRationale())
+                .setPermissions(request.getPerms())
+                .setSettingsAction(getSettingsAction(perm))
+                .setReportAll(true)
+                .setOnHostGoneListener(request.getOnHostGoneListener())
+                .build()
+                .show();
+    }
+}
@@ -0,0 +1,278 @@
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import pub.devrel.easypermissions.helper.PermissionHelper;
+import pub.devrel.easypermissions.helper.PermissionLog;
+
+/**
+ * Handle of a request made in stages with {@link
+ * EasyPermissions#requestPermissions(PermissionRequest, PermissionDependencies)}, for permissions
+ * that can only be requested once others are granted.
+ * <p>
+ * Each stage planned by {@link PermissionDependencies#plan(String...)} is a request of its own,
+ * with the options of the original request, made once the result of the previous stage is passed
+ * to {@link EasyPermissions#onRequestPermissionsResult(int, String[], int[], Object...)}. The
+ * receivers are only notified once, after the last stage, with the permissions granted and denied
+ * over all stages. Permissions already granted are not asked for again, and permissions whose
+ * requirements were all denied are reported as denied without being asked for. Declining the
+ * rationale of a stage reports the permissions of that stage and of the later ones as denied.
+ * <p>
+ * A stage a {@link RequestPolicy} handles without prompting reports its own result and ends the
+ * request. Cancelling the request, or one of its stages, cancels the request as a whole.
+ * <p>
+ * Must only be used from the main thread.
+ */
+public final class StagedPermissionRequest {
+
+    private static final String TAG = "StagedRequest";
+
+    // Main thread only, by correlation ID of the running stage
+    private static final SparseArray<StagedPermissionRequest> sByStage = new SparseArray<>();
+
+    private final PermissionRequest mRequest;
+    private final PermissionDependencies mDependencies;
+    private final List<String> mGranted = new ArrayList<>();
+    private final List<String> mDenied = new ArrayList<>();
+    private List<String[]> mStages = Collections.emptyList();
+    private int mNextStage;
+    private String[] mAsked;
+    private PendingPermissionRequest mCurrent;
+    private PendingPermissionRequest.OnCancelledListener mListener;
+    private boolean mDone;
+
+    private final PendingPermissionRequest.OnCancelledListener mStageCancelled =
+            new PendingPermissionRequest.OnCancelledListener() {
+                @Override
+                public void onCancelled(@NonNull PendingPermissionRequest pending, int reason) {
+                    mDone = true;
+                    sByStage.remove(pending.getRequest().getCorrelationId());
+                    if (mListener != null) {
+                        mListener.onCancelled(pending, reason);
+                    }
+                }
+            };
+
+    private StagedPermissionRequest(@NonNull PermissionRequest request,
+                                    @NonNull PermissionDependencies dependencies) {
+        mRequest = request;
+        mDependencies = dependencies;
+    }
+
+    @NonNull
+    static StagedPermissionRequest start(@NonNull PermissionRequest request,
+                                         @NonNull PermissionDependencies dependencies) {
+        StagedPermissionRequest staged = new StagedPermissionRequest(request, dependencies);
+        PermissionHelper helper = request.getHelper();
+        if (helper.isHostGone()) {
+            staged.runUnstaged();
+            return staged;
+        }
+
+        Context context = helper.getContext();
+        List<String> missing = new ArrayList<>();
+        for (String perm : request.getPerms()) {
+            if (EasyPermissions.hasPermissionsQuietly(context, perm)) {
+                staged.mGranted.add(perm);
+            } else {
+                missing.add(perm);
+            }
+        }
+
+        List<String[]> stages = dependencies.plan(missing.toArray(new String[0]));
+        if (stages.size() <= 1) {
+            // Nothing to stage, the request is made as is
+            staged.mGranted.clear();
+            staged.runUnstaged();
+            return staged;
+        }
+
+        PermissionLog.d(TAG, "Requesting " + request.getRequestCode() + " in "
+                + stages.size() + " stages.");
+        staged.mStages = stages;
+        staged.advance(helper.getHost());
+        return staged;
+    }
+
+    /**
+     * Called when the result of a request arrives.
+     *
+     * @return true if the request was a stage and the result was handled, false if it must be
+     * delivered as usual.
+     */
+    static boolean onStageResult(int correlationId,
+                                 @NonNull List<String> granted,
+                                 @NonNull List<String> denied,
+                                 @NonNull Object... receivers) {
+        StagedPermissionRequest staged = sByStage.get(correlationId);
+        if (staged == null) {
+            return false;
+        }
+
+        sByStage.remove(correlationId);
+        staged.mGranted.addAll(granted);
+        staged.mDenied.addAll(denied);
+        staged.advance(receivers);
+        return true;
+    }
+
+    /**
+     * Called when the rationale of a request is declined.
+     *
+     * @param callbacks the callbacks of the rationale, if any.
+     * @return true if the request was a stage and the answer was handled.
+     */
+    static boolean onStageDeclined(int correlationId,
+                                   @Nullable EasyPermissions.PermissionCallbacks callbacks) {
+        StagedPermissionRequest staged = sByStage.get(correlationId);
+        if (staged == null) {
+            return false;
+        }
+
+        sByStage.remove(correlationId);
+        staged.mDone = true;
+        staged.mDenied.addAll(Arrays.asList(staged.mAsked));
+        while (staged.mNextStage < staged.mStages.size()) {
+            staged.mDenied.addAll(Arrays.asList(staged.mStages.get(staged.mNextStage++)));
+        }
+
+        int requestCode = staged.mRequest.getRequestCode();
+        if (callbacks != null) {
+            if (!staged.mGranted.isEmpty()) {
+                callbacks.onPermissionsGranted(requestCode, staged.mGranted);
+            }
+            callbacks.onPermissionsDenied(requestCode, staged.mDenied);
+        }
+        return true;
+    }
+
+    /**
+     * @return the original request.
+     */
+    @NonNull
+    public PermissionRequest getRequest() {
+        return mRequest;
+    }
+
+    /**
+     * @return the permissions of each planned stage, in order. Empty if the request was not
+     * staged because a single request was enough.
+     */
+    @NonNull
+    public List<String[]> getStages() {
+        return Collections.unmodifiableList(mStages);
+    }
+
+    /**
+     * @return the handle of the running or last stage, null if no stage had to be made.
+     */
+    @MainThread
+    @Nullable
+    public PendingPermissionRequest getCurrentStage() {
+        return mCurrent;
+    }
+
+    /**
+     * @return true until the result of the last stage is delivered or the request is cancelled.
+     */
+    @MainThread
+    public boolean isPending() {
+        return !mDone && mCurrent != null && mCurrent.isPending();
+    }
+
+    /**
+     * Set the listener notified if a stage of the request is cancelled.
+     *
+     * @return this handle.
+     */
+    @MainThread
+    @NonNull
+    public StagedPermissionRequest setOnCancelledListener(
+            @Nullable PendingPermissionRequest.OnCancelledListener listener) {
+        mListener = listener;
+        return this;
+    }
+
+    /**
+     * Cancel the running stage, and with it the request, if it is pending.
+     *
+     * @return true if the request was cancelled, false if it was not pending anymore.
+     * @see PendingPermissionRequest#cancel()
+     */
+    @MainThread
+    public boolean cancel() {
+        return isPending() && mCurrent.cancel();
+    }
+
+    private void runUnstaged() {
+        mCurrent = EasyPermissions.startRequest(mRequest)
+                .setOnCancelledListener(mStageCancelled);
+    }
+
+    /**
+     * Make the next stage that still has permissions to ask for, or deliver the result if there
+     * is none left.
+     */
+    private void advance(@NonNull Object... receivers) {
+        PermissionHelper helper = mRequest.getHelper();
+        if (helper.isHostGone()) {
+            mDone = true;
+            return;
+        }
+
+        Context context = helper.getContext();
+        while (mNextStage < mStages.size()) {
+            List<String> asked = new ArrayList<>();
+            for (String perm : mStages.get(mNextStage++)) {
+                if (EasyPermissions.hasPermissionsQuietly(context, perm)) {
+                    mGranted.add(perm);
+                } else if (!mDependencies.isSatisfied(context, perm)) {
+                    // No point asking, the system would deny it
+                    mDenied.add(perm);
+                } else {
+                    asked.add(perm);
+                }
+            }
+            if (asked.isEmpty()) {
+                continue;
+            }
+
+            mAsked = asked.toArray(new String[0]);
+            PermissionRequest stage = mRequest.withPerms(mAsked);
+            sByStage.put(stage.getCorrelationId(), this);
+            mCurrent = EasyPermissions.startRequest(stage)
+                    .setOnCancelledListener(mStageCancelled);
+            if (!mCurrent.isPending() && !mCurrent.isCancelled()) {
+                // Handled without prompting, its result was already reported
+                sByStage.remove(stage.getCorrelationId());
+                mDone = true;
+            }
+            return;
+        }
+
+        mDone = true;
+        boolean runAnnotatedMethods = !mGranted.isEmpty() && mDenied.isEmpty();
+        EasyPermissions.notifyReceivers(mRequest.getCorrelationId(), mRequest.getRequestCode(),
+                mGranted, mDenied, runAnnotatedMethods, receivers);
+    }
+
+    @Override
+    public String toString() {
+        return "StagedPermissionRequest{" +
+                "mRequest=" + mRequest +
+                ", mNextStage=" + mNextStage +
+                ", mCurrent=" + mCurrent +
+                ", mDone=" + mDone +
+                '}';
+    }
+}
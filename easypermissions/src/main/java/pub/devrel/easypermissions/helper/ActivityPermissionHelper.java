@@ -1,14 +1,14 @@
 package pub.devrel.easypermissions.helper;
 
 import android.app.Activity;
-import android.app.Fragment;
 import android.app.FragmentManager;
 import android.content.Context;
+import android.os.Build;
 import androidx.annotation.NonNull;
-import androidx.annotation.StyleRes;
 import androidx.core.app.ActivityCompat;
-import android.util.Log;
 
+import pub.devrel.easypermissions.PermissionInstrumentation;
+import pub.devrel.easypermissions.PermissionRequest;
 import pub.devrel.easypermissions.RationaleDialogFragment;
 
 /**
@@ -37,23 +37,65 @@ class ActivityPermissionHelper extends PermissionHelper<Activity> {
     }
 
     @Override
-    public void showRequestPermissionRationale(@NonNull String rationale,
-                                               @NonNull String positiveButton,
-                                               @NonNull String negativeButton,
-                                               @StyleRes int theme,
-                                               int requestCode,
-                                               @NonNull String... perms) {
+    protected void dismissRationale(int correlationId) {
+        RationaleDialogFragment fragment =
+                RationaleDialogFragment.find(getHost().getFragmentManager());
+        if (fragment != null && fragment.isShowing()
+                && fragment.getCorrelationId() == correlationId) {
+            fragment.release();
+        }
+    }
+
+    @Override
+    public void showRequestPermissionRationale(@NonNull PermissionRequest request) {
         FragmentManager fm = getHost().getFragmentManager();
 
         // Check if fragment is already showing
-        Fragment fragment = fm.findFragmentByTag(RationaleDialogFragment.TAG);
-        if (fragment instanceof RationaleDialogFragment) {
-            Log.d(TAG, "Found existing fragment, not showing rationale.");
+        RationaleDialogFragment fragment = RationaleDialogFragment.find(fm);
+        if (fragment != null && fragment.isShowing()) {
+            PermissionLog.d(TAG, "Found existing fragment, not showing rationale.");
+            PermissionEventLog.get().record(PermissionEventLog.CODE_RATIONALE_ALREADY_SHOWING,
+                    request.getCorrelationId(), request.getRequestCode(), request.getPerms());
             return;
         }
 
-        RationaleDialogFragment
-                .newInstance(positiveButton, negativeButton, rationale, theme, requestCode, perms)
-                .showAllowingStateLoss(fm, RationaleDialogFragment.TAG);
+        // Hold on to the rationale until the host is resumed, the framework FragmentManager can
+        // only report its saved state on API 26+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && fm.isStateSaved()) {
+            PermissionLog.d(TAG, "State already saved, queueing rationale.");
+            RationaleQueue.enqueue(getHost(), request);
+            return;
+        }
+
+        boolean traced = PermissionTrace.begin("RationaleDialogFragment.show");
+        try {
+            // Reuse the idle fragment and its dialog of the previous rationale if possible
+            if (fragment == null || !fragment.rearm(
+                    request.getPositiveButtonText(),
+                    request.getNegativeButtonText(),
+                    request.getRationale(),
+                    request.getTheme(),
+                    request.getRequestCode(),
+                    request.getPerms(),
+                    request.getCorrelationId())) {
+                if (fragment != null) {
+                    fragment.release();
+                }
+                RationaleDialogFragment
+                        .newInstance(
+                                request.getPositiveButtonText(),
+                                request.getNegativeButtonText(),
+                                request.getRationale(),
+                                request.getTheme(),
+                                request.getRequestCode(),
+                                request.getPerms(),
+                                request.getCorrelationId())
+                        .showAllowingStateLoss(fm, RationaleDialogFragment.TAG);
+            }
+        } finally {
+            PermissionTrace.end(traced);
+        }
+        PermissionEvents.emit(PermissionInstrumentation.EVENT_RATIONALE_SHOWN,
+                request.getCorrelationId(), request.getRequestCode(), request.getPerms());
     }
 }
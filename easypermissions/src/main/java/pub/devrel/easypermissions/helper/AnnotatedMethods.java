@@ -0,0 +1,129 @@
+package pub.devrel.easypermissions.helper;
+
+import androidx.annotation.NonNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import pub.devrel.easypermissions.AfterPermissionGranted;
+
+/**
+ * Index of the methods annotated with {@link AfterPermissionGranted} of a host class, built once
+ * per class so dispatching a result doesn't scan the class hierarchy again.
+ * <p>
+ * Thread safe. Indexes may be built concurrently, for example by a warm-up on a background thread
+ * and a result on the main thread; neither waits for the other and both build the same index.
+ */
+public final class AnnotatedMethods {
+
+    private static final String TAG = "AnnotatedMethods";
+
+    private static final ConcurrentHashMap<Class<?>, AnnotatedMethods> sIndexes =
+            new ConcurrentHashMap<>();
+
+    private final Method[] mMethods;
+    private final int[] mRequestCodes;
+
+    private AnnotatedMethods(@NonNull List<Method> methods) {
+        mMethods = methods.toArray(new Method[methods.size()]);
+        mRequestCodes = new int[mMethods.length];
+        for (int i = 0; i < mMethods.length; i++) {
+            mRequestCodes[i] = mMethods[i].getAnnotation(AfterPermissionGranted.class).value();
+        }
+    }
+
+    /**
+     * @param hostClass the class of an Activity or Fragment.
+     * @return the index of the class, built now if needed.
+     */
+    @NonNull
+    public static AnnotatedMethods get(@NonNull Class<?> hostClass) {
+        AnnotatedMethods index = sIndexes.get(hostClass);
+        if (index == null) {
+            index = build(hostClass);
+            AnnotatedMethods existing = sIndexes.putIfAbsent(hostClass, index);
+            if (existing != null) {
+                index = existing;
+            }
+        }
+        return index;
+    }
+
+    @NonNull
+    private static AnnotatedMethods build(@NonNull Class<?> hostClass) {
+        boolean traced = PermissionTrace.begin("AnnotatedMethods.build");
+        try {
+            Class<?> clazz = hostClass;
+            if (isUsingAndroidAnnotations(clazz)) {
+                clazz = clazz.getSuperclass();
+            }
+
+            List<Method> methods = new ArrayList<>();
+            while (clazz != null) {
+                for (Method method : clazz.getDeclaredMethods()) {
+                    if (method.isAnnotationPresent(AfterPermissionGranted.class)) {
+                        // Make method accessible if private
+                        if (!method.isAccessible()) {
+                            method.setAccessible(true);
+                        }
+                        methods.add(method);
+                    }
+                }
+
+                clazz = clazz.getSuperclass();
+            }
+            return new AnnotatedMethods(methods);
+        } finally {
+            PermissionTrace.end(traced);
+        }
+    }
+
+    /**
+     * Run the annotated methods with the given request code.
+     *
+     * @return true if at least one method was run.
+     */
+    public boolean invoke(@NonNull Object target, int requestCode) {
+        boolean invoked = false;
+        for (int i = 0; i < mMethods.length; i++) {
+            if (mRequestCodes[i] != requestCode) {
+                continue;
+            }
+
+            // Method must be void so that we can invoke it
+            Method method = mMethods[i];
+            if (method.getParameterTypes().length > 0) {
+                throw new RuntimeException(
+                        "Cannot execute method " + method.getName() + " because it is non-void method and/or has input parameters.");
+            }
+
+            try {
+                method.invoke(target);
+                invoked = true;
+            } catch (IllegalAccessException e) {
+                PermissionLog.e(TAG, "runDefaultMethod:IllegalAccessException", e);
+            } catch (InvocationTargetException e) {
+                PermissionLog.e(TAG, "runDefaultMethod:InvocationTargetException", e);
+            }
+        }
+        return invoked;
+    }
+
+    /**
+     * Determine if the class was generated by the AndroidAnnotations library.
+     */
+    private static boolean isUsingAndroidAnnotations(@NonNull Class<?> clazz) {
+        if (!clazz.getSimpleName().endsWith("_")) {
+            return false;
+        }
+        try {
+            Class<?> hasViews = Class.forName("org.androidannotations.api.view.HasViews");
+            return hasViews.isAssignableFrom(clazz);
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
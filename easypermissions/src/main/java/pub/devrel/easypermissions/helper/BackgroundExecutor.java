@@ -0,0 +1,59 @@
+package pub.devrel.easypermissions.helper;
+
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single, lazily started background thread used for the library's disk and package manager work.
+ * Tasks run in submission order; the thread exits when it has been idle for a while.
+ */
+public final class BackgroundExecutor {
+
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private static volatile Executor sExecutor;
+
+    private BackgroundExecutor() {
+    }
+
+    @NonNull
+    public static Executor get() {
+        Executor executor = sExecutor;
+        if (executor == null) {
+            synchronized (BackgroundExecutor.class) {
+                executor = sExecutor;
+                if (executor == null) {
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                            1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory());
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                    sExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static final class BackgroundThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "EasyPermissions");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
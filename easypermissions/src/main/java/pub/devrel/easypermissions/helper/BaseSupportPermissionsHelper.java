@@ -1,11 +1,10 @@
 package pub.devrel.easypermissions.helper;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.StyleRes;
-import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
-import android.util.Log;
 
+import pub.devrel.easypermissions.PermissionInstrumentation;
+import pub.devrel.easypermissions.PermissionRequest;
 import pub.devrel.easypermissions.RationaleDialogFragmentCompat;
 
 /**
@@ -22,24 +21,64 @@ public abstract class BaseSupportPermissionsHelper<T> extends PermissionHelper<T
     public abstract FragmentManager getSupportFragmentManager();
 
     @Override
-    public void showRequestPermissionRationale(@NonNull String rationale,
-                                               @NonNull String positiveButton,
-                                               @NonNull String negativeButton,
-                                               @StyleRes int theme,
-                                               int requestCode,
-                                               @NonNull String... perms) {
+    protected void dismissRationale(int correlationId) {
+        RationaleDialogFragmentCompat fragment =
+                RationaleDialogFragmentCompat.find(getSupportFragmentManager());
+        if (fragment != null && fragment.isShowing()
+                && fragment.getCorrelationId() == correlationId) {
+            fragment.release();
+        }
+    }
 
+    @Override
+    public void showRequestPermissionRationale(@NonNull PermissionRequest request) {
         FragmentManager fm = getSupportFragmentManager();
 
         // Check if fragment is already showing
-        Fragment fragment = fm.findFragmentByTag(RationaleDialogFragmentCompat.TAG);
-        if (fragment instanceof RationaleDialogFragmentCompat) {
-            Log.d(TAG, "Found existing fragment, not showing rationale.");
+        RationaleDialogFragmentCompat fragment = RationaleDialogFragmentCompat.find(fm);
+        if (fragment != null && fragment.isShowing()) {
+            PermissionLog.d(TAG, "Found existing fragment, not showing rationale.");
+            PermissionEventLog.get().record(PermissionEventLog.CODE_RATIONALE_ALREADY_SHOWING,
+                    request.getCorrelationId(), request.getRequestCode(), request.getPerms());
             return;
         }
 
-        RationaleDialogFragmentCompat
-                .newInstance(rationale, positiveButton, negativeButton, theme, requestCode, perms)
-                .showAllowingStateLoss(fm, RationaleDialogFragmentCompat.TAG);
+        // Hold on to the rationale until the host is resumed
+        if (fm.isStateSaved()) {
+            PermissionLog.d(TAG, "State already saved, queueing rationale.");
+            RationaleQueue.enqueue(getHost(), request);
+            return;
+        }
+
+        boolean traced = PermissionTrace.begin("RationaleDialogFragmentCompat.show");
+        try {
+            // Reuse the idle fragment and its dialog of the previous rationale if possible
+            if (fragment == null || !fragment.rearm(
+                    request.getRationale(),
+                    request.getPositiveButtonText(),
+                    request.getNegativeButtonText(),
+                    request.getTheme(),
+                    request.getRequestCode(),
+                    request.getPerms(),
+                    request.getCorrelationId())) {
+                if (fragment != null) {
+                    fragment.release();
+                }
+                RationaleDialogFragmentCompat
+                        .newInstance(
+                                request.getRationale(),
+                                request.getPositiveButtonText(),
+                                request.getNegativeButtonText(),
+                                request.getTheme(),
+                                request.getRequestCode(),
+                                request.getPerms(),
+                                request.getCorrelationId())
+                        .showAllowingStateLoss(fm, RationaleDialogFragmentCompat.TAG);
+            }
+        } finally {
+            PermissionTrace.end(traced);
+        }
+        PermissionEvents.emit(PermissionInstrumentation.EVENT_RATIONALE_SHOWN,
+                request.getCorrelationId(), request.getRequestCode(), request.getPerms());
     }
 }
@@ -0,0 +1,62 @@
+package pub.devrel.easypermissions.helper;
+
+import android.util.SparseIntArray;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Correlation IDs tie together the events of one permission flow, from the rationale to the
+ * annotated method dispatch. The system request can't carry an ID, so the ID of each issued request
+ * is held by request code until its result arrives.
+ */
+public final class CorrelationIds {
+
+    /**
+     * ID of events that can't be tied to a flow, such as the result of a request issued before the
+     * process was restarted.
+     */
+    public static final int NONE = 0;
+
+    private static final AtomicInteger sNext = new AtomicInteger();
+    private static final SparseIntArray sIssued = new SparseIntArray();
+
+    private CorrelationIds() {
+    }
+
+    /**
+     * @return a new ID, never {@link #NONE}.
+     */
+    public static int next() {
+        int id;
+        do {
+            id = sNext.incrementAndGet();
+        } while (id == NONE);
+        return id;
+    }
+
+    public static void onRequestIssued(int requestCode, int correlationId) {
+        synchronized (sIssued) {
+            sIssued.put(requestCode, correlationId);
+        }
+    }
+
+    /**
+     * @return true if the request with the ID was issued and its result didn't arrive yet.
+     */
+    public static boolean isIssued(int correlationId) {
+        synchronized (sIssued) {
+            return sIssued.indexOfValue(correlationId) >= 0;
+        }
+    }
+
+    /**
+     * @return the ID of the last request issued with the request code, or {@link #NONE}.
+     */
+    public static int onResult(int requestCode) {
+        synchronized (sIssued) {
+            int id = sIssued.get(requestCode, NONE);
+            sIssued.delete(requestCode);
+            return id;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package pub.devrel.easypermissions.helper;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The permissions declared in the app's merged manifest, loaded once per process on the {@link
+ * BackgroundExecutor}. Lookups never block: until the set is loaded, or if it can't be, every
+ * permission is treated as declared.
+ * <p>
+ * Thread safe.
+ */
+public final class DeclaredPermissions {
+
+    private static final String TAG = "DeclaredPermissions";
+
+    private static final String[] NONE = new String[0];
+
+    private static final AtomicBoolean sLoadStarted = new AtomicBoolean();
+    private static volatile Set<String> sDeclared;
+
+    private DeclaredPermissions() {
+    }
+
+    /**
+     * Start loading the declared permissions, unless it was started before.
+     */
+    public static void load(@NonNull Context context) {
+        if (!sLoadStarted.compareAndSet(false, true)) {
+            return;
+        }
+
+        final Context app = context.getApplicationContext() != null
+                ? context.getApplicationContext()
+                : context;
+        BackgroundExecutor.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean traced = PermissionTrace.begin("DeclaredPermissions.load");
+                try {
+                    sDeclared = read(app);
+                } finally {
+                    PermissionTrace.end(traced);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the permissions that are known not to be declared, in order, or an empty array.
+     */
+    @NonNull
+    public static String[] getUndeclared(@NonNull String... perms) {
+        Set<String> declared = sDeclared;
+        if (declared == null) {
+            return NONE;
+        }
+
+        List<String> undeclared = null;
+        for (String perm : perms) {
+            if (!declared.contains(perm)) {
+                if (undeclared == null) {
+                    undeclared = new ArrayList<>();
+                }
+                undeclared.add(perm);
+            }
+        }
+        return undeclared != null ? undeclared.toArray(new String[0]) : NONE;
+    }
+
+    /**
+     * Forget the loaded permissions, so the next {@link #load(Context)} reads them again.
+     */
+    @VisibleForTesting
+    public static void reset() {
+        sDeclared = null;
+        sLoadStarted.set(false);
+    }
+
+    private static Set<String> read(@NonNull Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(
+                    context.getPackageName(), PackageManager.GET_PERMISSIONS);
+            return info.requestedPermissions != null
+                    ? new HashSet<>(Arrays.asList(info.requestedPermissions))
+                    : Collections.<String>emptySet();
+        } catch (PackageManager.NameNotFoundException e) {
+            // Checks stay disabled
+            PermissionLog.e(TAG, "Can't read the declared permissions.", e);
+            return null;
+        }
+    }
+}
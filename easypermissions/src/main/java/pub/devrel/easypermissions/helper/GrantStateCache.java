@@ -0,0 +1,141 @@
+package pub.devrel.easypermissions.helper;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Remembers which permissions an app was found to hold, so repeated checks skip the package
+ * manager. Only grants are cached: Android kills the app's process when a runtime permission is
+ * revoked, so a grant stays valid for the life of the process, while a missing permission may be
+ * granted at any time and is always checked again.
+ * <p>
+ * Thread safe, lookups don't lock once the cache of the app exists. Grants can still be dropped
+ * with {@link #invalidate(String...)}, for example when the system reports a permission as denied.
+ * Permissions are split into stripes with a version each, bumped by invalidation, so a check that
+ * raced with an invalidation of its stripe doesn't cache its possibly outdated result.
+ */
+public final class GrantStateCache {
+
+    private static final int STRIPE_COUNT = 16;
+
+    // Guarded by the class, keyed by application context
+    private static final Map<Context, AppCache> sCaches = new WeakHashMap<>();
+
+    // The last cache looked up, to skip the lock for the usual single application
+    private static volatile AppCache sLast;
+
+    private GrantStateCache() {
+    }
+
+    /**
+     * @return true if the permission is granted to the context's app.
+     */
+    public static boolean isGranted(@NonNull Context context, @NonNull String perm) {
+        AppCache cache = getCache(context);
+        if (cache.granted.contains(perm)) {
+            return true;
+        }
+
+        int stripe = getStripe(perm);
+        int version = cache.versions.get(stripe);
+        if (ContextCompat.checkSelfPermission(context, perm)
+                != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+
+        cache.granted.add(perm);
+        if (cache.versions.get(stripe) != version) {
+            // Invalidated while checking, the grant may be outdated
+            cache.granted.remove(perm);
+        }
+        return true;
+    }
+
+    /**
+     * Check a batch of permissions, caching the granted ones.
+     */
+    public static void prime(@NonNull Context context, @NonNull String... perms) {
+        for (String perm : perms) {
+            isGranted(context, perm);
+        }
+    }
+
+    /**
+     * Drop the cached grants of the permissions in every app's cache, so they are checked again.
+     */
+    public static void invalidate(@NonNull String... perms) {
+        List<AppCache> caches;
+        synchronized (GrantStateCache.class) {
+            caches = new ArrayList<>(sCaches.values());
+        }
+
+        for (AppCache cache : caches) {
+            for (String perm : perms) {
+                cache.versions.incrementAndGet(getStripe(perm));
+                cache.granted.remove(perm);
+            }
+        }
+    }
+
+    /**
+     * @see #invalidate(String...)
+     */
+    public static void invalidate(@NonNull List<String> perms) {
+        if (!perms.isEmpty()) {
+            invalidate(perms.toArray(new String[perms.size()]));
+        }
+    }
+
+    private static int getStripe(@NonNull String perm) {
+        return (perm.hashCode() & Integer.MAX_VALUE) % STRIPE_COUNT;
+    }
+
+    @NonNull
+    private static AppCache getCache(@NonNull Context context) {
+        Context app = context.getApplicationContext();
+        if (app == null) {
+            app = context;
+        }
+
+        AppCache last = sLast;
+        if (last != null && last.app.get() == app) {
+            return last;
+        }
+
+        AppCache cache;
+        synchronized (GrantStateCache.class) {
+            cache = sCaches.get(app);
+            if (cache == null) {
+                cache = new AppCache(app);
+                sCaches.put(app, cache);
+            }
+        }
+        sLast = cache;
+        return cache;
+    }
+
+    private static final class AppCache {
+        // Weak, the cache is the value of a WeakHashMap keyed by the context
+        final WeakReference<Context> app;
+        final Set<String> granted =
+                Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AtomicIntegerArray versions = new AtomicIntegerArray(STRIPE_COUNT);
+
+        AppCache(@NonNull Context app) {
+            this.app = new WeakReference<>(app);
+        }
+    }
+}
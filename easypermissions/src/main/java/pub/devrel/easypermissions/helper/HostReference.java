@@ -0,0 +1,57 @@
+package pub.devrel.easypermissions.helper;
+
+import android.app.Activity;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Weak reference to an Activity or Fragment host, so objects apps keep around, such as built
+ * requests and dialogs, don't retain the host after it is destroyed.
+ */
+public final class HostReference<T> {
+
+    private final WeakReference<T> mHost;
+
+    public HostReference(@NonNull T host) {
+        mHost = new WeakReference<>(host);
+    }
+
+    /**
+     * @return the host, or null if it was collected or destroyed.
+     */
+    @Nullable
+    public T get() {
+        T host = mHost.get();
+        return host == null || isDestroyed(host) ? null : host;
+    }
+
+    /**
+     * @return the host, even if it was destroyed, or null if it was collected.
+     */
+    @Nullable
+    public T peek() {
+        return mHost.get();
+    }
+
+    private static boolean isDestroyed(@NonNull Object host) {
+        if (host instanceof Activity) {
+            Activity activity = (Activity) host;
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                    ? activity.isDestroyed()
+                    : activity.isFinishing();
+        } else if (host instanceof Fragment) {
+            return ((Fragment) host).getActivity() == null;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(mHost.get());
+    }
+}
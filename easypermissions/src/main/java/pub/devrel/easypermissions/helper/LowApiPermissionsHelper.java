@@ -3,9 +3,10 @@ package pub.devrel.easypermissions.helper;
 import android.app.Activity;
 import android.content.Context;
 import androidx.annotation.NonNull;
-import androidx.annotation.StyleRes;
 import androidx.fragment.app.Fragment;
 
+import pub.devrel.easypermissions.PermissionRequest;
+
 /**
  * Permissions helper for apps built against API < 23, which do not need runtime permissions.
  */
@@ -25,12 +26,7 @@ class LowApiPermissionsHelper<T> extends PermissionHelper<T> {
     }
 
     @Override
-    public void showRequestPermissionRationale(@NonNull String rationale,
-                                               @NonNull String positiveButton,
-                                               @NonNull String negativeButton,
-                                               @StyleRes int theme,
-                                               int requestCode,
-                                               @NonNull String... perms) {
+    public void showRequestPermissionRationale(@NonNull PermissionRequest request) {
         throw new IllegalStateException("Should never be requesting permissions on API < 23!");
     }
 
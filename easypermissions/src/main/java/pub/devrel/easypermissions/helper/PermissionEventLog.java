@@ -0,0 +1,226 @@
+package pub.devrel.easypermissions.helper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import pub.devrel.easypermissions.PermissionInstrumentation;
+
+/**
+ * Fixed-size ring buffer of the most recent permission events, kept so they can be dumped when a
+ * flow misbehaves in the field. Recording may happen on any thread and, once a permission has been
+ * seen, neither locks nor allocates.
+ * <p>
+ * Each record is three longs: a sequence marker, the wall clock time and the event packed as
+ * {@code code:8 | permission ID:16 | request code:16 | correlation ID:24}. Writers claim a slot
+ * with a single atomic increment and publish it by writing the marker last, so readers can skip
+ * records that are being overwritten.
+ */
+public final class PermissionEventLog {
+
+    /**
+     * The rationale was not shown because it is already showing.
+     */
+    public static final int CODE_RATIONALE_ALREADY_SHOWING = 64;
+
+    /**
+     * The permissions were already granted, nothing was asked.
+     */
+    public static final int CODE_ALREADY_GRANTED = 65;
+
+    /**
+     * A request policy reported the permissions as denied without prompting.
+     */
+    public static final int CODE_POLICY_DENIED = 66;
+
+    /**
+     * A request policy redirected the request to the app settings.
+     */
+    public static final int CODE_POLICY_APP_SETTINGS = 67;
+
+    /**
+     * Nothing was shown because the host of the request or dialog was destroyed.
+     */
+    public static final int CODE_HOST_GONE = 68;
+
+    /**
+     * A pending request was cancelled.
+     */
+    public static final int CODE_CANCELLED = 69;
+
+    /**
+     * The request waits for the prompt of another request to close.
+     */
+    public static final int CODE_PROMPT_QUEUED = 70;
+
+    /**
+     * A special access permission was routed to its settings screen.
+     */
+    public static final int CODE_SPECIAL_ACCESS = 71;
+
+    /**
+     * The request was denied without prompting, some of its permissions are not declared in the
+     * manifest.
+     */
+    public static final int CODE_UNDECLARED = 72;
+
+    /**
+     * The request duplicated a request made just before, and was joined to it.
+     */
+    public static final int CODE_DEBOUNCED = 73;
+
+    private static final int CAPACITY = 256;
+    private static final int RECORD_SIZE = 3;
+    private static final long WRITING = -1;
+    private static final int NO_PERMISSION = 0xFFFF;
+
+    private static final String[] INSTRUMENTATION_EVENT_NAMES = new String[]{
+            "REQUEST_ISSUED",
+            "RATIONALE_SHOWN",
+            "RATIONALE_ACCEPTED",
+            "RATIONALE_DENIED",
+            "RESULT_GRANTED",
+            "RESULT_DENIED",
+            "SETTINGS_OPENED",
+            "SETTINGS_RETURNED",
+            "ANNOTATED_METHOD_DISPATCHED",
+            "PREWARM_STARTED",
+            "PREWARM_FINISHED",
+            "RATIONALE_QUEUED",
+            "RATIONALE_DEQUEUED",
+    };
+
+    private static final String[] LIBRARY_EVENT_NAMES = new String[]{
+            "RATIONALE_ALREADY_SHOWING",
+            "ALREADY_GRANTED",
+            "POLICY_DENIED",
+            "POLICY_APP_SETTINGS",
+            "HOST_GONE",
+            "CANCELLED",
+            "PROMPT_QUEUED",
+            "SPECIAL_ACCESS",
+            "UNDECLARED",
+            "DEBOUNCED",
+    };
+
+    private static final PermissionEventLog sInstance = new PermissionEventLog(CAPACITY);
+
+    private final int mCapacity;
+    private final AtomicLongArray mRecords;
+    private final AtomicLong mNext = new AtomicLong();
+
+    @VisibleForTesting
+    PermissionEventLog(int capacity) {
+        mCapacity = capacity;
+        mRecords = new AtomicLongArray(capacity * RECORD_SIZE);
+    }
+
+    @NonNull
+    public static PermissionEventLog get() {
+        return sInstance;
+    }
+
+    /**
+     * Record an event for each permission, or a single event if there are none.
+     *
+     * @param code one of the {@link PermissionInstrumentation} {@code EVENT_*} constants or the
+     *             {@code CODE_*} constants of this class.
+     */
+    public void record(int code, int correlationId, int requestCode, @Nullable String[] perms) {
+        if (perms == null || perms.length == 0) {
+            write(code, correlationId, requestCode, NO_PERMISSION);
+            return;
+        }
+
+        for (String perm : perms) {
+            write(code, correlationId, requestCode, PermissionIds.intern(perm));
+        }
+    }
+
+    /**
+     * Record an event for a single permission.
+     */
+    public void record(int code, int correlationId, int requestCode, @NonNull String perm) {
+        write(code, correlationId, requestCode, PermissionIds.intern(perm));
+    }
+
+    private void write(int code, int correlationId, int requestCode, int permissionId) {
+        long sequence = mNext.getAndIncrement();
+        int base = (int) (sequence % mCapacity) * RECORD_SIZE;
+        long packed = ((long) (code & 0xFF) << 56)
+                | ((long) (permissionId & 0xFFFF) << 40)
+                | ((long) (requestCode & 0xFFFF) << 24)
+                | (correlationId & 0xFFFFFFL);
+
+        mRecords.set(base, WRITING);
+        mRecords.set(base + 1, System.currentTimeMillis());
+        mRecords.set(base + 2, packed);
+        mRecords.set(base, sequence + 1);
+    }
+
+    /**
+     * Write the recorded events as text, oldest first.
+     *
+     * @param prefix prefix for each line, for example the one passed to {@code Activity#dump}.
+     * @param writer where to write the events.
+     */
+    public void dump(@NonNull String prefix, @NonNull PrintWriter writer) {
+        SimpleDateFormat format = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        long end = mNext.get();
+        long start = Math.max(0, end - mCapacity);
+
+        writer.print(prefix);
+        writer.println("EasyPermissions events (" + (end - start) + " of " + end + "):");
+        for (long sequence = start; sequence < end; sequence++) {
+            int base = (int) (sequence % mCapacity) * RECORD_SIZE;
+            long marker = mRecords.get(base);
+            long time = mRecords.get(base + 1);
+            long packed = mRecords.get(base + 2);
+            if (marker != sequence + 1 || mRecords.get(base) != marker) {
+                // Overwritten or still being written
+                continue;
+            }
+
+            int code = (int) (packed >>> 56);
+            int permissionId = (int) (packed >>> 40) & 0xFFFF;
+            int requestCode = (int) (packed >>> 24) & 0xFFFF;
+            int correlationId = (int) (packed & 0xFFFFFF);
+
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(format.format(new Date(time)));
+            writer.print(' ');
+            writer.print(getName(code));
+            writer.print(" rc=");
+            writer.print(requestCode);
+            writer.print(" id=");
+            writer.print(correlationId);
+            if (permissionId != NO_PERMISSION) {
+                writer.print(' ');
+                writer.print(PermissionIds.name(permissionId));
+            }
+            writer.println();
+        }
+        writer.flush();
+    }
+
+    @NonNull
+    private static String getName(int code) {
+        if (code < INSTRUMENTATION_EVENT_NAMES.length) {
+            return INSTRUMENTATION_EVENT_NAMES[code];
+        }
+
+        int index = code - CODE_RATIONALE_ALREADY_SHOWING;
+        if (index >= 0 && index < LIBRARY_EVENT_NAMES.length) {
+            return LIBRARY_EVENT_NAMES[index];
+        }
+        return "UNKNOWN(" + code + ")";
+    }
+}
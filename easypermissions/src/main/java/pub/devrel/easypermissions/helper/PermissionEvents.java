@@ -0,0 +1,55 @@
+package pub.devrel.easypermissions.helper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+import pub.devrel.easypermissions.EasyPermissions;
+import pub.devrel.easypermissions.PermissionInstrumentation;
+
+/**
+ * Forwards permission flow events to the {@link PermissionEventLog} and to the {@link
+ * PermissionInstrumentation} set on {@link EasyPermissions}. Nothing is timed when no
+ * instrumentation is set.
+ */
+public final class PermissionEvents {
+
+    private static final String[] NO_PERMS = new String[0];
+
+    private PermissionEvents() {
+    }
+
+    public static void emit(int event, int correlationId, int requestCode,
+                            @Nullable String... perms) {
+        PermissionEventLog.get().record(event, correlationId, requestCode, perms);
+
+        PermissionInstrumentation instrumentation = EasyPermissions.getInstrumentation();
+        if (instrumentation == PermissionInstrumentation.NONE) {
+            return;
+        }
+
+        instrumentation.onEvent(event, correlationId, requestCode,
+                perms != null ? perms : NO_PERMS, System.nanoTime());
+    }
+
+    /**
+     * Emit an event for a list of permissions, unless the list is empty.
+     */
+    public static void emit(int event, int correlationId, int requestCode,
+                            @NonNull List<String> perms) {
+        if (perms.isEmpty()) {
+            return;
+        }
+
+        if (EasyPermissions.getInstrumentation() == PermissionInstrumentation.NONE) {
+            PermissionEventLog log = PermissionEventLog.get();
+            for (int i = 0; i < perms.size(); i++) {
+                log.record(event, correlationId, requestCode, perms.get(i));
+            }
+            return;
+        }
+
+        emit(event, correlationId, requestCode, perms.toArray(new String[perms.size()]));
+    }
+}
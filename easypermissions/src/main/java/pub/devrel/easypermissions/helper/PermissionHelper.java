@@ -4,21 +4,51 @@ import android.app.Activity;
 import android.content.Context;
 import android.os.Build;
 import androidx.annotation.NonNull;
-import androidx.annotation.StyleRes;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.appcompat.app.AppCompatActivity;
 
 import java.util.List;
 
+import pub.devrel.easypermissions.EasyPermissions;
+import pub.devrel.easypermissions.PermissionHistory;
+import pub.devrel.easypermissions.PermissionInstrumentation;
+import pub.devrel.easypermissions.PermissionRequest;
+import pub.devrel.easypermissions.RationaleRendererCallback;
+import pub.devrel.easypermissions.RequestPolicy;
+
 /**
  * Delegate class to make permission calls based on the 'host' (Fragment, Activity, etc).
  */
 public abstract class PermissionHelper<T> {
 
-    private T mHost;
+    private static final String TAG = "PermissionHelper";
+
+    // Weak, built requests are often kept by apps longer than their host
+    private final HostReference<T> mHost;
 
     @NonNull
     public static PermissionHelper<? extends Activity> newInstance(Activity host) {
+        boolean traced = PermissionTrace.begin("PermissionHelper.newInstance");
+        try {
+            return createHelper(host);
+        } finally {
+            PermissionTrace.end(traced);
+        }
+    }
+
+    @NonNull
+    public static PermissionHelper<Fragment> newInstance(Fragment host) {
+        boolean traced = PermissionTrace.begin("PermissionHelper.newInstance");
+        try {
+            return createHelper(host);
+        } finally {
+            PermissionTrace.end(traced);
+        }
+    }
+
+    @NonNull
+    private static PermissionHelper<? extends Activity> createHelper(Activity host) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
             return new LowApiPermissionsHelper<>(host);
         }
@@ -31,7 +61,7 @@ public abstract class PermissionHelper<T> {
     }
 
     @NonNull
-    public static PermissionHelper<Fragment> newInstance(Fragment host) {
+    private static PermissionHelper<Fragment> createHelper(Fragment host) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
             return new LowApiPermissionsHelper<>(host);
         }
@@ -44,7 +74,7 @@ public abstract class PermissionHelper<T> {
     // ============================================================================
 
     public PermissionHelper(@NonNull T host) {
-        mHost = host;
+        mHost = new HostReference<>(host);
     }
 
     private boolean shouldShowRationale(@NonNull String... perms) {
@@ -56,20 +86,116 @@ public abstract class PermissionHelper<T> {
         return false;
     }
 
-    public void requestPermissions(@NonNull String rationale,
-                                   @NonNull String positiveButton,
-                                   @NonNull String negativeButton,
-                                   @StyleRes int theme,
-                                   int requestCode,
-                                   @NonNull String... perms) {
-        if (shouldShowRationale(perms)) {
-            showRequestPermissionRationale(
-                    rationale, positiveButton, negativeButton, theme, requestCode, perms);
+    public void requestPermissions(@NonNull PermissionRequest request) {
+        requestPermissions(request, RequestPolicy.DECISION_DEFAULT);
+    }
+
+    /**
+     * Request permissions as decided by a {@link RequestPolicy}.
+     *
+     * @param decision one of {@link RequestPolicy#DECISION_DEFAULT}, {@link
+     *                 RequestPolicy#DECISION_REQUEST} or {@link RequestPolicy#DECISION_RATIONALE}.
+     */
+    public void requestPermissions(@NonNull PermissionRequest request, int decision) {
+        String[] perms = request.getPerms();
+        if (decision == RequestPolicy.DECISION_RATIONALE
+                || (decision == RequestPolicy.DECISION_DEFAULT && shouldShowRationale(perms))) {
+            if (request.getRationaleRenderer() == null || !renderRationale(request)) {
+                showRequestPermissionRationale(request);
+            }
         } else {
-            directRequestPermissions(requestCode, perms);
+            dispatchRequestPermissions(request.getCorrelationId(), request.getRequestCode(), perms);
         }
     }
 
+    /**
+     * Show the rationale with the request's {@link RationaleRenderer}.
+     *
+     * @return false if the host has no activity to render into, or the renderer is still showing
+     * the rationale of another request.
+     */
+    private boolean renderRationale(@NonNull PermissionRequest request) {
+        Context context = getContext();
+        if (!(context instanceof Activity)) {
+            return false;
+        }
+
+        boolean shown;
+        boolean traced = PermissionTrace.begin("RationaleRenderer.show");
+        try {
+            shown = request.getRationaleRenderer().show((Activity) context, request,
+                    new RationaleRendererCallback(getHost(), request));
+        } finally {
+            PermissionTrace.end(traced);
+        }
+
+        if (!shown) {
+            PermissionLog.d(TAG, "Renderer busy, showing the rationale dialog instead.");
+            return false;
+        }
+
+        PermissionEvents.emit(PermissionInstrumentation.EVENT_RATIONALE_SHOWN,
+                request.getCorrelationId(), request.getRequestCode(), request.getPerms());
+        return true;
+    }
+
+    /**
+     * Request permissions from the system without showing a rationale, recording the request
+     * first. Callers should prefer this over {@link #directRequestPermissions(int, String...)}.
+     */
+    public void dispatchRequestPermissions(int correlationId, int requestCode,
+                                           @NonNull String... perms) {
+        PermissionHistory history = EasyPermissions.getPermissionHistory();
+        snapshotRationaleState(history, perms);
+        if (history != null) {
+            history.record(perms, PermissionHistory.EVENT_REQUESTED);
+        }
+
+        EasyPermissions.onPromptIssued(perms);
+        CorrelationIds.onRequestIssued(requestCode, correlationId);
+        PermissionEvents.emit(PermissionInstrumentation.EVENT_REQUEST_ISSUED,
+                correlationId, requestCode, perms);
+        PermissionTrace.beginRequest(requestCode);
+        directRequestPermissions(requestCode, perms);
+    }
+
+    /**
+     * Snapshot the rationale state so the result can be classified precisely. A first request
+     * can't have been permanently denied, so its state is not queried.
+     */
+    private void snapshotRationaleState(@Nullable PermissionHistory history,
+                                        @NonNull String[] perms) {
+        Context context = getContext();
+        boolean[] firstRequest = new boolean[perms.length];
+        boolean[] showRationale = new boolean[perms.length];
+        for (int i = 0; i < perms.length; i++) {
+            firstRequest[i] = !RationaleStateTracker.wasRequested(context, perms[i])
+                    && (history == null || history.get(perms[i])
+                    .getCount(PermissionHistory.EVENT_REQUESTED) == 0);
+            showRationale[i] = !firstRequest[i] && shouldShowRequestPermissionRationale(perms[i]);
+        }
+        RationaleStateTracker.onRequest(context, perms, firstRequest, showRationale);
+    }
+
+    /**
+     * Drop the rationale of a cancelled request, dismissing it if it is showing.
+     */
+    public void cancelRationale(@NonNull PermissionRequest request) {
+        RationaleQueue.cancel(getHost(), request);
+        dismissRationale(request.getCorrelationId());
+
+        Context context = getContext();
+        if (request.getRationaleRenderer() != null && context instanceof Activity) {
+            request.getRationaleRenderer().dismiss((Activity) context, request);
+        }
+    }
+
+    /**
+     * Dismiss the rationale dialog of a request if it is showing.
+     */
+    protected void dismissRationale(int correlationId) {
+    }
+
     public boolean somePermissionPermanentlyDenied(@NonNull List<String> perms) {
         for (String deniedPermission : perms) {
             if (permissionPermanentlyDenied(deniedPermission)) {
@@ -81,6 +207,12 @@ public abstract class PermissionHelper<T> {
     }
 
     public boolean permissionPermanentlyDenied(@NonNull String perms) {
+        // Prefer the classification made when the last result was received
+        int classification = RationaleStateTracker.getClassification(getContext(), perms);
+        if (classification != RationaleStateTracker.UNKNOWN) {
+            return classification == RationaleStateTracker.PERMANENTLY_DENIED;
+        }
+
         return !shouldShowRequestPermissionRationale(perms);
     }
 
@@ -88,9 +220,23 @@ public abstract class PermissionHelper<T> {
         return shouldShowRationale(perms);
     }
 
+    /**
+     * @throws IllegalStateException if the host was garbage collected.
+     */
     @NonNull
     public T getHost() {
-        return mHost;
+        T host = mHost.peek();
+        if (host == null) {
+            throw new IllegalStateException("Host is gone");
+        }
+        return host;
+    }
+
+    /**
+     * @return true if the host was destroyed or garbage collected, so it can't request anything.
+     */
+    public boolean isHostGone() {
+        return mHost.get() == null;
     }
 
     // ============================================================================
@@ -101,12 +247,7 @@ public abstract class PermissionHelper<T> {
 
     public abstract boolean shouldShowRequestPermissionRationale(@NonNull String perm);
 
-    public abstract void showRequestPermissionRationale(@NonNull String rationale,
-                                                        @NonNull String positiveButton,
-                                                        @NonNull String negativeButton,
-                                                        @StyleRes int theme,
-                                                        int requestCode,
-                                                        @NonNull String... perms);
+    public abstract void showRequestPermissionRationale(@NonNull PermissionRequest request);
 
     public abstract Context getContext();
 
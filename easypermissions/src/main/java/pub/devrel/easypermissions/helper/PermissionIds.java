@@ -0,0 +1,63 @@
+package pub.devrel.easypermissions.helper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide table that interns permission names as small, dense integer IDs so they can be used
+ * as array indices and stored in primitive records.
+ * <p>
+ * Lookups of known permissions don't lock and may be made from any thread.
+ */
+public final class PermissionIds {
+
+    private static final ConcurrentHashMap<String, Integer> sIds = new ConcurrentHashMap<>();
+    private static final Object sLock = new Object();
+
+    private static volatile String[] sNames = new String[16];
+    private static int sCount;
+
+    private PermissionIds() {
+    }
+
+    /**
+     * @return the ID of a permission, assigning a new one if it has not been seen before.
+     */
+    public static int intern(@NonNull String perm) {
+        Integer id = sIds.get(perm);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (sLock) {
+            id = sIds.get(perm);
+            if (id == null) {
+                id = sCount++;
+
+                String[] names = sNames;
+                if (id >= names.length) {
+                    String[] grown = new String[names.length * 2];
+                    System.arraycopy(names, 0, grown, 0, names.length);
+                    names = grown;
+                }
+                names[id] = perm;
+
+                // Publish the name before the ID can be observed
+                sNames = names;
+                sIds.put(perm, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @return the permission an ID was assigned to, or null if the ID is unknown.
+     */
+    @Nullable
+    public static String name(int id) {
+        String[] names = sNames;
+        return id >= 0 && id < names.length ? names[id] : null;
+    }
+}
@@ -0,0 +1,93 @@
+package pub.devrel.easypermissions.helper;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import pub.devrel.easypermissions.PermissionLogger;
+
+/**
+ * Logging used throughout the library. Callers building a message from parts must check {@link
+ * #isLoggable(int)} first, so nothing is allocated for messages that are not logged.
+ * <p>
+ * Calls to {@link #d(String, String)} are removed by the consumer R8/ProGuard rules, and repeated
+ * warnings are logged at most once per {@link #WARNING_INTERVAL_MILLIS}.
+ */
+public final class PermissionLog {
+
+    /**
+     * Tag whose {@link Log#isLoggable(String, int)} setting enables debug and info messages of the
+     * default logger, such as with {@code adb shell setprop log.tag.EasyPermissions DEBUG}.
+     */
+    private static final String PROPERTY_TAG = "EasyPermissions";
+
+    static final long WARNING_INTERVAL_MILLIS = 60 * 1000;
+
+    private static final PermissionLogger DEFAULT = new PermissionLogger() {
+        @Override
+        public boolean isLoggable(int priority) {
+            return priority >= Log.WARN || Log.isLoggable(PROPERTY_TAG, priority);
+        }
+
+        @Override
+        public void log(int priority, @NonNull String tag, @NonNull String message,
+                        @Nullable Throwable tr) {
+            Log.println(priority, tag, tr != null
+                    ? message + '\n' + Log.getStackTraceString(tr)
+                    : message);
+        }
+    };
+
+    private static final ConcurrentHashMap<String, Long> sLastWarnings = new ConcurrentHashMap<>();
+
+    private static volatile PermissionLogger sLogger = DEFAULT;
+
+    private PermissionLog() {
+    }
+
+    public static void setLogger(@Nullable PermissionLogger logger) {
+        sLogger = logger != null ? logger : DEFAULT;
+    }
+
+    public static boolean isLoggable(int priority) {
+        return sLogger.isLoggable(priority);
+    }
+
+    public static void d(@NonNull String tag, @NonNull String message) {
+        PermissionLogger logger = sLogger;
+        if (logger.isLoggable(Log.DEBUG)) {
+            logger.log(Log.DEBUG, tag, message, null);
+        }
+    }
+
+    /**
+     * Log a warning, unless the same message was logged within the last {@link
+     * #WARNING_INTERVAL_MILLIS}. Warnings are tracked by message, which should be a constant.
+     */
+    public static void w(@NonNull String tag, @NonNull String message) {
+        PermissionLogger logger = sLogger;
+        if (!logger.isLoggable(Log.WARN)) {
+            return;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        Long last = sLastWarnings.get(message);
+        if (last != null && now - last < WARNING_INTERVAL_MILLIS) {
+            return;
+        }
+
+        sLastWarnings.put(message, now);
+        logger.log(Log.WARN, tag, message, null);
+    }
+
+    public static void e(@NonNull String tag, @NonNull String message, @Nullable Throwable tr) {
+        PermissionLogger logger = sLogger;
+        if (logger.isLoggable(Log.ERROR)) {
+            logger.log(Log.ERROR, tag, message, tr);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package pub.devrel.easypermissions.helper;
+
+import android.app.Activity;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.provider.Settings;
+import android.view.LayoutInflater;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.lang.ref.WeakReference;
+
+import pub.devrel.easypermissions.PermissionInstrumentation;
+import pub.devrel.easypermissions.R;
+import pub.devrel.easypermissions.RationaleDialogFragment;
+import pub.devrel.easypermissions.RationaleDialogFragmentCompat;
+
+/**
+ * Does the one-time work of the first rationale and app settings dialog while the main thread is
+ * idle: loading the dialog classes, resolving the default strings, the dialog theme and layout, and
+ * the app settings activity. The time spent is reported to the instrumentation between {@link
+ * PermissionInstrumentation#EVENT_PREWARM_STARTED} and {@link
+ * PermissionInstrumentation#EVENT_PREWARM_FINISHED}.
+ * <p>
+ * Must only be used from the main thread. Prewarming happens at most once per process.
+ */
+public final class PermissionPrewarmer {
+
+    private static final String TAG = "PermissionPrewarmer";
+
+    private static boolean sScheduled;
+    private static volatile ComponentName sSettingsComponent;
+
+    private PermissionPrewarmer() {
+    }
+
+    /**
+     * Prewarm once the main thread is idle, unless it has been scheduled before.
+     *
+     * @param perms the permissions the activity is going to need, reported with the events.
+     */
+    public static void schedule(@NonNull Activity activity, @NonNull final String[] perms) {
+        if (sScheduled) {
+            return;
+        }
+
+        sScheduled = true;
+        final WeakReference<Activity> activityRef = new WeakReference<>(activity);
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                Activity activity = activityRef.get();
+                if (activity == null || activity.isFinishing()) {
+                    // Try again with the next activity
+                    sScheduled = false;
+                } else {
+                    prewarm(activity, perms);
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * @return the app settings activity resolved while prewarming, if any.
+     */
+    @Nullable
+    public static ComponentName getSettingsComponent() {
+        return sSettingsComponent;
+    }
+
+    private static void prewarm(@NonNull Activity activity, @NonNull String[] perms) {
+        int correlationId = CorrelationIds.next();
+        PermissionEvents.emit(PermissionInstrumentation.EVENT_PREWARM_STARTED,
+                correlationId, 0, perms);
+        boolean traced = PermissionTrace.begin("PermissionPrewarmer.prewarm");
+        try {
+            // Resolve the default strings
+            activity.getString(R.string.rationale_ask);
+            activity.getString(R.string.rationale_ask_again);
+            activity.getString(R.string.title_settings_dialog);
+
+            // Load the dialog classes, resolve the dialog theme and inflate its layout once, the
+            // dialog and fragment are never shown
+            if (activity instanceof AppCompatActivity) {
+                new RationaleDialogFragmentCompat();
+                AlertDialog dialog = new AlertDialog.Builder(activity).create();
+                LayoutInflater.from(dialog.getContext())
+                        .inflate(androidx.appcompat.R.layout.abc_alert_dialog_material, null);
+            } else {
+                new RationaleDialogFragment();
+                new android.app.AlertDialog.Builder(activity).create();
+            }
+
+            sSettingsComponent = resolveSettings(activity);
+        } catch (RuntimeException e) {
+            // Prewarming is best effort, the dialogs do the work themselves if needed
+            PermissionLog.e(TAG, "Failed to prewarm.", e);
+        } finally {
+            PermissionTrace.end(traced);
+        }
+        PermissionEvents.emit(PermissionInstrumentation.EVENT_PREWARM_FINISHED,
+                correlationId, 0, perms);
+    }
+
+    @Nullable
+    private static ComponentName resolveSettings(@NonNull Context context) {
+        Intent intent = new Intent(Settings.ACTION_APPLICATION_DETAILS_SETTINGS)
+                .setData(Uri.fromParts("package", context.getPackageName(), null));
+        ResolveInfo info = context.getPackageManager()
+                .resolveActivity(intent, PackageManager.MATCH_DEFAULT_ONLY);
+        if (info == null || info.activityInfo == null) {
+            return null;
+        }
+        return new ComponentName(info.activityInfo.packageName, info.activityInfo.name);
+    }
+}
@@ -0,0 +1,84 @@
+package pub.devrel.easypermissions.helper;
+
+import android.os.Build;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+/**
+ * {@link Trace} sections around the library's work, so it shows up as its own slices in systrace
+ * and Perfetto. Sections are only emitted while tracing is enabled with {@link
+ * pub.devrel.easypermissions.EasyPermissions#setTracingEnabled(boolean)}.
+ * <p>
+ * Usage, so sections stay balanced when tracing is toggled in between:
+ * <pre>
+ * boolean traced = PermissionTrace.begin("name");
+ * try {
+ *     ...
+ * } finally {
+ *     PermissionTrace.end(traced);
+ * }
+ * </pre>
+ */
+public final class PermissionTrace {
+
+    /**
+     * Name of the async section from a system request to its result.
+     */
+    private static final String REQUEST_SECTION = "EasyPermissions.request";
+
+    private static volatile boolean sEnabled;
+
+    private PermissionTrace() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Begin a section on the current thread.
+     *
+     * @param name the section name, at most 127 characters.
+     * @return whether the section was begun and must be ended with {@link #end(boolean)}.
+     */
+    public static boolean begin(@NonNull String name) {
+        if (!sEnabled || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return false;
+        }
+
+        Trace.beginSection(name);
+        return true;
+    }
+
+    /**
+     * End the last section begun on the current thread.
+     *
+     * @param began the value returned by {@link #begin(String)}.
+     */
+    public static void end(boolean began) {
+        if (began && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Begin the async section linking a system request to its result, which may arrive many frames
+     * later. Only supported on API 29+.
+     */
+    public static void beginRequest(int requestCode) {
+        if (sEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(REQUEST_SECTION, requestCode);
+        }
+    }
+
+    /**
+     * End the async section begun by {@link #beginRequest(int)} for the same request code. Ending a
+     * section that was never begun is ignored by the tracing system.
+     */
+    public static void endRequest(int requestCode) {
+        if (sEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(REQUEST_SECTION, requestCode);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package pub.devrel.easypermissions.helper;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import pub.devrel.easypermissions.PermissionInstrumentation;
+import pub.devrel.easypermissions.PermissionRequest;
+
+/**
+ * Holds rationale requests that arrive after the host's FragmentManager has saved its state, and
+ * shows them once the host is resumed instead of dropping them. How long a rationale waited is
+ * reported through {@link PermissionInstrumentation#EVENT_RATIONALE_DEQUEUED}.
+ * <p>
+ * Must only be used from the main thread.
+ */
+final class RationaleQueue {
+
+    private static final String TAG = "RationaleQueue";
+
+    private static final Map<Object, ArrayDeque<PermissionRequest>> sQueues = new HashMap<>();
+    private static Application sWatchedApplication;
+
+    private RationaleQueue() {
+    }
+
+    /**
+     * Queue a rationale for the given host. Requests equal to one already queued are ignored.
+     */
+    static void enqueue(@NonNull Object host, @NonNull PermissionRequest request) {
+        ArrayDeque<PermissionRequest> queue = sQueues.get(host);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            sQueues.put(host, queue);
+            watch(host);
+        }
+
+        for (PermissionRequest queued : queue) {
+            if (queued.equals(request)) {
+                PermissionLog.d(TAG, "Rationale already queued, ignoring duplicate.");
+                return;
+            }
+        }
+
+        queue.add(request);
+        emit(PermissionInstrumentation.EVENT_RATIONALE_QUEUED, request);
+    }
+
+    /**
+     * Drop the queued rationale of a cancelled request, if any.
+     */
+    static void cancel(@NonNull Object host, @NonNull PermissionRequest request) {
+        ArrayDeque<PermissionRequest> queue = sQueues.get(host);
+        if (queue == null) {
+            return;
+        }
+
+        Iterator<PermissionRequest> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getCorrelationId() == request.getCorrelationId()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void flush(@NonNull Object host) {
+        ArrayDeque<PermissionRequest> queue = sQueues.get(host);
+        if (queue == null || queue.isEmpty()) {
+            return;
+        }
+
+        // Drain first, showing may queue the request again if the state is still saved
+        List<PermissionRequest> requests = new ArrayList<>(queue);
+        queue.clear();
+
+        for (PermissionRequest request : requests) {
+            emit(PermissionInstrumentation.EVENT_RATIONALE_DEQUEUED, request);
+            request.getHelper().showRequestPermissionRationale(request);
+        }
+    }
+
+    private static void emit(int event, @NonNull PermissionRequest request) {
+        PermissionEvents.emit(event, request.getCorrelationId(), request.getRequestCode(),
+                request.getPerms());
+    }
+
+    private static void remove(@NonNull Object host) {
+        sQueues.remove(host);
+    }
+
+    private static void watch(@NonNull final Object host) {
+        if (host instanceof LifecycleOwner) {
+            ((LifecycleOwner) host).getLifecycle().addObserver(new LifecycleEventObserver() {
+                @Override
+                public void onStateChanged(@NonNull LifecycleOwner source,
+                                           @NonNull Lifecycle.Event event) {
+                    if (event == Lifecycle.Event.ON_RESUME) {
+                        flush(host);
+                    } else if (event == Lifecycle.Event.ON_DESTROY) {
+                        source.getLifecycle().removeObserver(this);
+                        remove(host);
+                    }
+                }
+            });
+        } else if (host instanceof Activity) {
+            watchActivities(((Activity) host).getApplication());
+        } else {
+            throw new IllegalStateException("Unknown host: " + host);
+        }
+    }
+
+    private static void watchActivities(@NonNull Application application) {
+        if (sWatchedApplication == application) {
+            return;
+        }
+
+        sWatchedApplication = application;
+        application.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityResumed(Activity activity) {
+                flush(activity);
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+                remove(activity);
+            }
+
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            }
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            }
+        });
+    }
+}
@@ -0,0 +1,169 @@
+package pub.devrel.easypermissions.helper;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the value of {@code shouldShowRequestPermissionRationale} right before a permission is
+ * requested, and compares it with the value right after the result to classify each denial once.
+ * <p>
+ * A classification is kept until the permission is requested again or the user visits the app
+ * settings screen, so repeated permanent denial checks don't need to query the system.
+ * <p>
+ * Whether a permission was requested before is only known for the life of the process, unless the
+ * caller looks it up in a {@link pub.devrel.easypermissions.PermissionHistory}.
+ */
+public final class RationaleStateTracker {
+
+    /**
+     * The permission has not been denied since it was last requested, or no result was seen.
+     */
+    public static final int UNKNOWN = 0;
+
+    /**
+     * The permission was denied but can be requested again.
+     */
+    public static final int DENIED = 1;
+
+    /**
+     * The permission was denied and the system will not prompt for it again.
+     */
+    public static final int PERMANENTLY_DENIED = 2;
+
+    private static final String TAG = "RationaleStateTracker";
+
+    private static final Map<String, Record> sRecords = new HashMap<>();
+    private static Context sAppContext;
+
+    private RationaleStateTracker() {
+    }
+
+    /**
+     * @return true if the permission was requested before, in this process.
+     */
+    public static synchronized boolean wasRequested(@Nullable Context context,
+                                                    @NonNull String perm) {
+        return context != null && getRecords(context).containsKey(perm);
+    }
+
+    /**
+     * Record the rationale state of each permission right before it is requested, clearing any
+     * previous classification.
+     *
+     * @param firstRequest  whether each permission is requested for the first time.
+     * @param showRationale the rationale state of each permission, only read for permissions
+     *                      requested before.
+     */
+    public static synchronized void onRequest(@Nullable Context context,
+                                              @NonNull String[] perms,
+                                              @NonNull boolean[] firstRequest,
+                                              @NonNull boolean[] showRationale) {
+        if (context == null) {
+            return;
+        }
+
+        Map<String, Record> records = getRecords(context);
+        for (int i = 0; i < perms.length; i++) {
+            Record record = new Record();
+            record.snapshot = true;
+            record.first = firstRequest[i];
+            record.before = showRationale[i];
+            records.put(perms[i], record);
+        }
+    }
+
+    /**
+     * Classify a denied permission by comparing its rationale state right after the result with
+     * the state recorded when it was requested.
+     *
+     * @return {@link #DENIED} or {@link #PERMANENTLY_DENIED}.
+     */
+    public static synchronized int onDenied(@Nullable Context context,
+                                            @NonNull String perm,
+                                            boolean showRationale) {
+        Record record = context != null ? getRecords(context).get(perm) : null;
+        int classification;
+        if (showRationale) {
+            // A rationale is only suggested when the system is still willing to prompt
+            classification = DENIED;
+        } else if (record == null || !record.snapshot) {
+            // Requested without a snapshot, only the state after the result is known
+            classification = PERMANENTLY_DENIED;
+        } else if (record.before) {
+            PermissionLog.d(TAG, perm + ": the user chose not to be asked again.");
+            classification = PERMANENTLY_DENIED;
+        } else if (record.first) {
+            // The prompt was dismissed, or its first denial doesn't suggest a rationale yet
+            classification = DENIED;
+        } else {
+            PermissionLog.d(TAG, perm + ": not prompted, permanently denied before.");
+            classification = PERMANENTLY_DENIED;
+        }
+
+        if (context != null) {
+            if (record == null) {
+                record = new Record();
+                getRecords(context).put(perm, record);
+            }
+            record.snapshot = false;
+            record.classification = classification;
+        }
+        return classification;
+    }
+
+    /**
+     * Forget the classification of a permission that was granted.
+     */
+    public static synchronized void onGranted(@Nullable Context context, @NonNull String perm) {
+        if (context != null) {
+            // Kept, the permission was still requested
+            getRecords(context).put(perm, new Record());
+        }
+    }
+
+    /**
+     * Forget all classifications, e.g. because the user may change them in the app settings.
+     * Which permissions were requested is kept.
+     */
+    public static synchronized void clear() {
+        for (Record record : sRecords.values()) {
+            record.classification = UNKNOWN;
+        }
+    }
+
+    /**
+     * @return the cached classification of a permission, or {@link #UNKNOWN}.
+     */
+    public static synchronized int getClassification(@Nullable Context context,
+                                                     @NonNull String perm) {
+        if (context == null) {
+            return UNKNOWN;
+        }
+
+        Record record = getRecords(context).get(perm);
+        return record == null ? UNKNOWN : record.classification;
+    }
+
+    private static Map<String, Record> getRecords(@NonNull Context context) {
+        // Permission state belongs to the application, start over if it changes
+        Context appContext = context.getApplicationContext();
+        if (appContext != sAppContext) {
+            sRecords.clear();
+            sAppContext = appContext;
+        }
+        return sRecords;
+    }
+
+    private static final class Record {
+        // Whether the fields below were recorded for the request whose result is awaited
+        boolean snapshot;
+        boolean first;
+        boolean before;
+        int classification = UNKNOWN;
+    }
+}
@@ -4,24 +4,31 @@ import android.Manifest;
 import android.app.Application;
 import android.app.Dialog;
 import android.app.Fragment;
+import android.content.DialogInterface;
+import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.view.View;
+import android.widget.Button;
 import android.widget.TextView;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Captor;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowApplication;
+import org.robolectric.shadows.ShadowLooper;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.test.core.app.ApplicationProvider;
 import pub.devrel.easypermissions.testhelper.ActivityController;
 import pub.devrel.easypermissions.testhelper.FragmentController;
@@ -140,6 +147,40 @@ public class EasyPermissionsTest {
         verify(spyActivity, never()).afterPermissionGranted();
     }
 
+    @Test
+    public void shouldCallbackChangedPermissions_whenReturningFromAppSettingsToActivity() {
+        Intent data = new Intent()
+                .putExtra(AppSettingsDialog.EXTRA_PERMISSIONS, ALL_PERMS)
+                .putExtra(AppSettingsDialog.EXTRA_RESULTS_BEFORE, SMS_DENIED_RESULT)
+                .putExtra(AppSettingsDialog.EXTRA_RESULTS_AFTER, new int[]{
+                        PackageManager.PERMISSION_GRANTED, PackageManager.PERMISSION_GRANTED});
+
+        boolean handled = EasyPermissions.onActivityResult(TestActivity.REQUEST_CODE, data, spyActivity);
+
+        assertThat(handled).isTrue();
+        verify(spyActivity, times(1))
+                .onPermissionsGranted(integerCaptor.capture(), listCaptor.capture());
+        assertThat(integerCaptor.getValue()).isEqualTo(TestActivity.REQUEST_CODE);
+        assertThat(listCaptor.getValue()).containsExactly(Manifest.permission.READ_SMS);
+        verify(spyActivity, never()).onPermissionsDenied(anyInt(), ArgumentMatchers.<String>anyList());
+        // Called 2 times because this is a spy and library implementation invokes super classes annotated methods as well
+        verify(spyActivity, times(2)).afterPermissionGranted();
+    }
+
+    @Test
+    public void shouldNotCallback_whenReturningFromAppSettingsWithoutChangesToActivity() {
+        Intent data = new Intent()
+                .putExtra(AppSettingsDialog.EXTRA_PERMISSIONS, ALL_PERMS)
+                .putExtra(AppSettingsDialog.EXTRA_RESULTS_BEFORE, SMS_DENIED_RESULT)
+                .putExtra(AppSettingsDialog.EXTRA_RESULTS_AFTER, SMS_DENIED_RESULT);
+
+        EasyPermissions.onActivityResult(TestActivity.REQUEST_CODE, data, spyActivity);
+
+        verify(spyActivity, never()).onPermissionsGranted(anyInt(), ArgumentMatchers.<String>anyList());
+        verify(spyActivity, never()).onPermissionsDenied(anyInt(), ArgumentMatchers.<String>anyList());
+        verify(spyActivity, never()).afterPermissionGranted();
+    }
+
     @Test
     public void shouldCallbackOnPermissionGranted_whenRequestAlreadyGrantedPermissionsFromActivity() {
         grantPermissions(ALL_PERMS);
@@ -262,6 +303,112 @@ public class EasyPermissionsTest {
         assertThat(EasyPermissions.permissionPermanentlyDenied(spyActivity, Manifest.permission.READ_SMS)).isFalse();
     }
 
+    @Test
+    public void shouldReuseDenialClassification_whenResultReceivedFromActivity() {
+        showRationale(true, Manifest.permission.READ_SMS);
+        EasyPermissions.onRequestPermissionsResult(TestActivity.REQUEST_CODE, ONE_PERM,
+                new int[]{PackageManager.PERMISSION_DENIED}, spyActivity);
+
+        showRationale(false, Manifest.permission.READ_SMS);
+
+        assertThat(EasyPermissions.permissionPermanentlyDenied(spyActivity, Manifest.permission.READ_SMS)).isFalse();
+    }
+
+    @Test
+    public void shouldClassifyPermanentDenial_whenResultReceivedWithoutRationaleFromActivity() {
+        showRationale(false, Manifest.permission.READ_SMS);
+        EasyPermissions.onRequestPermissionsResult(TestActivity.REQUEST_CODE, ONE_PERM,
+                new int[]{PackageManager.PERMISSION_DENIED}, spyActivity);
+
+        showRationale(true, Manifest.permission.READ_SMS);
+
+        assertThat(EasyPermissions.permissionPermanentlyDenied(spyActivity, Manifest.permission.READ_SMS)).isTrue();
+    }
+
+    @Test
+    public void shouldNotClassifyPermanentDenial_whenFirstRequestDeniedWithoutRationaleFromActivity() {
+        // The prompt was dismissed, the rationale state stays false -> false
+        showRationale(false, Manifest.permission.READ_SMS);
+        EasyPermissions.requestPermissions(spyActivity, RATIONALE, TestActivity.REQUEST_CODE, ONE_PERM);
+        EasyPermissions.onRequestPermissionsResult(TestActivity.REQUEST_CODE, ONE_PERM,
+                new int[]{PackageManager.PERMISSION_DENIED}, spyActivity);
+
+        assertThat(EasyPermissions.permissionPermanentlyDenied(spyActivity, Manifest.permission.READ_SMS)).isFalse();
+    }
+
+    @Test
+    public void shouldClassifyPermanentDenial_whenRationaleStopsShowingFromActivity() {
+        showRationale(false, Manifest.permission.READ_SMS);
+        EasyPermissions.requestPermissions(spyActivity, RATIONALE, TestActivity.REQUEST_CODE, ONE_PERM);
+        showRationale(true, Manifest.permission.READ_SMS);
+        EasyPermissions.onRequestPermissionsResult(TestActivity.REQUEST_CODE, ONE_PERM,
+                new int[]{PackageManager.PERMISSION_DENIED}, spyActivity);
+        assertThat(EasyPermissions.permissionPermanentlyDenied(spyActivity, Manifest.permission.READ_SMS)).isFalse();
+
+        // Asked again without a rationale, the user chooses not to be asked again: true -> false
+        EasyPermissions.setRequestPolicy(new RequestPolicy() {
+            @Override
+            public int decide(PermissionRequest request, PermissionHistory history) {
+                return DECISION_REQUEST;
+            }
+        });
+        try {
+            EasyPermissions.requestPermissions(spyActivity, RATIONALE, TestActivity.REQUEST_CODE, ONE_PERM);
+        } finally {
+            EasyPermissions.setRequestPolicy(null);
+        }
+        showRationale(false, Manifest.permission.READ_SMS);
+        EasyPermissions.onRequestPermissionsResult(TestActivity.REQUEST_CODE, ONE_PERM,
+                new int[]{PackageManager.PERMISSION_DENIED}, spyActivity);
+
+        assertThat(EasyPermissions.permissionPermanentlyDenied(spyActivity, Manifest.permission.READ_SMS)).isTrue();
+    }
+
+    @Test
+    public void shouldCallbackDeniedWithoutRequest_whenPolicyDeniesFromActivity() {
+        grantPermissions(ONE_PERM);
+        EasyPermissions.setRequestPolicy(new RequestPolicy() {
+            @Override
+            public int decide(PermissionRequest request, PermissionHistory history) {
+                return DECISION_DENY;
+            }
+        });
+
+        try {
+            EasyPermissions.requestPermissions(spyActivity, RATIONALE, TestActivity.REQUEST_CODE, ALL_PERMS);
+        } finally {
+            EasyPermissions.setRequestPolicy(null);
+        }
+
+        verify(spyActivity, never()).requestPermissions(any(String[].class), anyInt());
+        verify(spyActivity, times(1))
+                .onPermissionsDenied(integerCaptor.capture(), listCaptor.capture());
+        assertThat(integerCaptor.getValue()).isEqualTo(TestActivity.REQUEST_CODE);
+        assertThat(listCaptor.getValue())
+                .containsExactly(Manifest.permission.ACCESS_FINE_LOCATION);
+    }
+
+    @Test
+    public void shouldReportEvents_whenInstrumentationSetFromActivity() {
+        showRationale(false, ALL_PERMS);
+        PermissionMetrics metrics = new PermissionMetrics();
+        EasyPermissions.setInstrumentation(metrics);
+
+        try {
+            EasyPermissions.requestPermissions(spyActivity, RATIONALE, TestActivity.REQUEST_CODE, ALL_PERMS);
+            EasyPermissions.onRequestPermissionsResult(TestActivity.REQUEST_CODE, ALL_PERMS, SMS_DENIED_RESULT, spyActivity);
+        } finally {
+            EasyPermissions.setInstrumentation(null);
+        }
+
+        assertThat(metrics.getCount(Manifest.permission.READ_SMS,
+                PermissionInstrumentation.EVENT_REQUEST_ISSUED)).isEqualTo(1);
+        assertThat(metrics.getCount(Manifest.permission.READ_SMS,
+                PermissionInstrumentation.EVENT_RESULT_DENIED)).isEqualTo(1);
+        assertThat(metrics.getCount(Manifest.permission.ACCESS_FINE_LOCATION,
+                PermissionInstrumentation.EVENT_RESULT_GRANTED)).isEqualTo(1);
+    }
+
     @Test
     public void shouldCorrectlyCallback_whenOnRequestPermissionResultCalledFromAppCompatActivity() {
         EasyPermissions.onRequestPermissionsResult(TestAppCompatActivity.REQUEST_CODE, ALL_PERMS, SMS_DENIED_RESULT, spyAppCompatActivity);
@@ -339,6 +486,155 @@ public class EasyPermissionsTest {
         assertThatHasExpectedRationale(dialog, RATIONALE);
     }
 
+    @Test
+    public void shouldShowQueuedDialog_whenRequestAfterStateSavedFromAppCompatActivity() {
+        grantPermissions(ONE_PERM);
+        showRationale(true, ALL_PERMS);
+        appCompatActivityController.stop();
+
+        EasyPermissions.requestPermissions(spyAppCompatActivity, RATIONALE, TestAppCompatActivity.REQUEST_CODE, ALL_PERMS);
+
+        assertThat(spyAppCompatActivity.getSupportFragmentManager()
+                .findFragmentByTag(RationaleDialogFragmentCompat.TAG)).isNull();
+
+        appCompatActivityController.resume();
+
+        androidx.fragment.app.Fragment dialogFragment = spyAppCompatActivity.getSupportFragmentManager()
+                .findFragmentByTag(RationaleDialogFragmentCompat.TAG);
+        assertThat(dialogFragment).isInstanceOf(RationaleDialogFragmentCompat.class);
+
+        Dialog dialog = ((RationaleDialogFragmentCompat) dialogFragment).getDialog();
+        assertThatHasExpectedRationale(dialog, RATIONALE);
+    }
+
+    @Test
+    public void shouldReportRationaleWait_whenQueuedRationaleShownFromAppCompatActivity() {
+        grantPermissions(ONE_PERM);
+        showRationale(true, ALL_PERMS);
+        appCompatActivityController.stop();
+        PermissionMetrics metrics = new PermissionMetrics();
+        EasyPermissions.setInstrumentation(metrics);
+
+        try {
+            EasyPermissions.requestPermissions(spyAppCompatActivity, RATIONALE, TestAppCompatActivity.REQUEST_CODE, ALL_PERMS);
+
+            assertThat(metrics.getCount(Manifest.permission.READ_SMS,
+                    PermissionInstrumentation.EVENT_RATIONALE_QUEUED)).isEqualTo(1);
+            assertThat(metrics.getCount(Manifest.permission.READ_SMS,
+                    PermissionInstrumentation.EVENT_RATIONALE_DEQUEUED)).isEqualTo(0);
+
+            appCompatActivityController.resume();
+        } finally {
+            EasyPermissions.setInstrumentation(null);
+        }
+
+        assertThat(metrics.getCount(Manifest.permission.READ_SMS,
+                PermissionInstrumentation.EVENT_RATIONALE_DEQUEUED)).isEqualTo(1);
+        assertThat(metrics.getCount(Manifest.permission.READ_SMS,
+                PermissionInstrumentation.EVENT_RATIONALE_SHOWN)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReuseDialog_whenRationaleShownAgainFromAppCompatActivity() {
+        grantPermissions(ONE_PERM);
+        showRationale(true, ALL_PERMS);
+
+        EasyPermissions.requestPermissions(spyAppCompatActivity, RATIONALE, TestAppCompatActivity.REQUEST_CODE, ALL_PERMS);
+
+        RationaleDialogFragmentCompat dialogFragment = (RationaleDialogFragmentCompat) spyAppCompatActivity
+                .getSupportFragmentManager().findFragmentByTag(RationaleDialogFragmentCompat.TAG);
+        Dialog dialog = dialogFragment.getDialog();
+        ((AlertDialog) dialog).getButton(DialogInterface.BUTTON_POSITIVE).performClick();
+        ShadowLooper.idleMainLooper();
+        assertThat(dialogFragment.isShowing()).isFalse();
+        assertThat(dialog.getWindow().getDecorView().getVisibility()).isEqualTo(View.GONE);
+        EasyPermissions.onRequestPermissionsResult(TestAppCompatActivity.REQUEST_CODE, ALL_PERMS,
+                SMS_DENIED_RESULT);
+
+        EasyPermissions.requestPermissions(spyAppCompatActivity, "NEW_RATIONALE", TestAppCompatActivity.REQUEST_CODE, ALL_PERMS);
+
+        assertThat(spyAppCompatActivity.getSupportFragmentManager()
+                .findFragmentByTag(RationaleDialogFragmentCompat.TAG)).isSameAs(dialogFragment);
+        assertThat(dialogFragment.getDialog()).isSameAs(dialog);
+        assertThat(dialog.isShowing()).isTrue();
+        assertThatHasExpectedRationale(dialog, "NEW_RATIONALE");
+    }
+
+    @Test
+    public void shouldRemoveFragment_whenRationaleDialogDismissedFromAppCompatActivity() {
+        grantPermissions(ONE_PERM);
+        showRationale(true, ALL_PERMS);
+
+        EasyPermissions.requestPermissions(spyAppCompatActivity, RATIONALE, TestAppCompatActivity.REQUEST_CODE, ALL_PERMS);
+
+        RationaleDialogFragmentCompat dialogFragment = (RationaleDialogFragmentCompat) spyAppCompatActivity
+                .getSupportFragmentManager().findFragmentByTag(RationaleDialogFragmentCompat.TAG);
+        dialogFragment.getDialog().dismiss();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(dialogFragment.isShowing()).isFalse();
+        assertThat(RationaleDialogFragmentCompat.find(
+                spyAppCompatActivity.getSupportFragmentManager())).isNull();
+    }
+
+    @Test
+    public void shouldShowBanner_whenRationaleRendererSetFromAppCompatActivity() {
+        grantPermissions(ONE_PERM);
+        showRationale(true, ALL_PERMS);
+
+        PermissionRequest request = new PermissionRequest.Builder(spyAppCompatActivity, TestAppCompatActivity.REQUEST_CODE, ALL_PERMS)
+                .setRationale(RATIONALE)
+                .setPositiveButtonText(POSITIVE)
+                .setRationaleRenderer(new BannerRationaleRenderer())
+                .build();
+        EasyPermissions.requestPermissions(request);
+
+        assertThat(spyAppCompatActivity.getSupportFragmentManager()
+                .findFragmentByTag(RationaleDialogFragmentCompat.TAG)).isNull();
+        TextView message = spyAppCompatActivity.findViewById(android.R.id.message);
+        assertThat(message.getText().toString()).isEqualTo(RATIONALE);
+
+        Button positive = spyAppCompatActivity.findViewById(android.R.id.button1);
+        assertThat(positive.getText().toString()).isEqualTo(POSITIVE);
+        positive.performClick();
+
+        verify(spyAppCompatActivity, times(1)).onRationaleAccepted(TestAppCompatActivity.REQUEST_CODE);
+        verify(spyAppCompatActivity, times(1))
+                .requestPermissions(ALL_PERMS, TestAppCompatActivity.REQUEST_CODE);
+    }
+
+    @Test
+    public void shouldShowBannerAgain_whenRenderedRequestCancelledFromAppCompatActivity() {
+        grantPermissions(ONE_PERM);
+        showRationale(true, ALL_PERMS);
+        BannerRationaleRenderer renderer = new BannerRationaleRenderer();
+
+        PendingPermissionRequest pending = EasyPermissions.startRequest(
+                new PermissionRequest.Builder(spyAppCompatActivity, TestAppCompatActivity.REQUEST_CODE, ALL_PERMS)
+                        .setRationale(RATIONALE)
+                        .setRationaleRenderer(renderer)
+                        .build());
+        TextView message = spyAppCompatActivity.findViewById(android.R.id.message);
+        View banner = (View) message.getParent();
+        assertThat(banner.getVisibility()).isEqualTo(View.VISIBLE);
+
+        assertThat(pending.cancel()).isTrue();
+        assertThat(banner.getVisibility()).isEqualTo(View.GONE);
+
+        pending = EasyPermissions.startRequest(
+                new PermissionRequest.Builder(spyAppCompatActivity, TestAppCompatActivity.REQUEST_CODE, ALL_PERMS)
+                        .setRationale("NEW_RATIONALE")
+                        .setRationaleRenderer(renderer)
+                        .build());
+        assertThat(banner.getVisibility()).isEqualTo(View.VISIBLE);
+        assertThat(message.getText().toString()).isEqualTo("NEW_RATIONALE");
+
+        ((Button) spyAppCompatActivity.findViewById(android.R.id.button1)).performClick();
+        verify(spyAppCompatActivity, times(1))
+                .requestPermissions(ALL_PERMS, TestAppCompatActivity.REQUEST_CODE);
+        assertThat(pending.isPending()).isTrue();
+    }
+
     @Test
     public void shouldShowCorrectDialog_whenMissingPermissionsAndShowRationaleFromSupportFragmentActivity() {
         grantPermissions(ONE_PERM);
@@ -0,0 +1,105 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import pub.devrel.easypermissions.testhelper.TestActivity;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class HostRetentionTest {
+
+    private static final int REQUEST_CODE = 5;
+    private static final String[] ONE_PERM = new String[]{Manifest.permission.READ_SMS};
+
+    private PermissionRequest request;
+    private AppSettingsDialog dialog;
+    private List<String> gone;
+    private OnHostGoneListener listener;
+
+    @Before
+    public void setUp() {
+        gone = new ArrayList<>();
+        listener = new OnHostGoneListener() {
+            @Override
+            public void onHostGone(int requestCode, @NonNull String[] perms) {
+                gone.add(requestCode + " " + Arrays.toString(perms));
+            }
+        };
+    }
+
+    @Test
+    public void shouldNotRetainActivity_whenRequestAndDialogKeptAfterDestroy() {
+        WeakReference<TestActivity> activity = buildAndDestroy();
+
+        awaitCollected(activity);
+
+        assertThat(activity.get()).isNull();
+        assertThat(request.getHelper().isHostGone()).isTrue();
+    }
+
+    @Test
+    public void shouldNotifyHostGone_whenUsedAfterDestroy() {
+        buildAndDestroy();
+
+        EasyPermissions.requestPermissions(request);
+        dialog.show();
+
+        assertThat(gone).containsExactly(
+                REQUEST_CODE + " " + Arrays.toString(ONE_PERM),
+                AppSettingsDialog.DEFAULT_SETTINGS_REQ_CODE + " " + Arrays.toString(ONE_PERM))
+                .inOrder();
+    }
+
+    /**
+     * Build a request and a dialog from an Activity that is then destroyed, in their own stack
+     * frame so that only they could still reference it.
+     */
+    private WeakReference<TestActivity> buildAndDestroy() {
+        ActivityController<TestActivity> controller =
+                Robolectric.buildActivity(TestActivity.class).setup();
+        TestActivity activity = controller.get();
+
+        request = new PermissionRequest.Builder(activity, REQUEST_CODE, ONE_PERM)
+                .setOnHostGoneListener(listener)
+                .build();
+        dialog = new AppSettingsDialog.Builder(activity)
+                .setPermissions(ONE_PERM)
+                .setOnHostGoneListener(listener)
+                .build();
+
+        controller.pause().stop().destroy();
+        return new WeakReference<>(activity);
+    }
+
+    /**
+     * Run the garbage collector until the reference is cleared, the way leak detectors do.
+     */
+    private static void awaitCollected(@NonNull WeakReference<?> reference) {
+        for (int i = 0; i < 10 && reference.get() != null; i++) {
+            Runtime.getRuntime().gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            System.runFinalization();
+        }
+    }
+}
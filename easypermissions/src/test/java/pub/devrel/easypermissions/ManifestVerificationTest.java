@@ -0,0 +1,148 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.content.Context;
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import pub.devrel.easypermissions.helper.BackgroundExecutor;
+import pub.devrel.easypermissions.helper.DeclaredPermissions;
+import pub.devrel.easypermissions.testhelper.TestActivity;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class ManifestVerificationTest {
+
+    private static final int REQUEST_CODE = 5;
+    // The test manifest doesn't declare any permission
+    private static final String[] ONE_PERM = new String[]{Manifest.permission.CAMERA};
+
+    private Context context;
+    private List<String> undeclared;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        context = ApplicationProvider.getApplicationContext();
+        undeclared = new ArrayList<>();
+        DeclaredPermissions.reset();
+        EasyPermissions.setManifestVerification(context, new OnUndeclaredPermissionsListener() {
+            @Override
+            public void onUndeclaredPermissions(@NonNull String[] perms) {
+                undeclared.addAll(Arrays.asList(perms));
+            }
+        });
+        awaitLoaded();
+    }
+
+    @After
+    public void tearDown() {
+        EasyPermissions.setManifestVerification(context, null);
+        DeclaredPermissions.reset();
+    }
+
+    @Test
+    public void shouldReportUndeclared_whenBuildingRequest() {
+        TestActivity activity = Robolectric.buildActivity(TestActivity.class).setup().get();
+
+        new PermissionRequest.Builder(activity, REQUEST_CODE, ONE_PERM).build();
+
+        assertThat(undeclared).containsExactly(Manifest.permission.CAMERA);
+    }
+
+    @Test
+    public void shouldDenyWithoutSystemRequest_whenUndeclared() {
+        TestActivity activity = Robolectric.buildActivity(TestActivity.class).setup().get();
+
+        PendingPermissionRequest pending = EasyPermissions.startRequest(
+                new PermissionRequest.Builder(activity, REQUEST_CODE, ONE_PERM).build());
+
+        assertThat(pending.isPending()).isFalse();
+        assertThat(shadowOf(activity).getLastRequestedPermission()).isNull();
+        // Reported once, when the request was built
+        assertThat(undeclared).containsExactly(Manifest.permission.CAMERA);
+    }
+
+    @Test
+    public void shouldReportUndeclaredOnce_whenRequestingInStages() {
+        TestActivity activity = Robolectric.buildActivity(TestActivity.class).setup().get();
+
+        EasyPermissions.requestPermissions(
+                new PermissionRequest.Builder(activity, REQUEST_CODE, ONE_PERM).build(),
+                PermissionDependencies.DEFAULT);
+
+        assertThat(shadowOf(activity).getLastRequestedPermission()).isNull();
+        assertThat(undeclared).containsExactly(Manifest.permission.CAMERA);
+    }
+
+    @Test
+    public void shouldNotReportUndeclared_whenPermissionDoesNotApply() {
+        // Declared with maxSdkVersion="28", so not declared on API 30
+        context.getApplicationInfo().targetSdkVersion = Build.VERSION_CODES.R;
+        EasyPermissions.setPermissionApplicability(
+                new PermissionApplicability.Builder(PermissionApplicability.DEFAULT)
+                        .setSdkInt(Build.VERSION_CODES.R)
+                        .build());
+        try {
+            TestActivity activity = Robolectric.buildActivity(TestActivity.class).setup().get();
+
+            assertThat(EasyPermissions.hasPermissions(context,
+                    Manifest.permission.WRITE_EXTERNAL_STORAGE)).isTrue();
+            new PermissionRequest.Builder(activity, REQUEST_CODE,
+                    Manifest.permission.CAMERA, Manifest.permission.WRITE_EXTERNAL_STORAGE).build();
+        } finally {
+            EasyPermissions.setPermissionApplicability(null);
+        }
+
+        assertThat(undeclared).containsExactly(Manifest.permission.CAMERA);
+    }
+
+    @Test
+    public void shouldReportUndeclared_onlyWhileEnabled() {
+        assertThat(EasyPermissions.hasPermissions(context, ONE_PERM)).isFalse();
+        assertThat(undeclared).hasSize(1);
+
+        EasyPermissions.setManifestVerification(context, null);
+        EasyPermissions.hasPermissions(context, ONE_PERM);
+
+        assertThat(undeclared).hasSize(1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrow_whenVerifyingStrictly() {
+        EasyPermissions.setManifestVerification(context, OnUndeclaredPermissionsListener.THROW);
+
+        EasyPermissions.hasPermissions(context, ONE_PERM);
+    }
+
+    /**
+     * Wait for the declared permissions, loaded before any later background task.
+     */
+    private static void awaitLoaded() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        BackgroundExecutor.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
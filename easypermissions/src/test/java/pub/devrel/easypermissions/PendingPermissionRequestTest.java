@@ -0,0 +1,174 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.content.pm.PackageManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import pub.devrel.easypermissions.testhelper.TestAppCompatActivity;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PendingPermissionRequestTest {
+
+    private static final int REQUEST_CODE = 5;
+    private static final String[] ONE_PERM = new String[]{Manifest.permission.READ_SMS};
+    private static final int[] GRANTED = new int[]{PackageManager.PERMISSION_GRANTED};
+
+    private ActivityController<TestAppCompatActivity> controller;
+    private List<Integer> cancelled;
+    private List<Integer> results;
+    private PendingPermissionRequest.OnCancelledListener listener;
+    private EasyPermissions.PermissionCallbacks receiver;
+
+    @Before
+    public void setUp() {
+        controller = Robolectric.buildActivity(TestAppCompatActivity.class).setup();
+        cancelled = new ArrayList<>();
+        results = new ArrayList<>();
+        listener = new PendingPermissionRequest.OnCancelledListener() {
+            @Override
+            public void onCancelled(@NonNull PendingPermissionRequest pending, int reason) {
+                cancelled.add(reason);
+            }
+        };
+        receiver = new EasyPermissions.PermissionCallbacks() {
+            @Override
+            public void onPermissionsGranted(int requestCode, @NonNull List<String> perms) {
+                results.add(requestCode);
+            }
+
+            @Override
+            public void onPermissionsDenied(int requestCode, @NonNull List<String> perms) {
+                results.add(requestCode);
+            }
+
+            @Override
+            public void onRequestPermissionsResult(int requestCode,
+                                                   @NonNull String[] permissions,
+                                                   @NonNull int[] grantResults) {
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        EasyPermissions.setDebounceWindowMillis(EasyPermissions.DEFAULT_DEBOUNCE_WINDOW_MILLIS);
+    }
+
+    @Test
+    public void shouldFinish_whenResultDelivered() {
+        PendingPermissionRequest pending = request(0).setOnCancelledListener(listener);
+        assertThat(pending.isPending()).isTrue();
+
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM, GRANTED, receiver);
+
+        assertThat(pending.isPending()).isFalse();
+        assertThat(pending.cancel()).isFalse();
+        assertThat(results).containsExactly(REQUEST_CODE);
+        assertThat(cancelled).isEmpty();
+    }
+
+    @Test
+    public void shouldDiscardResult_whenCancelledDuringSystemPrompt() {
+        PendingPermissionRequest pending = request(0).setOnCancelledListener(listener);
+
+        assertThat(pending.cancel()).isTrue();
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM, GRANTED, receiver);
+
+        assertThat(pending.isCancelled()).isTrue();
+        assertThat(cancelled).containsExactly(PendingPermissionRequest.REASON_CANCELLED);
+        assertThat(results).isEmpty();
+
+        // Later requests are delivered again
+        request(0);
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM, GRANTED, receiver);
+        assertThat(results).containsExactly(REQUEST_CODE);
+    }
+
+    @Test
+    public void shouldDeliverResult_whenCancelledRequestMadeAgain() {
+        PermissionRequest request =
+                new PermissionRequest.Builder(controller.get(), REQUEST_CODE, ONE_PERM).build();
+        assertThat(EasyPermissions.startRequest(request).cancel()).isTrue();
+
+        PendingPermissionRequest pending = EasyPermissions.startRequest(request);
+        assertThat(pending.getRequest().getCorrelationId())
+                .isNotEqualTo(request.getCorrelationId());
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM, GRANTED, receiver);
+
+        assertThat(pending.isPending()).isFalse();
+        assertThat(pending.isCancelled()).isFalse();
+        assertThat(results).containsExactly(REQUEST_CODE);
+    }
+
+    @Test
+    public void shouldCancel_whenTimeoutElapses() {
+        PendingPermissionRequest pending = request(1000).setOnCancelledListener(listener);
+
+        ShadowLooper.idleMainLooper(999, TimeUnit.MILLISECONDS);
+        assertThat(pending.isPending()).isTrue();
+
+        ShadowLooper.idleMainLooper(1, TimeUnit.MILLISECONDS);
+        assertThat(pending.isCancelled()).isTrue();
+        assertThat(cancelled).containsExactly(PendingPermissionRequest.REASON_TIMED_OUT);
+    }
+
+    @Test
+    public void shouldCancel_whenHostDestroyed() {
+        PendingPermissionRequest pending = request(1000).setOnCancelledListener(listener);
+
+        controller.pause().stop().destroy();
+
+        assertThat(pending.isCancelled()).isTrue();
+        assertThat(cancelled).containsExactly(PendingPermissionRequest.REASON_HOST_DESTROYED);
+
+        // The timeout was released with the request
+        ShadowLooper.idleMainLooper(1000, TimeUnit.MILLISECONDS);
+        assertThat(cancelled).hasSize(1);
+    }
+
+    @Test
+    public void shouldJoinPendingRequest_whenDuplicatedWithinWindow() {
+        PendingPermissionRequest pending = request(0);
+
+        assertThat(request(0)).isSameAs(pending);
+
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM, GRANTED, receiver);
+        assertThat(results).containsExactly(REQUEST_CODE);
+    }
+
+    @Test
+    public void shouldMakeRequestAgain_whenWindowElapsed() {
+        PendingPermissionRequest pending = request(0);
+
+        ShadowLooper.idleMainLooper(EasyPermissions.DEFAULT_DEBOUNCE_WINDOW_MILLIS,
+                TimeUnit.MILLISECONDS);
+        assertThat(request(0)).isNotSameAs(pending);
+
+        EasyPermissions.setDebounceWindowMillis(0);
+        assertThat(request(0)).isNotSameAs(pending);
+    }
+
+    private PendingPermissionRequest request(long timeoutMillis) {
+        return EasyPermissions.startRequest(
+                new PermissionRequest.Builder(controller.get(), REQUEST_CODE, ONE_PERM)
+                        .setTimeoutMillis(timeoutMillis)
+                        .build());
+    }
+}
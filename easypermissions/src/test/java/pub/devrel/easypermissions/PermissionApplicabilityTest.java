@@ -0,0 +1,106 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.content.Context;
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import androidx.test.core.app.ApplicationProvider;
+import pub.devrel.easypermissions.testhelper.TestActivity;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PermissionApplicabilityTest {
+
+    private static final int REQUEST_CODE = 5;
+    private static final String POST_NOTIFICATIONS = "android.permission.POST_NOTIFICATIONS";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() {
+        EasyPermissions.setPermissionApplicability(null);
+    }
+
+    @Test
+    public void shouldTreatPermissionAsGranted_whenNotApplicable() {
+        assertThat(EasyPermissions.hasPermissions(context, POST_NOTIFICATIONS)).isTrue();
+        assertThat(EasyPermissions.hasPermissions(context,
+                POST_NOTIFICATIONS, Manifest.permission.CAMERA)).isFalse();
+    }
+
+    @Test
+    public void shouldLeaveNotApplicablePermissionsOutOfRequest() {
+        TestActivity activity = Robolectric.buildActivity(TestActivity.class).setup().get();
+
+        EasyPermissions.requestPermissions(new PermissionRequest.Builder(activity, REQUEST_CODE,
+                Manifest.permission.CAMERA, POST_NOTIFICATIONS).build());
+
+        assertThat(shadowOf(activity).getLastRequestedPermission().requestedPermissions)
+                .isEqualTo(new String[]{Manifest.permission.CAMERA});
+    }
+
+    @Test
+    public void shouldUseAppTable_whenSet() {
+        EasyPermissions.setPermissionApplicability(
+                new PermissionApplicability.Builder(PermissionApplicability.DEFAULT)
+                        .setSdkRange(Manifest.permission.CAMERA, Build.VERSION_CODES.N,
+                                PermissionApplicability.NO_MAX_SDK)
+                        .remove(POST_NOTIFICATIONS)
+                        .build());
+
+        assertThat(EasyPermissions.hasPermissions(context, Manifest.permission.CAMERA)).isTrue();
+        assertThat(EasyPermissions.hasPermissions(context, POST_NOTIFICATIONS)).isFalse();
+    }
+
+    @Test
+    public void shouldComputeApplicabilityForSdk() {
+        context.getApplicationInfo().targetSdkVersion = Build.VERSION_CODES.R;
+        PermissionApplicability applicability =
+                new PermissionApplicability.Builder(PermissionApplicability.DEFAULT)
+                        .setSdkInt(Build.VERSION_CODES.R)
+                        .build();
+
+        assertThat(applicability.isApplicable(context, Manifest.permission.WRITE_EXTERNAL_STORAGE))
+                .isFalse();
+        assertThat(applicability.isApplicable(context,
+                Manifest.permission.ACCESS_BACKGROUND_LOCATION)).isTrue();
+        assertThat(applicability.filter(context, new String[]{Manifest.permission.CAMERA,
+                Manifest.permission.WRITE_EXTERNAL_STORAGE, POST_NOTIFICATIONS}))
+                .isEqualTo(new String[]{Manifest.permission.CAMERA});
+    }
+
+    @Test
+    public void shouldKeepLegacyPermissions_whenTargetSdkBelowRunningSdk() {
+        // Targets 32 on API 33
+        context.getApplicationInfo().targetSdkVersion = 32;
+        PermissionApplicability applicability =
+                new PermissionApplicability.Builder(PermissionApplicability.DEFAULT)
+                        .setSdkInt(33)
+                        .build();
+
+        assertThat(applicability.isApplicable(context, Manifest.permission.READ_EXTERNAL_STORAGE))
+                .isTrue();
+        assertThat(applicability.isApplicable(context, Manifest.permission.WRITE_EXTERNAL_STORAGE))
+                .isFalse();
+        // Permissions that don't exist yet are not affected by the target SDK
+        assertThat(applicability.isApplicable(context, POST_NOTIFICATIONS)).isTrue();
+        assertThat(applicability.isApplicable(context,
+                Manifest.permission.ACCESS_BACKGROUND_LOCATION)).isTrue();
+    }
+}
@@ -0,0 +1,149 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.test.core.app.ApplicationProvider;
+import pub.devrel.easypermissions.testhelper.ActivityController;
+import pub.devrel.easypermissions.testhelper.TestActivity;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PermissionGuardedExecutorTest {
+
+    private static final int REQUEST_CODE = 5;
+    private static final String[] ONE_PERM = new String[]{Manifest.permission.READ_SMS};
+
+    private Application app;
+    private List<String> ran;
+
+    @Before
+    public void setUp() {
+        app = ApplicationProvider.getApplicationContext();
+        ran = new ArrayList<>();
+    }
+
+    @Test
+    public void shouldRunParkedTasksInOrder_whenGrantDispatched() {
+        PermissionGuardedExecutor executor =
+                new PermissionGuardedExecutor.Builder(app, ONE_PERM).build();
+
+        executor.execute(task("first"));
+        executor.execute(task("second"));
+        assertThat(ran).isEmpty();
+        assertThat(executor.getParkedCount()).isEqualTo(2);
+
+        shadowOf(app).grantPermissions(ONE_PERM);
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM,
+                new int[]{PackageManager.PERMISSION_GRANTED});
+
+        assertThat(ran).containsExactly("first", "second").inOrder();
+        executor.execute(task("third"));
+        assertThat(ran).containsExactly("first", "second", "third").inOrder();
+    }
+
+    @Test
+    public void shouldRunTask_whenGrantDispatchedWhileParking() {
+        // The grant is dispatched after the executor found the permission missing, before the
+        // task is parked, as it may be from another thread
+        Context racing = new ContextWrapper(app) {
+            private boolean mDispatched;
+
+            @Override
+            public Context getApplicationContext() {
+                return this;
+            }
+
+            @Override
+            public int checkPermission(String permission, int pid, int uid) {
+                if (mDispatched) {
+                    return super.checkPermission(permission, pid, uid);
+                }
+
+                mDispatched = true;
+                shadowOf(app).grantPermissions(ONE_PERM);
+                EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM,
+                        new int[]{PackageManager.PERMISSION_GRANTED});
+                return PackageManager.PERMISSION_DENIED;
+            }
+        };
+        PermissionGuardedExecutor executor =
+                new PermissionGuardedExecutor.Builder(racing, ONE_PERM).build();
+
+        executor.execute(task("first"));
+
+        assertThat(ran).containsExactly("first");
+        assertThat(executor.getParkedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldDropParkedTasks_whenPermanentlyDenied() {
+        final List<Runnable> dropped = new ArrayList<>();
+        PermissionGuardedExecutor executor = newDroppingExecutor(dropped);
+        executor.execute(task("first"));
+
+        // Without a rationale to show, the denial is classified as permanent
+        TestActivity activity = new ActivityController<>(TestActivity.class).resume();
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM,
+                new int[]{PackageManager.PERMISSION_DENIED}, activity);
+
+        assertThat(ran).isEmpty();
+        assertThat(dropped).hasSize(1);
+        assertThat(executor.getParkedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldDropParkedTasks_whenStillDeniedAfterSettings() {
+        final List<Runnable> dropped = new ArrayList<>();
+        PermissionGuardedExecutor executor = newDroppingExecutor(dropped);
+        executor.execute(task("first"));
+
+        // Back from the settings screen without a grant, and no rationale to show
+        TestActivity activity = new ActivityController<>(TestActivity.class).resume();
+        int[] denied = new int[]{PackageManager.PERMISSION_DENIED};
+        Intent data = new Intent()
+                .putExtra(AppSettingsDialog.EXTRA_PERMISSIONS, ONE_PERM)
+                .putExtra(AppSettingsDialog.EXTRA_RESULTS_BEFORE, denied)
+                .putExtra(AppSettingsDialog.EXTRA_RESULTS_AFTER, denied);
+        EasyPermissions.onActivityResult(REQUEST_CODE, data, activity);
+
+        assertThat(ran).isEmpty();
+        assertThat(dropped).hasSize(1);
+    }
+
+    private PermissionGuardedExecutor newDroppingExecutor(final List<Runnable> dropped) {
+        return new PermissionGuardedExecutor.Builder(app, ONE_PERM)
+                .setOnTasksDroppedListener(new PermissionGuardedExecutor.OnTasksDroppedListener() {
+                    @Override
+                    public void onTasksDropped(List<Runnable> tasks) {
+                        dropped.addAll(tasks);
+                    }
+                })
+                .build();
+    }
+
+    private Runnable task(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                ran.add(name);
+            }
+        };
+    }
+}
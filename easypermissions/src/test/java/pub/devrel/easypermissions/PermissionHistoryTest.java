@@ -0,0 +1,118 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import pub.devrel.easypermissions.testhelper.DirectExecutor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PermissionHistoryTest {
+
+    private static final String[] ONE_PERM = new String[]{Manifest.permission.READ_SMS};
+    private static final String[] ALL_PERMS = new String[]{
+            Manifest.permission.READ_SMS, Manifest.permission.ACCESS_FINE_LOCATION};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(temporaryFolder.getRoot(), "history");
+    }
+
+    @Test
+    public void shouldCountEvents_whenRecorded() {
+        PermissionHistory history = new PermissionHistory(file, DirectExecutor.INSTANCE);
+
+        history.record(ALL_PERMS, PermissionHistory.EVENT_REQUESTED);
+        history.record(ONE_PERM, PermissionHistory.EVENT_DENIED);
+
+        PermissionHistory.Record record = history.get(Manifest.permission.READ_SMS);
+        assertThat(record.getCount(PermissionHistory.EVENT_REQUESTED)).isEqualTo(1);
+        assertThat(record.getCount(PermissionHistory.EVENT_DENIED)).isEqualTo(1);
+        assertThat(record.getLastTimeMillis(PermissionHistory.EVENT_DENIED)).isGreaterThan(0L);
+        assertThat(history.get(Manifest.permission.ACCESS_FINE_LOCATION)
+                .getCount(PermissionHistory.EVENT_DENIED)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRestoreEvents_whenLoadedInNewSession() {
+        PermissionHistory history = new PermissionHistory(file, DirectExecutor.INSTANCE);
+        history.record(ALL_PERMS, PermissionHistory.EVENT_REQUESTED);
+        history.record(ONE_PERM, PermissionHistory.EVENT_PERMANENTLY_DENIED);
+
+        PermissionHistory restored = new PermissionHistory(file, DirectExecutor.INSTANCE);
+
+        assertThat(restored.isLoaded()).isTrue();
+        PermissionHistory.Record record = restored.get(Manifest.permission.READ_SMS);
+        assertThat(record.getCount(PermissionHistory.EVENT_REQUESTED)).isEqualTo(1);
+        assertThat(record.getCount(PermissionHistory.EVENT_PERMANENTLY_DENIED)).isEqualTo(1);
+        assertThat(restored.get(Manifest.permission.ACCESS_FINE_LOCATION)
+                .getCount(PermissionHistory.EVENT_REQUESTED)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldKeepCounts_whenCompacted() {
+        PermissionHistory history = new PermissionHistory(file, DirectExecutor.INSTANCE);
+        for (int i = 0; i < 1000; i++) {
+            history.record(ONE_PERM, PermissionHistory.EVENT_REQUESTED);
+        }
+        long compactedLength = file.length();
+
+        PermissionHistory restored = new PermissionHistory(file, DirectExecutor.INSTANCE);
+
+        assertThat(compactedLength).isLessThan(1000L * 14);
+        assertThat(restored.get(Manifest.permission.READ_SMS)
+                .getCount(PermissionHistory.EVENT_REQUESTED)).isEqualTo(1000);
+    }
+
+    @Test
+    public void shouldKeepRecentTimes_whenCompacted() {
+        PermissionHistory history = new PermissionHistory(file, DirectExecutor.INSTANCE);
+        history.record(ONE_PERM, PermissionHistory.EVENT_DENIED);
+        for (int i = 0; i < 1000; i++) {
+            history.record(ONE_PERM, PermissionHistory.EVENT_REQUESTED);
+        }
+
+        PermissionHistory.Record record = new PermissionHistory(file, DirectExecutor.INSTANCE)
+                .get(Manifest.permission.READ_SMS);
+
+        assertThat(record.getCountSince(PermissionHistory.EVENT_DENIED, 0)).isEqualTo(1);
+        assertThat(record.getCountSince(PermissionHistory.EVENT_REQUESTED, 0))
+                .isEqualTo(PermissionHistory.RECENT_TIMES);
+    }
+
+    @Test
+    public void shouldKeepCompleteRecords_whenLastWriteInterrupted() throws IOException {
+        PermissionHistory history = new PermissionHistory(file, DirectExecutor.INSTANCE);
+        history.record(ONE_PERM, PermissionHistory.EVENT_REQUESTED);
+
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write(new byte[]{2, 0, 0});
+        out.close();
+
+        PermissionHistory restored = new PermissionHistory(file, DirectExecutor.INSTANCE);
+        restored.record(ONE_PERM, PermissionHistory.EVENT_GRANTED);
+
+        PermissionHistory.Record record = new PermissionHistory(file, DirectExecutor.INSTANCE)
+                .get(Manifest.permission.READ_SMS);
+        assertThat(record.getCount(PermissionHistory.EVENT_REQUESTED)).isEqualTo(1);
+        assertThat(record.getCount(PermissionHistory.EVENT_GRANTED)).isEqualTo(1);
+    }
+}
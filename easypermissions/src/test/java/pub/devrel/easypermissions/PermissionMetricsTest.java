@@ -0,0 +1,86 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PermissionMetricsTest {
+
+    private static final long MILLI = 1000000;
+    private static final int CORRELATION_ID = 1;
+    private static final int REQUEST_CODE = 1;
+    private static final String[] ONE_PERM = new String[]{Manifest.permission.READ_SMS};
+
+    @Test
+    public void shouldCountEvents_whenEventsReceived() {
+        PermissionMetrics metrics = new PermissionMetrics();
+
+        record(metrics, PermissionInstrumentation.EVENT_REQUEST_ISSUED, 0);
+        record(metrics, PermissionInstrumentation.EVENT_RESULT_DENIED, 0);
+        record(metrics, PermissionInstrumentation.EVENT_REQUEST_ISSUED, 0);
+
+        assertThat(metrics.getPermissions()).containsExactly(Manifest.permission.READ_SMS);
+        assertThat(metrics.getCount(Manifest.permission.READ_SMS,
+                PermissionInstrumentation.EVENT_REQUEST_ISSUED)).isEqualTo(2);
+        assertThat(metrics.getCount(Manifest.permission.READ_SMS,
+                PermissionInstrumentation.EVENT_RESULT_DENIED)).isEqualTo(1);
+        assertThat(metrics.getCount(Manifest.permission.CAMERA,
+                PermissionInstrumentation.EVENT_REQUEST_ISSUED)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldMeasureFromRationale_whenRationaleShownBeforeRequest() {
+        PermissionMetrics metrics = new PermissionMetrics();
+
+        record(metrics, PermissionInstrumentation.EVENT_RATIONALE_SHOWN, 0);
+        record(metrics, PermissionInstrumentation.EVENT_REQUEST_ISSUED, 2000 * MILLI);
+        record(metrics, PermissionInstrumentation.EVENT_RESULT_GRANTED, 3000 * MILLI);
+
+        long[] histogram = metrics.getLatencyHistogram(Manifest.permission.READ_SMS);
+        // 3000ms is in the bucket [2048, 4096)
+        assertThat(histogram[12]).isEqualTo(1);
+        assertThat(PermissionMetrics.getBucketUpperBoundMillis(12)).isEqualTo(4096);
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        assertThat(total).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldAddPrewarmTime_whenPrewarmFinished() {
+        PermissionMetrics metrics = new PermissionMetrics();
+
+        record(metrics, PermissionInstrumentation.EVENT_PREWARM_STARTED, 1000 * MILLI);
+        record(metrics, PermissionInstrumentation.EVENT_PREWARM_FINISHED, 1030 * MILLI);
+        record(metrics, PermissionInstrumentation.EVENT_PREWARM_FINISHED, 1050 * MILLI);
+
+        assertThat(metrics.getPrewarmNanos()).isEqualTo(30 * MILLI);
+        assertThat(metrics.getLatencyHistogram(Manifest.permission.READ_SMS))
+                .isEqualTo(new long[PermissionMetrics.BUCKET_COUNT]);
+    }
+
+    @Test
+    public void shouldAddRationaleWait_whenQueuedRationaleShown() {
+        PermissionMetrics metrics = new PermissionMetrics();
+
+        record(metrics, PermissionInstrumentation.EVENT_RATIONALE_QUEUED, 1000 * MILLI);
+        record(metrics, PermissionInstrumentation.EVENT_RATIONALE_DEQUEUED, 1250 * MILLI);
+        record(metrics, PermissionInstrumentation.EVENT_RATIONALE_DEQUEUED, 1400 * MILLI);
+
+        assertThat(metrics.getRationaleWaitNanos(Manifest.permission.READ_SMS))
+                .isEqualTo(250 * MILLI);
+        assertThat(metrics.getRationaleWaitNanos(Manifest.permission.CAMERA)).isEqualTo(0);
+    }
+
+    private static void record(PermissionMetrics metrics, int event, long timestampNanos) {
+        metrics.onEvent(event, CORRELATION_ID, REQUEST_CODE, ONE_PERM, timestampNanos);
+    }
+}
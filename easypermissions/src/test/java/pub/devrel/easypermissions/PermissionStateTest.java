@@ -0,0 +1,108 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.pm.PackageManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+import androidx.test.core.app.ApplicationProvider;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PermissionStateTest {
+
+    private static final int REQUEST_CODE = 5;
+    private static final String[] ONE_PERM = new String[]{Manifest.permission.READ_SMS};
+    private static final int[] GRANTED = new int[]{PackageManager.PERMISSION_GRANTED};
+
+    private Application app;
+    private List<Boolean> changes;
+    private PermissionState.Observer observer;
+
+    @Before
+    public void setUp() {
+        app = ApplicationProvider.getApplicationContext();
+        changes = new ArrayList<>();
+        observer = new PermissionState.Observer() {
+            @Override
+            public void onChanged(boolean granted) {
+                changes.add(granted);
+            }
+        };
+    }
+
+    @Test
+    public void shouldNotifyOnce_whenBurstOfResults() {
+        PermissionState state = PermissionState.of(app, ONE_PERM);
+        state.observe(observer);
+        assertThat(changes).containsExactly(false);
+
+        ShadowLooper.pauseMainLooper();
+        shadowOf(app).grantPermissions(ONE_PERM);
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM, GRANTED);
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM, GRANTED);
+        ShadowLooper.unPauseMainLooper();
+
+        assertThat(changes).containsExactly(false, true).inOrder();
+
+        // No change, no notification
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM, GRANTED);
+        assertThat(changes).containsExactly(false, true).inOrder();
+        state.removeObserver(observer);
+    }
+
+    @Test
+    public void shouldFollowLifecycle_whenObservedWithOwner() {
+        TestLifecycleOwner owner = new TestLifecycleOwner();
+        PermissionState.of(app, ONE_PERM).observe(owner, observer);
+        assertThat(changes).isEmpty();
+
+        owner.registry.handleLifecycleEvent(Lifecycle.Event.ON_START);
+        assertThat(changes).containsExactly(false);
+
+        // Granted while stopped, reported on the next start
+        owner.registry.handleLifecycleEvent(Lifecycle.Event.ON_STOP);
+        shadowOf(app).grantPermissions(ONE_PERM);
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM, GRANTED);
+        assertThat(changes).containsExactly(false);
+        owner.registry.handleLifecycleEvent(Lifecycle.Event.ON_START);
+        assertThat(changes).containsExactly(false, true).inOrder();
+
+        owner.registry.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+        shadowOf(app).denyPermissions(ONE_PERM);
+        PermissionStatus.invalidate(ONE_PERM);
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, ONE_PERM,
+                new int[]{PackageManager.PERMISSION_DENIED});
+        assertThat(changes).containsExactly(false, true).inOrder();
+    }
+
+    private static final class TestLifecycleOwner implements LifecycleOwner {
+        final LifecycleRegistry registry = new LifecycleRegistry(this);
+
+        TestLifecycleOwner() {
+            registry.handleLifecycleEvent(Lifecycle.Event.ON_CREATE);
+        }
+
+        @NonNull
+        @Override
+        public Lifecycle getLifecycle() {
+            return registry;
+        }
+    }
+}
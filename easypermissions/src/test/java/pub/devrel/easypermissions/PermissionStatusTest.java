@@ -0,0 +1,80 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.pm.PackageManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PermissionStatusTest {
+
+    private static final String[] ALL_PERMS = new String[]{
+            Manifest.permission.READ_SMS, Manifest.permission.ACCESS_FINE_LOCATION};
+
+    private Application app;
+    private ShadowApplication shadowApp;
+
+    @Before
+    public void setUp() {
+        app = ApplicationProvider.getApplicationContext();
+        shadowApp = shadowOf(app);
+    }
+
+    @Test
+    public void shouldDeliverResultsOnExecutor_whenCheckedAsync() {
+        shadowApp.grantPermissions(Manifest.permission.READ_SMS);
+        final List<Runnable> tasks = new ArrayList<>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        final List<int[]> results = new ArrayList<>();
+
+        PermissionStatus.checkAsync(app, ALL_PERMS, executor, new PermissionStatus.Callback() {
+            @Override
+            public void onChecked(String[] perms, int[] grantResults) {
+                assertThat(perms).isEqualTo(ALL_PERMS);
+                results.add(grantResults);
+            }
+        });
+        assertThat(results).isEmpty();
+
+        tasks.get(0).run();
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0)).isEqualTo(new int[]{
+                PackageManager.PERMISSION_GRANTED, PackageManager.PERMISSION_DENIED});
+    }
+
+    @Test
+    public void shouldCheckAgain_whenInvalidated() {
+        shadowApp.grantPermissions(ALL_PERMS);
+        assertThat(PermissionStatus.areGranted(app, ALL_PERMS)).isTrue();
+
+        // The cached grant is kept until invalidated, see GrantStateCache
+        shadowApp.denyPermissions(Manifest.permission.READ_SMS);
+        assertThat(PermissionStatus.isGranted(app, Manifest.permission.READ_SMS)).isTrue();
+
+        PermissionStatus.invalidate(Manifest.permission.READ_SMS);
+        assertThat(PermissionStatus.isGranted(app, Manifest.permission.READ_SMS)).isFalse();
+        assertThat(PermissionStatus.isGranted(app, Manifest.permission.ACCESS_FINE_LOCATION))
+                .isTrue();
+    }
+}
@@ -0,0 +1,75 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Scanner;
+
+import pub.devrel.easypermissions.testhelper.DirectExecutor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PermissionTraceRecorderTest {
+
+    private static final int CORRELATION_ID = 7;
+    private static final int REQUEST_CODE = 1;
+    private static final String[] ONE_PERM = new String[]{Manifest.permission.READ_SMS};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldWriteMatchingSpans_whenFlowCompleted() throws IOException, JSONException {
+        File file = new File(temporaryFolder.getRoot(), "trace.json");
+        PermissionTraceRecorder recorder =
+                new PermissionTraceRecorder(file, DirectExecutor.INSTANCE);
+
+        recorder.onEvent(PermissionInstrumentation.EVENT_REQUEST_ISSUED, CORRELATION_ID,
+                REQUEST_CODE, ONE_PERM, 1000000);
+        recorder.onEvent(PermissionInstrumentation.EVENT_RESULT_GRANTED, CORRELATION_ID,
+                REQUEST_CODE, ONE_PERM, 5000000);
+        recorder.onEvent(PermissionInstrumentation.EVENT_RESULT_DENIED, CORRELATION_ID,
+                REQUEST_CODE, ONE_PERM, 5000000);
+
+        JSONArray events = readTrace(file);
+        assertThat(events.length()).isEqualTo(4);
+        assertPhase(events.getJSONObject(0), "b", 1000);
+        assertPhase(events.getJSONObject(1), "n", 5000);
+        assertPhase(events.getJSONObject(2), "e", 5000);
+        // The request span was already ended by the first result
+        assertPhase(events.getJSONObject(3), "n", 5000);
+        assertThat(events.getJSONObject(0).getJSONObject("args")
+                .getJSONArray("permissions").getString(0))
+                .isEqualTo(Manifest.permission.READ_SMS);
+    }
+
+    private static void assertPhase(JSONObject event, String phase, long timestampMicros)
+            throws JSONException {
+        assertThat(event.getString("ph")).isEqualTo(phase);
+        assertThat(event.getInt("id")).isEqualTo(CORRELATION_ID);
+        assertThat(event.getLong("ts")).isEqualTo(timestampMicros);
+    }
+
+    private static JSONArray readTrace(File file) throws IOException, JSONException {
+        Scanner scanner = new Scanner(file, "UTF-8").useDelimiter("\\A");
+        String trace = scanner.next().trim();
+        scanner.close();
+
+        // Close the array the recorder leaves open
+        assertThat(trace).endsWith(",");
+        return new JSONArray(trace.substring(0, trace.length() - 1) + "]");
+    }
+}
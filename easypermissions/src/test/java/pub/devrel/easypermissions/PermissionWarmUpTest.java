@@ -0,0 +1,63 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.app.Application;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import androidx.test.core.app.ApplicationProvider;
+import pub.devrel.easypermissions.testhelper.DirectExecutor;
+import pub.devrel.easypermissions.testhelper.TestActivity;
+import pub.devrel.easypermissions.testhelper.TestFragment;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PermissionWarmUpTest {
+
+    private static final String[] ALL_PERMS = new String[]{
+            Manifest.permission.READ_SMS, Manifest.permission.ACCESS_FINE_LOCATION};
+
+    private Application app;
+
+    @Before
+    public void setUp() {
+        app = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void shouldFinish_whenStarted() {
+        shadowOf(app).grantPermissions(ALL_PERMS);
+        PermissionWarmUp warmUp = new PermissionWarmUp.Builder(app)
+                .setHostClasses(TestActivity.class, TestFragment.class)
+                .setPermissions(ALL_PERMS)
+                .setExecutor(DirectExecutor.INSTANCE)
+                .build();
+
+        assertThat(warmUp.isDone()).isFalse();
+        warmUp.start();
+
+        assertThat(warmUp.isDone()).isTrue();
+        assertThat(EasyPermissions.hasPermissions(app, ALL_PERMS)).isTrue();
+    }
+
+    @Test
+    public void shouldSeeLaterGrant_whenPermissionMissingDuringWarmUp() {
+        new PermissionWarmUp.Builder(app)
+                .setPermissions(ALL_PERMS)
+                .setExecutor(DirectExecutor.INSTANCE)
+                .build()
+                .start();
+        assertThat(EasyPermissions.hasPermissions(app, ALL_PERMS)).isFalse();
+
+        shadowOf(app).grantPermissions(ALL_PERMS);
+
+        assertThat(EasyPermissions.hasPermissions(app, ALL_PERMS)).isTrue();
+    }
+}
@@ -0,0 +1,147 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.app.Activity;
+import android.content.pm.PackageManager;
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowActivity;
+import org.robolectric.util.ReflectionHelpers;
+
+import pub.devrel.easypermissions.testhelper.TestActivity;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PromptCoordinatorTest {
+
+    private static final int FIRST_REQUEST_CODE = 5;
+    private static final int SECOND_REQUEST_CODE = 6;
+    private static final String[] FIRST_PERMS = new String[]{Manifest.permission.READ_SMS};
+    private static final String[] SECOND_PERMS = new String[]{Manifest.permission.CAMERA};
+
+    private TestActivity first;
+    private TestActivity second;
+
+    @Before
+    public void setUp() {
+        first = Robolectric.buildActivity(TestActivity.class).setup().get();
+        second = Robolectric.buildActivity(TestActivity.class).setup().get();
+    }
+
+    @Test
+    public void shouldPromptOnSecondHost_whenFirstResultDelivered() {
+        PendingPermissionRequest firstPending = request(first, FIRST_REQUEST_CODE, FIRST_PERMS);
+        PendingPermissionRequest secondPending = request(second, SECOND_REQUEST_CODE, SECOND_PERMS);
+
+        assertThat(shadowOf(first).getLastRequestedPermission().requestCode)
+                .isEqualTo(FIRST_REQUEST_CODE);
+        assertThat(shadowOf(second).getLastRequestedPermission()).isNull();
+        assertThat(secondPending.isPending()).isTrue();
+
+        EasyPermissions.onRequestPermissionsResult(FIRST_REQUEST_CODE, FIRST_PERMS,
+                new int[]{PackageManager.PERMISSION_DENIED}, first);
+
+        assertThat(firstPending.isPending()).isFalse();
+        ShadowActivity.PermissionsRequest prompted = shadowOf(second).getLastRequestedPermission();
+        assertThat(prompted.requestCode).isEqualTo(SECOND_REQUEST_CODE);
+        assertThat(prompted.requestedPermissions).isEqualTo(SECOND_PERMS);
+    }
+
+    @Test
+    public void shouldPromptNext_whenActiveRequestCancelled() {
+        PendingPermissionRequest firstPending = request(first, FIRST_REQUEST_CODE, FIRST_PERMS);
+        PendingPermissionRequest secondPending = request(second, SECOND_REQUEST_CODE, SECOND_PERMS);
+        PendingPermissionRequest thirdPending = request(second, FIRST_REQUEST_CODE, FIRST_PERMS);
+
+        // A waiting request that is cancelled never prompts
+        secondPending.cancel();
+        firstPending.cancel();
+
+        assertThat(thirdPending.isPending()).isTrue();
+        ShadowActivity.PermissionsRequest prompted = shadowOf(second).getLastRequestedPermission();
+        assertThat(prompted.requestCode).isEqualTo(FIRST_REQUEST_CODE);
+        assertThat(prompted.requestedPermissions).isEqualTo(FIRST_PERMS);
+    }
+
+    @Test
+    public void shouldKeepPrompting_whenRequestMadeBeforeHostResumed() {
+        // The usual pattern, a request made from onCreate()
+        ActivityController<TestActivity> controller =
+                Robolectric.buildActivity(TestActivity.class).create();
+        PendingPermissionRequest firstPending =
+                request(controller.get(), FIRST_REQUEST_CODE, FIRST_PERMS);
+        controller.start().resume();
+        request(second, SECOND_REQUEST_CODE, SECOND_PERMS);
+
+        assertThat(firstPending.isPending()).isTrue();
+        assertThat(shadowOf(second).getLastRequestedPermission()).isNull();
+
+        // The prompt closes without the result being passed on
+        controller.pause().resume();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertThat(firstPending.isPending()).isFalse();
+        assertThat(shadowOf(second).getLastRequestedPermission().requestCode)
+                .isEqualTo(SECOND_REQUEST_CODE);
+    }
+
+    @Test
+    public void shouldPromptNext_whenRenderedRationaleLostToRecreation() {
+        ActivityController<TestActivity> controller =
+                Robolectric.buildActivity(TestActivity.class).setup();
+        PendingPermissionRequest firstPending;
+        EasyPermissions.setRequestPolicy(new RequestPolicy() {
+            @Override
+            public int decide(PermissionRequest request, PermissionHistory history) {
+                return DECISION_RATIONALE;
+            }
+        });
+        try {
+            firstPending = EasyPermissions.startRequest(
+                    new PermissionRequest.Builder(controller.get(), FIRST_REQUEST_CODE, FIRST_PERMS)
+                            .setRationaleRenderer(new RationaleRenderer() {
+                                @Override
+                                public boolean show(Activity activity, PermissionRequest request,
+                                                    Callback callback) {
+                                    return true;
+                                }
+
+                                @Override
+                                public void dismiss(Activity activity, PermissionRequest request) {
+                                }
+                            })
+                            .build());
+        } finally {
+            EasyPermissions.setRequestPolicy(null);
+        }
+        assertThat(firstPending.isPending()).isTrue();
+
+        // The rendered rationale isn't restored with the host
+        ReflectionHelpers.setField(controller.get(), "mChangingConfigurations", true);
+        controller.recreate();
+        shadowOf(Looper.getMainLooper()).idle();
+        PendingPermissionRequest secondPending =
+                request(controller.get(), SECOND_REQUEST_CODE, SECOND_PERMS);
+
+        assertThat(firstPending.isCancelled()).isTrue();
+        assertThat(secondPending.isPending()).isTrue();
+        assertThat(shadowOf(controller.get()).getLastRequestedPermission().requestCode)
+                .isEqualTo(SECOND_REQUEST_CODE);
+    }
+
+    private static PendingPermissionRequest request(TestActivity host, int requestCode,
+                                                    String[] perms) {
+        return EasyPermissions.startRequest(
+                new PermissionRequest.Builder(host, requestCode, perms).build());
+    }
+}
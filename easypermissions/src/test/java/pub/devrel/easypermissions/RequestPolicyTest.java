@@ -0,0 +1,125 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.content.pm.PackageManager;
+import android.os.SystemClock;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+import pub.devrel.easypermissions.testhelper.ActivityController;
+import pub.devrel.easypermissions.testhelper.DirectExecutor;
+import pub.devrel.easypermissions.testhelper.TestActivity;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class RequestPolicyTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final String[] ONE_PERM = new String[]{Manifest.permission.READ_SMS};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private PermissionHistory history;
+    private TestActivity activity;
+    private PermissionRequest request;
+
+    @Before
+    public void setUp() {
+        history = new PermissionHistory(
+                new File(temporaryFolder.getRoot(), "history"), DirectExecutor.INSTANCE);
+        activity = new ActivityController<>(TestActivity.class).resume();
+        request = new PermissionRequest.Builder(activity, TestActivity.REQUEST_CODE, ONE_PERM)
+                .build();
+    }
+
+    @Test
+    public void shouldUseDefault_whenNeverDenied() {
+        RequestPolicy policy = new ExponentialBackoffPolicy(HOUR, 24 * HOUR);
+
+        assertThat(policy.decide(request, history)).isEqualTo(RequestPolicy.DECISION_DEFAULT);
+        assertThat(policy.decide(request, null)).isEqualTo(RequestPolicy.DECISION_DEFAULT);
+    }
+
+    @Test
+    public void shouldDeny_whenDeniedWithinBackoff() {
+        history.record(ONE_PERM, PermissionHistory.EVENT_DENIED);
+
+        RequestPolicy policy = new ExponentialBackoffPolicy(HOUR, 24 * HOUR);
+
+        assertThat(policy.decide(request, history)).isEqualTo(RequestPolicy.DECISION_DENY);
+    }
+
+    @Test
+    public void shouldShowRationaleOrSettings_whenBackoffElapsed() {
+        RequestPolicy policy = new ExponentialBackoffPolicy(0, 0);
+
+        history.record(ONE_PERM, PermissionHistory.EVENT_DENIED);
+        assertThat(policy.decide(request, history)).isEqualTo(RequestPolicy.DECISION_RATIONALE);
+
+        history.record(ONE_PERM, PermissionHistory.EVENT_PERMANENTLY_DENIED);
+        assertThat(policy.decide(request, history)).isEqualTo(RequestPolicy.DECISION_APP_SETTINGS);
+    }
+
+    @Test
+    public void shouldBackOffFromBaseDelay_whenDeniedAgainAfterGrant() {
+        RequestPolicy policy = new ExponentialBackoffPolicy(HOUR, 24 * HOUR);
+        for (int i = 0; i < 3; i++) {
+            history.record(ONE_PERM, PermissionHistory.EVENT_DENIED);
+            advanceClock(1);
+        }
+        history.record(ONE_PERM, PermissionHistory.EVENT_GRANTED);
+        advanceClock(1);
+
+        // Revoked in the settings, then denied again
+        history.record(ONE_PERM, PermissionHistory.EVENT_DENIED);
+        assertThat(policy.decide(request, history)).isEqualTo(RequestPolicy.DECISION_DENY);
+
+        advanceClock(HOUR);
+        assertThat(policy.decide(request, history)).isEqualTo(RequestPolicy.DECISION_RATIONALE);
+    }
+
+    @Test
+    public void shouldDeny_whenMaxPromptsReached() {
+        MaxPromptsPerSessionPolicy policy = new MaxPromptsPerSessionPolicy(2);
+
+        // Deciding alone doesn't count as a prompt
+        assertThat(policy.decide(request, null)).isEqualTo(RequestPolicy.DECISION_DEFAULT);
+        assertThat(policy.decide(request, null)).isEqualTo(RequestPolicy.DECISION_DEFAULT);
+        policy.onPromptIssued(ONE_PERM);
+        assertThat(policy.decide(request, null)).isEqualTo(RequestPolicy.DECISION_DEFAULT);
+        policy.onPromptIssued(ONE_PERM);
+        assertThat(policy.decide(request, null)).isEqualTo(RequestPolicy.DECISION_DENY);
+    }
+
+    @Test
+    public void shouldCountPrompts_whenRequestIssued() {
+        EasyPermissions.setRequestPolicy(new MaxPromptsPerSessionPolicy(1));
+        try {
+            PendingPermissionRequest first = EasyPermissions.startRequest(request);
+            assertThat(first.isPending()).isTrue();
+            EasyPermissions.onRequestPermissionsResult(TestActivity.REQUEST_CODE, ONE_PERM,
+                    new int[]{PackageManager.PERMISSION_DENIED}, activity);
+
+            PendingPermissionRequest second = EasyPermissions.startRequest(request);
+            assertThat(second.isPending()).isFalse();
+            assertThat(second.isCancelled()).isFalse();
+        } finally {
+            EasyPermissions.setRequestPolicy(null);
+        }
+    }
+
+    private static void advanceClock(long millis) {
+        SystemClock.setCurrentTimeMillis(System.currentTimeMillis() + millis);
+    }
+}
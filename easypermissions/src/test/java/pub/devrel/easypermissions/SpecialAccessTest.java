@@ -0,0 +1,130 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.provider.Settings;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowActivity;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import pub.devrel.easypermissions.testhelper.TestActivity;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class SpecialAccessTest {
+
+    private static final int REQUEST_CODE = 5;
+    private static final String OVERLAY = Manifest.permission.SYSTEM_ALERT_WINDOW;
+    private static final String CAMERA = Manifest.permission.CAMERA;
+
+    private TestActivity activity;
+    private List<String> granted;
+    private List<String> denied;
+    private EasyPermissions.PermissionCallbacks receiver;
+
+    @Before
+    public void setUp() {
+        activity = Robolectric.buildActivity(TestActivity.class).setup().get();
+        granted = new ArrayList<>();
+        denied = new ArrayList<>();
+        receiver = new EasyPermissions.PermissionCallbacks() {
+            @Override
+            public void onPermissionsGranted(int requestCode, @NonNull List<String> perms) {
+                granted.addAll(perms);
+            }
+
+            @Override
+            public void onPermissionsDenied(int requestCode, @NonNull List<String> perms) {
+                denied.addAll(perms);
+            }
+
+            @Override
+            public void onRequestPermissionsResult(int requestCode,
+                                                   @NonNull String[] permissions,
+                                                   @NonNull int[] grantResults) {
+            }
+        };
+    }
+
+    @Test
+    public void shouldCheckSpecialAccessWithDedicatedApi() {
+        assertThat(EasyPermissions.hasPermissions(activity, OVERLAY)).isFalse();
+
+        ShadowSettings.setCanDrawOverlays(true);
+
+        assertThat(EasyPermissions.hasPermissions(activity, OVERLAY)).isTrue();
+    }
+
+    @Test
+    public void shouldOpenSettings_whenOnlySpecialAccessMissing() {
+        request(OVERLAY);
+
+        assertThat(shadowOf(activity).getLastRequestedPermission()).isNull();
+        assertSettingsOpened();
+    }
+
+    @Test
+    public void shouldOpenSettingsOnce_whenRequestDuplicated() {
+        request(OVERLAY);
+        request(OVERLAY);
+
+        assertSettingsOpened();
+        assertThat(shadowOf(activity).getNextStartedActivityForResult()).isNull();
+    }
+
+    @Test
+    public void shouldOpenSettings_whenOtherPermissionsGranted() {
+        request(CAMERA, OVERLAY);
+        assertThat(shadowOf(activity).getLastRequestedPermission().requestedPermissions)
+                .isEqualTo(new String[]{CAMERA});
+
+        shadowOf((Application) activity.getApplicationContext()).grantPermissions(CAMERA);
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, new String[]{CAMERA},
+                new int[]{PackageManager.PERMISSION_GRANTED}, receiver);
+
+        // Reported once the user returns from the settings screen
+        assertThat(granted).isEmpty();
+        assertThat(denied).isEmpty();
+        assertSettingsOpened();
+    }
+
+    @Test
+    public void shouldReportSpecialAccessDenied_whenOtherPermissionsDenied() {
+        request(CAMERA, OVERLAY);
+
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, new String[]{CAMERA},
+                new int[]{PackageManager.PERMISSION_DENIED}, receiver);
+
+        assertThat(denied).containsExactly(CAMERA, OVERLAY).inOrder();
+        assertThat(shadowOf(activity).getNextStartedActivityForResult()).isNull();
+    }
+
+    private void request(String... perms) {
+        EasyPermissions.requestPermissions(
+                new PermissionRequest.Builder(activity, REQUEST_CODE, perms).build());
+    }
+
+    private void assertSettingsOpened() {
+        ShadowActivity.IntentForResult started = shadowOf(activity).getNextStartedActivityForResult();
+        assertThat(started.requestCode).isEqualTo(REQUEST_CODE);
+        Intent intent = started.intent;
+        assertThat(shadowOf(intent).getIntentClass()).isEqualTo(AppSettingsDialogHolderActivity.class);
+        AppSettingsDialog dialog = intent.getParcelableExtra(AppSettingsDialog.EXTRA_APP_SETTINGS);
+        assertThat(dialog.getSettingsAction()).isEqualTo(Settings.ACTION_MANAGE_OVERLAY_PERMISSION);
+    }
+}
@@ -0,0 +1,139 @@
+package pub.devrel.easypermissions;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.pm.PackageManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowActivity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import pub.devrel.easypermissions.testhelper.TestActivity;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class StagedPermissionRequestTest {
+
+    private static final int REQUEST_CODE = 5;
+    private static final String FINE = Manifest.permission.ACCESS_FINE_LOCATION;
+    private static final String BACKGROUND = Manifest.permission.ACCESS_BACKGROUND_LOCATION;
+    private static final String CAMERA = Manifest.permission.CAMERA;
+
+    private TestActivity activity;
+    private List<String> granted;
+    private List<String> denied;
+    private EasyPermissions.PermissionCallbacks receiver;
+
+    @Before
+    public void setUp() {
+        // Background location only applies from API 29
+        EasyPermissions.setPermissionApplicability(
+                new PermissionApplicability.Builder(PermissionApplicability.DEFAULT)
+                        .remove(BACKGROUND)
+                        .build());
+        activity = Robolectric.buildActivity(TestActivity.class).setup().get();
+        granted = new ArrayList<>();
+        denied = new ArrayList<>();
+        receiver = new EasyPermissions.PermissionCallbacks() {
+            @Override
+            public void onPermissionsGranted(int requestCode, @NonNull List<String> perms) {
+                granted.addAll(perms);
+            }
+
+            @Override
+            public void onPermissionsDenied(int requestCode, @NonNull List<String> perms) {
+                denied.addAll(perms);
+            }
+
+            @Override
+            public void onRequestPermissionsResult(int requestCode,
+                                                   @NonNull String[] permissions,
+                                                   @NonNull int[] grantResults) {
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        EasyPermissions.setPermissionApplicability(null);
+    }
+
+    @Test
+    public void shouldPlanDependentPermissionsInLaterStage() {
+        List<String[]> stages = PermissionDependencies.DEFAULT.plan(BACKGROUND, FINE, CAMERA);
+
+        assertThat(stages).hasSize(2);
+        assertThat(stages.get(0)).asList().containsExactly(FINE, CAMERA).inOrder();
+        assertThat(stages.get(1)).asList().containsExactly(BACKGROUND);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCyclicDependencies() {
+        new PermissionDependencies.Builder()
+                .require(FINE, BACKGROUND)
+                .require(BACKGROUND, FINE)
+                .build();
+    }
+
+    @Test
+    public void shouldDeliverOneResult_whenAllStagesDone() {
+        StagedPermissionRequest staged = request();
+        assertThat(lastRequested()).isEqualTo(new String[]{FINE});
+
+        grant(FINE);
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, new String[]{FINE},
+                new int[]{PackageManager.PERMISSION_GRANTED}, receiver);
+
+        assertThat(granted).isEmpty();
+        assertThat(lastRequested()).isEqualTo(new String[]{BACKGROUND});
+
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, new String[]{BACKGROUND},
+                new int[]{PackageManager.PERMISSION_DENIED}, receiver);
+
+        assertThat(granted).containsExactly(FINE);
+        assertThat(denied).containsExactly(BACKGROUND);
+        assertThat(staged.isPending()).isFalse();
+    }
+
+    @Test
+    public void shouldDenyDependentPermission_whenRequirementDenied() {
+        StagedPermissionRequest staged = request();
+
+        EasyPermissions.onRequestPermissionsResult(REQUEST_CODE, new String[]{FINE},
+                new int[]{PackageManager.PERMISSION_DENIED}, receiver);
+
+        // Background location is not asked for
+        assertThat(lastRequested()).isEqualTo(new String[]{FINE});
+        assertThat(granted).isEmpty();
+        assertThat(denied).containsExactly(FINE, BACKGROUND).inOrder();
+        assertThat(staged.isPending()).isFalse();
+    }
+
+    private StagedPermissionRequest request() {
+        return EasyPermissions.requestPermissions(
+                new PermissionRequest.Builder(activity, REQUEST_CODE, BACKGROUND, FINE).build(),
+                PermissionDependencies.DEFAULT);
+    }
+
+    private String[] lastRequested() {
+        ShadowActivity.PermissionsRequest request = shadowOf(activity).getLastRequestedPermission();
+        assertThat(request.requestCode).isEqualTo(REQUEST_CODE);
+        return request.requestedPermissions;
+    }
+
+    private void grant(String perm) {
+        shadowOf((Application) activity.getApplicationContext()).grantPermissions(perm);
+    }
+}
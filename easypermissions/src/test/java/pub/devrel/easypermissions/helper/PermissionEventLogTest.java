@@ -0,0 +1,64 @@
+package pub.devrel.easypermissions.helper;
+
+import android.Manifest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import pub.devrel.easypermissions.PermissionInstrumentation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PermissionEventLogTest {
+
+    private static final int REQUEST_CODE = 42;
+    private static final String[] ALL_PERMS = new String[]{
+            Manifest.permission.READ_SMS, Manifest.permission.ACCESS_FINE_LOCATION};
+
+    @Test
+    public void shouldDumpEachPermission_whenEventRecorded() {
+        PermissionEventLog log = new PermissionEventLog(8);
+
+        log.record(PermissionInstrumentation.EVENT_REQUEST_ISSUED, 5, REQUEST_CODE, ALL_PERMS);
+        log.record(PermissionInstrumentation.EVENT_RATIONALE_QUEUED, 6, REQUEST_CODE,
+                (String[]) null);
+
+        String dump = dump(log);
+        assertThat(dump).contains("(3 of 3)");
+        assertThat(dump).contains("REQUEST_ISSUED rc=42 id=5 " + Manifest.permission.READ_SMS);
+        assertThat(dump).contains(
+                "REQUEST_ISSUED rc=42 id=5 " + Manifest.permission.ACCESS_FINE_LOCATION);
+        assertThat(dump).contains("RATIONALE_QUEUED rc=42 id=6" + System.lineSeparator());
+    }
+
+    @Test
+    public void shouldKeepMostRecentEvents_whenFull() {
+        PermissionEventLog log = new PermissionEventLog(2);
+
+        log.record(PermissionInstrumentation.EVENT_REQUEST_ISSUED, 1, REQUEST_CODE,
+                Manifest.permission.READ_SMS);
+        log.record(PermissionInstrumentation.EVENT_RESULT_DENIED, 1, REQUEST_CODE,
+                Manifest.permission.READ_SMS);
+        log.record(PermissionInstrumentation.EVENT_REQUEST_ISSUED, 2, REQUEST_CODE,
+                Manifest.permission.READ_SMS);
+
+        String dump = dump(log);
+        assertThat(dump).contains("(2 of 3)");
+        assertThat(dump).doesNotContain("REQUEST_ISSUED rc=42 id=1");
+        assertThat(dump).contains("RESULT_DENIED rc=42 id=1");
+        assertThat(dump).contains("REQUEST_ISSUED rc=42 id=2");
+    }
+
+    private static String dump(PermissionEventLog log) {
+        StringWriter out = new StringWriter();
+        log.dump("", new PrintWriter(out));
+        return out.toString();
+    }
+}
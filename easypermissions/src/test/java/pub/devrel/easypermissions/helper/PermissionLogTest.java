@@ -0,0 +1,70 @@
+package pub.devrel.easypermissions.helper;
+
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pub.devrel.easypermissions.PermissionLogger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23)
+public class PermissionLogTest {
+
+    private static final String TAG = "PermissionLogTest";
+
+    @After
+    public void tearDown() {
+        PermissionLog.setLogger(null);
+    }
+
+    @Test
+    public void shouldLogWarningOnce_whenRepeatedWithinInterval() {
+        RecordingLogger logger = new RecordingLogger(Log.VERBOSE);
+        PermissionLog.setLogger(logger);
+
+        PermissionLog.w(TAG, "shouldLogWarningOnce");
+        PermissionLog.w(TAG, "shouldLogWarningOnce");
+
+        assertThat(logger.messages).containsExactly("shouldLogWarningOnce");
+    }
+
+    @Test
+    public void shouldNotLog_whenPriorityNotLoggable() {
+        RecordingLogger logger = new RecordingLogger(Log.ERROR);
+        PermissionLog.setLogger(logger);
+
+        PermissionLog.d(TAG, "debug");
+        PermissionLog.w(TAG, "shouldNotLog");
+        PermissionLog.e(TAG, "error", null);
+
+        assertThat(logger.messages).containsExactly("error");
+    }
+
+    private static class RecordingLogger implements PermissionLogger {
+        final List<String> messages = new ArrayList<>();
+        private final int mMinPriority;
+
+        RecordingLogger(int minPriority) {
+            mMinPriority = minPriority;
+        }
+
+        @Override
+        public boolean isLoggable(int priority) {
+            return priority >= mMinPriority;
+        }
+
+        @Override
+        public void log(int priority, String tag, String message, Throwable tr) {
+            messages.add(message);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package pub.devrel.easypermissions.testhelper;
 import android.app.Activity;
 
 import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
 import androidx.test.core.app.ActivityScenario;
 
 import java.util.concurrent.CompletableFuture;
@@ -20,6 +21,8 @@ public class ActivityController<T extends Activity> {
     }
 
     public synchronized T resume() {
+        scenario.moveToState(Lifecycle.State.RESUMED);
+
         final CompletableFuture<T> ActivityFuture = new CompletableFuture<>();
 
         scenario.onActivity(new ActivityScenario.ActivityAction<T>() {
@@ -38,6 +41,10 @@ public class ActivityController<T extends Activity> {
         }
     }
 
+    public void stop() {
+        scenario.moveToState(Lifecycle.State.CREATED);
+    }
+
     public void reset() {
         scenario.recreate();
     }
@@ -0,0 +1,19 @@
+package pub.devrel.easypermissions.testhelper;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor that runs each task right away on the calling thread, so background work finishes
+ * before the test continues.
+ */
+public class DirectExecutor implements Executor {
+
+    public static final Executor INSTANCE = new DirectExecutor();
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        command.run();
+    }
+}